@@ -0,0 +1,70 @@
+package com.example.fleet.bench;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.model.GeoPoint;
+import com.example.fleet.model.Geofence;
+import com.example.fleet.model.TruckTelemetry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic fixtures shared by the benchmarks (same demo box as the simulator).
+ */
+final class BenchData {
+
+    private BenchData() {}
+
+    /** application.yml defaults, with the given flush batch size. */
+    static FleetProperties props(int emitBatchSize) {
+        return new FleetProperties(
+                new FleetProperties.Simulator(false, 0, 1000, 2000),
+                new FleetProperties.Stream(250, emitBatchSize, 0),
+                new FleetProperties.Backpressure("latest", 10000),
+                new FleetProperties.Geofence(300_000, 0, 200_000),
+                new FleetProperties.Ingest(2000, 50),
+                new FleetProperties.History(false, null, 0, 0, 0, 0),
+                new FleetProperties.Replay(null, 2000, 100),
+                new FleetProperties.Cache(false, 0, 0),
+                new FleetProperties.Adaptive(250, 5000, 256 * 1024, 64 * 1024),
+                new FleetProperties.Density(1000, 15),
+                new FleetProperties.DeadBand(false, 5, 5, 2, 1, 10_000, 2_000),
+                new FleetProperties.Registry(1_000_000));
+    }
+
+    static List<TruckTelemetry> trucks(int count, long seed) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        Instant ts = Instant.now();
+        List<TruckTelemetry> out = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            out.add(new TruckTelemetry(String.format("TRK-%05d", i), ts,
+                    51.3 + rng.nextDouble() * 0.4, -0.5 + rng.nextDouble() * 0.7,
+                    rng.nextDouble() * 120, rng.nextDouble() * 100, rng.nextDouble() * 360));
+        }
+        return out;
+    }
+
+    /** Small octagonal zones (~0.5-2 km across) scattered over the demo box. */
+    static List<Geofence> geofences(int count, long seed) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        List<Geofence> out = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            double lat = 51.3 + rng.nextDouble() * 0.4;
+            double lon = -0.5 + rng.nextDouble() * 0.7;
+            double r = 0.0025 + rng.nextDouble() * 0.0075;
+            out.add(new Geofence("GF-" + i, "zone " + i, circle(lat, lon, r, 8)));
+        }
+        return out;
+    }
+
+    static List<GeoPoint> circle(double lat, double lon, double radiusDeg, int n) {
+        List<GeoPoint> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double a = 2 * Math.PI * i / n;
+            out.add(new GeoPoint(lat + radiusDeg * Math.sin(a), lon + radiusDeg * Math.cos(a)));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.fleet.bench;
+
+import com.example.fleet.model.Geofence;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.service.GeofenceService;
+import com.example.fleet.service.TruckRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GeofenceService.evaluate for one 5,000-truck tick as the geofence count grows.
+ * Trucks are fixed, so after warm-up this measures the steady state (no new alerts).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeofenceEvaluateBenchmark {
+
+    static final int TRUCKS = 5000;
+
+    @Param({"10", "1000", "10000"})
+    int fences;
+
+    GeofenceService service;
+    List<TruckTelemetry> tick;
+
+    @Setup
+    public void setup() {
+        service = new GeofenceService(BenchData.props(5000), new TruckRegistry());
+        for (Geofence g : BenchData.geofences(fences, 11)) {
+            service.add(g).blockLast();
+        }
+        tick = BenchData.trucks(TRUCKS, 7);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRUCKS)
+    public void evaluateTick(Blackhole bh) {
+        for (TruckTelemetry t : tick) {
+            service.evaluate(t).subscribe(bh::consume);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.fleet.bench;
+
+import com.example.fleet.model.IngestResult;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Local load generator for POST /api/ingest (not a JMH benchmark): streams NDJSON over
+ * N concurrent connections as fast as the server accepts it and reports points/s.
+ *
+ * Run against a started app (docker compose up -d; mvn spring-boot:run):
+ *   mvn -Pbench compile exec:java -Dexec.mainClass=com.example.fleet.bench.IngestLoadGenerator \
+ *       -Dexec.args="url=http://localhost:8080/api/ingest points=1000000 trucks=5000 connections=4"
+ */
+public final class IngestLoadGenerator {
+
+    private static final int LINES_PER_CHUNK = 500;
+
+    public static void main(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String a : args) {
+            int eq = a.indexOf('=');
+            if (eq > 0) opts.put(a.substring(0, eq), a.substring(eq + 1));
+        }
+        String url = opts.getOrDefault("url", "http://localhost:8080/api/ingest");
+        long points = Long.parseLong(opts.getOrDefault("points", "1000000"));
+        int trucks = Integer.parseInt(opts.getOrDefault("trucks", "5000"));
+        int connections = Integer.parseInt(opts.getOrDefault("connections", "4"));
+
+        WebClient client = WebClient.create(url);
+        long perConnection = points / connections;
+
+        long start = System.nanoTime();
+        IngestResult total = Flux.range(0, connections)
+                .flatMap(c -> send(client, c, perConnection, trucks), connections)
+                .reduce(new IngestResult(0, 0), (a, b) -> new IngestResult(a.accepted() + b.accepted(), a.rejected() + b.rejected()))
+                .block();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("sent=%d accepted=%d rejected=%d in %.2fs -> %.0f points/s%n",
+                perConnection * connections, total.accepted(), total.rejected(), seconds, total.accepted() / seconds);
+    }
+
+    private static Mono<IngestResult> send(WebClient client, int connection, long points, int trucks) {
+        long chunks = (points + LINES_PER_CHUNK - 1) / LINES_PER_CHUNK;
+        Flux<String> body = Flux.defer(() -> {
+            SplittableRandom rng = new SplittableRandom(connection);
+            return Flux.range(0, (int) chunks).map(chunk -> {
+                StringBuilder sb = new StringBuilder(LINES_PER_CHUNK * 160);
+                String ts = Instant.now().toString();
+                long from = (long) chunk * LINES_PER_CHUNK;
+                for (long i = from, end = Math.min(points, from + LINES_PER_CHUNK); i < end; i++) {
+                    // Each connection owns a disjoint set of trucks so per-truck order is meaningful.
+                    int truck = (int) (i % trucks) * 64 + connection;
+                    sb.append("{\"truckId\":\"DEV-").append(truck)
+                            .append("\",\"ts\":\"").append(ts)
+                            .append("\",\"lat\":").append(51.3 + rng.nextDouble() * 0.4)
+                            .append(",\"lon\":").append(-0.5 + rng.nextDouble() * 0.7)
+                            .append(",\"speedKph\":").append(rng.nextInt(120))
+                            .append(",\"fuelPct\":").append(rng.nextInt(100))
+                            .append(",\"headingDeg\":").append(rng.nextInt(360))
+                            .append("}\n");
+                }
+                return sb.toString();
+            });
+        });
+
+        return client.post()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body, String.class)
+                .retrieve()
+                .bodyToMono(IngestResult.class);
+    }
+}
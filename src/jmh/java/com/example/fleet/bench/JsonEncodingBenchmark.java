@@ -0,0 +1,53 @@
+package com.example.fleet.bench;
+
+import com.example.fleet.model.AlertEvent;
+import com.example.fleet.model.TruckTelemetry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson encoding of the two streamed payloads, configured like Spring Boot's mapper
+ * (JavaTimeModule, ISO-8601 timestamps).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonEncodingBenchmark {
+
+    ObjectMapper mapper;
+    TruckTelemetry telemetry;
+    AlertEvent alert;
+
+    @Setup
+    public void setup() {
+        mapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        telemetry = BenchData.trucks(1, 7).get(0);
+        alert = new AlertEvent("alert-3f1c0a52-6b7e-4f0e-9d8a-2c1b5e7a9d10", Instant.now(),
+                "ENTER_GEOFENCE", telemetry.truckId(), "GF-1", telemetry);
+    }
+
+    @Benchmark
+    public String telemetryToString() throws Exception {
+        return mapper.writeValueAsString(telemetry);
+    }
+
+    @Benchmark
+    public byte[] telemetryToBytes() throws Exception {
+        return mapper.writeValueAsBytes(telemetry);
+    }
+
+    @Benchmark
+    public byte[] alertToBytes() throws Exception {
+        return mapper.writeValueAsBytes(alert);
+    }
+}
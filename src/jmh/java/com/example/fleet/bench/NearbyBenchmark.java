@@ -0,0 +1,87 @@
+package com.example.fleet.bench;
+
+import com.example.fleet.config.RedisConfig;
+import com.example.fleet.model.NearbyTruck;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.repo.RedisTruckStateRepository;
+import com.example.fleet.service.TruckRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import reactor.core.publisher.Flux;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of "trucks within 2 km of a point": GEOSEARCH + one batched MGET (nearby())
+ * vs paging the whole live state out of Redis and filtering by haversine distance.
+ *
+ * Needs a real Redis: `docker compose up -d` (REDIS_HOST / REDIS_PORT override localhost:6379).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NearbyBenchmark {
+
+    private static final double LAT = 51.5, LON = -0.12, RADIUS_KM = 2;
+    private static final int LIMIT = 50;
+    private static final int PAGE = 2000;
+
+    @Param({"5000", "50000"})
+    int trucks;
+
+    LettuceConnectionFactory factory;
+    RedisTruckStateRepository repo;
+
+    @Setup
+    public void setup() {
+        var config = new RedisStandaloneConfiguration(
+                System.getenv().getOrDefault("REDIS_HOST", "localhost"),
+                Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379")));
+        factory = new LettuceConnectionFactory(config);
+        factory.afterPropertiesSet();
+        factory.start();
+
+        var redis = new RedisConfig();
+        repo = new RedisTruckStateRepository(redis.telemetryRedisTemplate(factory), redis.stringRedisTemplate(factory),
+                new TruckRegistry());
+        repo.clearAll().block();
+        repo.upsertAll(BenchData.trucks(trucks, 7)).block();
+    }
+
+    @TearDown
+    public void tearDown() {
+        repo.clearAll().block();
+        factory.destroy();
+    }
+
+    @Benchmark
+    public List<NearbyTruck> geoSearch() {
+        return repo.nearby(LAT, LON, RADIUS_KM, LIMIT).collectList().block();
+    }
+
+    @Benchmark
+    public List<NearbyTruck> fullScan() {
+        return Flux.range(0, (trucks + PAGE - 1) / PAGE)
+                .concatMap(page -> repo.list(page * PAGE, PAGE))
+                .map(t -> new NearbyTruck(t, haversineKm(LAT, LON, t.lat(), t.lon())))
+                .filter(n -> n.distanceKm() <= RADIUS_KM)
+                .sort(Comparator.comparingDouble(NearbyTruck::distanceKm))
+                .take(LIMIT)
+                .collectList()
+                .block();
+    }
+
+    private static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * 6371.0088 * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.fleet.bench;
+
+import com.example.fleet.model.GeoPoint;
+import com.example.fleet.util.CompiledPolygon;
+import com.example.fleet.util.GeoUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-in-polygon: List&lt;GeoPoint&gt; reference form vs the compiled flat-array form.
+ *
+ * Each invocation tests a fixed batch of points inside the polygon's bounding box
+ * (roughly 80% inside); scores are reported per tested point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PointInPolygonBenchmark {
+
+    static final int POINTS = 1024;
+
+    @Param({"10", "100", "10000"})
+    int vertices;
+
+    List<GeoPoint> polygon;
+    CompiledPolygon compiled;
+    double[] lat;
+    double[] lon;
+
+    @Setup
+    public void setup() {
+        polygon = BenchData.circle(51.5, -0.12, 0.05, vertices);
+        compiled = CompiledPolygon.of(polygon);
+
+        SplittableRandom rng = new SplittableRandom(42);
+        lat = new double[POINTS];
+        lon = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            lat[i] = 51.45 + rng.nextDouble() * 0.1;
+            lon[i] = -0.17 + rng.nextDouble() * 0.1;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void list(Blackhole bh) {
+        for (int i = 0; i < POINTS; i++) {
+            bh.consume(GeoUtils.pointInPolygon(lat[i], lon[i], polygon));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void compiled(Blackhole bh) {
+        for (int i = 0; i < POINTS; i++) {
+            bh.consume(GeoUtils.pointInPolygon(lat[i], lon[i], compiled));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.fleet.bench;
+
+import com.example.fleet.config.RedisConfig;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.repo.RedisTruckStateRepository;
+import com.example.fleet.service.TruckRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of persisting one simulator tick: per-truck upsert (SET + ZADD each, 256 in flight,
+ * as SimulatorService used to do) vs the chunked, pipelined upsertAll().
+ *
+ * Needs a real Redis: `docker compose up -d` (REDIS_HOST / REDIS_PORT override localhost:6379).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedisTickBenchmark {
+
+    @Param({"1000", "5000"})
+    int trucks;
+
+    LettuceConnectionFactory factory;
+    RedisTruckStateRepository repo;
+    List<TruckTelemetry> tick;
+
+    @Setup
+    public void setup() {
+        var config = new RedisStandaloneConfiguration(
+                System.getenv().getOrDefault("REDIS_HOST", "localhost"),
+                Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379")));
+        factory = new LettuceConnectionFactory(config);
+        factory.afterPropertiesSet();
+        factory.start();
+
+        var redis = new RedisConfig();
+        repo = new RedisTruckStateRepository(redis.telemetryRedisTemplate(factory), redis.stringRedisTemplate(factory),
+                new TruckRegistry());
+
+        tick = BenchData.trucks(trucks, 7);
+    }
+
+    @TearDown
+    public void tearDown() {
+        repo.clearAll().block();
+        factory.destroy();
+    }
+
+    @Benchmark
+    public void perTruckUpsert() {
+        Flux.fromIterable(tick).flatMap(repo::upsert, 256).then().block();
+    }
+
+    @Benchmark
+    public void bulkUpsertAll() {
+        repo.upsertAll(tick).block();
+    }
+}
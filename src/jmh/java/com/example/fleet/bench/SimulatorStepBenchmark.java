@@ -0,0 +1,49 @@
+package com.example.fleet.bench;
+
+import com.example.fleet.service.FleetSimulationEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulator tick: the parallel structure-of-arrays step, alone and with the
+ * record materialization done at the publish boundary.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimulatorStepBenchmark {
+
+    @Param({"5000", "100000"})
+    int trucks;
+
+    ForkJoinPool pool;
+    FleetSimulationEngine engine;
+
+    @Setup
+    public void setup() {
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        engine = new FleetSimulationEngine(trucks, 7, pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public void step() {
+        engine.step();
+    }
+
+    @Benchmark
+    public List<?> stepAndSnapshot() {
+        engine.step();
+        return engine.snapshot();
+    }
+}
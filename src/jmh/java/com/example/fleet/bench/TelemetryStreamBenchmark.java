@@ -0,0 +1,82 @@
+package com.example.fleet.bench;
+
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.service.TelemetryStreamService;
+import com.example.fleet.service.TruckRegistry;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing one 5,000-truck tick through TelemetryStreamService into N live subscribers,
+ * either of the raw stream or of the shared pre-encoded (JSON) stream: directly (emit)
+ * or through latest-per-truck coalescing (accept + one flush).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TelemetryStreamBenchmark {
+
+    static final int TRUCKS = 5000;
+
+    @Param({"1", "20"})
+    int subscribers;
+
+    @Param({"false", "true"})
+    boolean encoded;
+
+    TelemetryStreamService service;
+    List<TruckTelemetry> tick;
+    int[] handles;
+    Disposable.Composite subscriptions;
+    volatile long received;
+
+    @Setup
+    public void setup() {
+        TruckRegistry registry = new TruckRegistry();
+        service = new TelemetryStreamService(BenchData.props(TRUCKS),
+                Jackson2ObjectMapperBuilder.json().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build(),
+                registry, FleetMetrics.noop());
+        subscriptions = Disposables.composite();
+        for (int i = 0; i < subscribers; i++) {
+            subscriptions.add(encoded
+                    ? service.encodedStream().subscribe(e -> received += e.json().length)
+                    : service.stream().subscribe(t -> received++));
+        }
+        tick = BenchData.trucks(TRUCKS, 7);
+        // Resolved once, as the pipeline head does before handing updates to the stream.
+        handles = new int[tick.size()];
+        for (int i = 0; i < handles.length; i++) handles[i] = registry.handleOf(tick.get(i).truckId());
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscriptions.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRUCKS)
+    public void emitTick() {
+        for (int i = 0; i < handles.length; i++) {
+            service.emit(handles[i], tick.get(i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRUCKS)
+    public int coalesceTick() {
+        for (int i = 0; i < handles.length; i++) {
+            service.accept(handles[i], tick.get(i));
+        }
+        return service.flush();
+    }
+}
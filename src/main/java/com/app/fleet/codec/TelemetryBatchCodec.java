@@ -0,0 +1,160 @@
+package com.example.fleet.codec;
+
+import com.example.fleet.model.TruckTelemetry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary frame for a batch of telemetry updates (opt-in alternative to JSON).
+ *
+ * Frame layout (big-endian):
+ * <pre>
+ *   u16 magic 0x4654 ("FT") | u8 version | u8 flags (bit0 = dictionary reset)
+ *   i64 base timestamp, epoch millis (oldest update in the batch)
+ *   u16 new dictionary entries, each: u16 length + UTF-8 truck id
+ *   u16 record count, each record (22 bytes):
+ *     u32 truck dictionary index | u32 ts delta millis from base
+ *     i32 lat * 1e7 | i32 lon * 1e7
+ *     u16 speedKph * 100 | u16 fuelPct * 100 | u16 headingDeg * 100
+ * </pre>
+ *
+ * The truck-id dictionary lives for the whole stream: an id is sent once, in the
+ * first frame that mentions it, and is referenced by index afterwards. Encoder and
+ * Decoder are therefore stateful and belong to exactly one subscriber.
+ * A ~150 byte JSON object becomes a 22 byte record.
+ */
+public final class TelemetryBatchCodec {
+
+    public static final String MIME_TYPE = "application/vnd.fleet.telemetry-batch";
+    public static final int MAX_BATCH = 0xFFFF;
+
+    static final int MAGIC = 0x4654;
+    static final int VERSION = 1;
+    static final int FLAG_DICTIONARY_RESET = 1;
+    static final int RECORD_BYTES = 22;
+    static final int MAX_DICTIONARY = 1 << 20;
+
+    private static final double COORD_SCALE = 1e7;   // ~1 cm
+    private static final double VALUE_SCALE = 100.0; // 0.01 kph / % / degree
+
+    private TelemetryBatchCodec() {}
+
+    public static Encoder encoder() {
+        return new Encoder();
+    }
+
+    public static Decoder decoder() {
+        return new Decoder();
+    }
+
+    public static final class Encoder {
+
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        private Encoder() {}
+
+        public byte[] encode(List<TruckTelemetry> batch) {
+            if (batch.size() > MAX_BATCH) {
+                throw new IllegalArgumentException("batch too large: " + batch.size() + " > " + MAX_BATCH);
+            }
+
+            int flags = 0;
+            if (dictionary.size() + batch.size() > MAX_DICTIONARY) {
+                dictionary.clear();
+                flags |= FLAG_DICTIONARY_RESET;
+            }
+
+            long baseTs = Long.MAX_VALUE;
+            List<byte[]> newIds = new ArrayList<>();
+            int newIdBytes = 0;
+            int[] slots = new int[batch.size()];
+
+            for (int i = 0; i < batch.size(); i++) {
+                TruckTelemetry t = batch.get(i);
+                if (t.ts() != null) baseTs = Math.min(baseTs, t.ts().toEpochMilli());
+
+                Integer slot = dictionary.get(t.truckId());
+                if (slot == null) {
+                    slot = dictionary.size();
+                    dictionary.put(t.truckId(), slot);
+                    byte[] id = t.truckId().getBytes(StandardCharsets.UTF_8);
+                    newIds.add(id);
+                    newIdBytes += 2 + id.length;
+                }
+                slots[i] = slot;
+            }
+            if (baseTs == Long.MAX_VALUE) baseTs = 0;
+
+            ByteBuffer buf = ByteBuffer.allocate(12 + 2 + newIdBytes + 2 + batch.size() * RECORD_BYTES);
+            buf.putShort((short) MAGIC).put((byte) VERSION).put((byte) flags).putLong(baseTs);
+
+            buf.putShort((short) newIds.size());
+            for (byte[] id : newIds) {
+                buf.putShort((short) id.length).put(id);
+            }
+
+            buf.putShort((short) batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                TruckTelemetry t = batch.get(i);
+                long delta = t.ts() == null ? 0 : t.ts().toEpochMilli() - baseTs;
+                buf.putInt(slots[i])
+                        .putInt((int) Math.min(delta, 0xFFFFFFFFL))
+                        .putInt((int) Math.round(t.lat() * COORD_SCALE))
+                        .putInt((int) Math.round(t.lon() * COORD_SCALE))
+                        .putShort(unsigned16(t.speedKph()))
+                        .putShort(unsigned16(t.fuelPct()))
+                        .putShort(unsigned16(t.headingDeg()));
+            }
+            return buf.array();
+        }
+
+        private static short unsigned16(double v) {
+            return (short) Math.max(0, Math.min(0xFFFF, Math.round(v * VALUE_SCALE)));
+        }
+    }
+
+    public static final class Decoder {
+
+        private final List<String> dictionary = new ArrayList<>();
+
+        private Decoder() {}
+
+        public List<TruckTelemetry> decode(ByteBuffer buf) {
+            int magic = Short.toUnsignedInt(buf.getShort());
+            int version = Byte.toUnsignedInt(buf.get());
+            if (magic != MAGIC || version != VERSION) {
+                throw new IllegalArgumentException("not a telemetry batch frame (magic=" + magic + ", version=" + version + ")");
+            }
+            int flags = Byte.toUnsignedInt(buf.get());
+            long baseTs = buf.getLong();
+            if ((flags & FLAG_DICTIONARY_RESET) != 0) dictionary.clear();
+
+            int newIds = Short.toUnsignedInt(buf.getShort());
+            for (int i = 0; i < newIds; i++) {
+                byte[] id = new byte[Short.toUnsignedInt(buf.getShort())];
+                buf.get(id);
+                dictionary.add(new String(id, StandardCharsets.UTF_8));
+            }
+
+            int count = Short.toUnsignedInt(buf.getShort());
+            List<TruckTelemetry> out = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String truckId = dictionary.get(buf.getInt());
+                long ts = baseTs + Integer.toUnsignedLong(buf.getInt());
+                double lat = buf.getInt() / COORD_SCALE;
+                double lon = buf.getInt() / COORD_SCALE;
+                double speed = Short.toUnsignedInt(buf.getShort()) / VALUE_SCALE;
+                double fuel = Short.toUnsignedInt(buf.getShort()) / VALUE_SCALE;
+                double heading = Short.toUnsignedInt(buf.getShort()) / VALUE_SCALE;
+                out.add(new TruckTelemetry(truckId, Instant.ofEpochMilli(ts), lat, lon, speed, fuel, heading));
+            }
+            return out;
+        }
+    }
+}
@@ -1,107 +1,76 @@
-package com.example.fleet.service;
+package com.example.fleet.config;
 
-import com.example.fleet.config.FleetProperties;
-import com.example.fleet.model.TruckTelemetry;
-import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
-import org.springframework.stereotype.Service;
-import reactor.core.Disposable;
-import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
-
-import java.time.Duration;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
- * Central hot stream of telemetry for WebSocket/RSocket consumers.
- *
- * Optimization: "latest-per-truck aggregation"
- * - Simulator may update 1000–5000 trucks per tick.
- * - Instead of broadcasting EVERY update immediately (high fan-out pressure),
- *   we keep only the latest telemetry per truck in a map and periodically flush
- *   a snapshot to consumers.
- *
- * This keeps memory stable and gives smooth map updates.
+ * Typed view of the {@code fleet.*} settings in application.yml.
  */
-@Service
-public class TelemetryStreamService {
-
-    private final Sinks.Many<TruckTelemetry> sink;
-    private final ConcurrentHashMap<String, TruckTelemetry> latestByTruck = new ConcurrentHashMap<>();
-    private final AtomicLong dropped = new AtomicLong();
-    private final long flushMs;
-    private final int emitBatchSize;
-
-    private volatile Disposable flusher;
-
-    public TelemetryStreamService(FleetProperties props) {
-        this.flushMs = Math.max(50, props.stream().flushMs());
-        this.emitBatchSize = Math.max(100, props.stream().emitBatchSize());
+@ConfigurationProperties(prefix = "fleet")
+public record FleetProperties(
+        Simulator simulator,
+        Stream stream,
+        Backpressure backpressure,
+        Geofence geofence,
+        Ingest ingest,
+        History history,
+        Replay replay,
+        Cache cache,
+        Adaptive adaptive,
+        Density density,
+        DeadBand deadBand,
+        Registry registry
+) {
+    public record Simulator(boolean autoStart, int initialTrucks, long tickMs, int maxEmitPerTick) { }
 
-        // Sink strategy based on configured backpressure mode.
-        String mode = props.backpressure().mode() == null ? "latest" : props.backpressure().mode().toLowerCase();
-        int bufferSize = Math.max(100, props.backpressure().bufferSize());
+    /**
+     * Latest-per-truck coalescing: flush cadence and max updates published per flush.
+     * shards: independently flushed emission shards (0 = one per CPU).
+     */
+    public record Stream(long flushMs, int emitBatchSize, int shards) { }
 
-        this.sink = switch (mode) {
-            case "buffer" -> Sinks.many().multicast().onBackpressureBuffer(bufferSize, false);
-            case "drop" -> Sinks.many().multicast().directBestEffort();
-            default -> Sinks.many().multicast().directBestEffort(); // "latest": subscribers use onBackpressureLatest()
-        };
-    }
+    public record Backpressure(String mode, int bufferSize) { }
 
     /**
-     * Accept telemetry updates from the simulator.
-     * This is O(1) and never blocks.
+     * dwellMs: DWELL_GEOFENCE fires once a truck has stayed inside a zone this long (0 = disabled).
+     * shards: parallel evaluation shards (0 = one per CPU); maxQueued: points allowed in flight.
      */
-    public void accept(TruckTelemetry telemetry) {
-        latestByTruck.put(telemetry.truckId(), telemetry);
-    }
+    public record Geofence(long dwellMs, int shards, int maxQueued) { }
+
+    /** Device ingestion: points per pipeline batch and the max wait to fill one. */
+    public record Ingest(int batchSize, long batchMs) { }
 
     /**
-     * Subscribe to a hot stream of telemetry.
-     * If a consumer is slow, it will keep only the latest events.
+     * Local memory-mapped telemetry history: segment files under dir, each holding up to
+     * segmentRecords points or segmentMinutes of data; whole segments expire after retentionMinutes.
      */
-    public Flux<TruckTelemetry> stream() {
-        return sink.asFlux().onBackpressureLatest();
-    }
+    public record History(boolean enabled, String dir, int segmentRecords, long segmentMinutes,
+                          long retentionMinutes, int queueBatches) { }
 
-    @PostConstruct
-    void startFlusher() {
-        this.flusher = Flux.interval(Duration.ofMillis(flushMs))
-                .doOnNext(tick -> flushOnce())
-                .onErrorContinue((e, o) -> {})
-                .subscribe();
-    }
+    /** Recorded-traffic replay: directory holding recordings and how points are grouped per publish. */
+    public record Replay(String dir, int batchSize, long batchMs) { }
 
-    @PreDestroy
-    void stopFlusher() {
-        if (flusher != null && !flusher.isDisposed()) {
-            flusher.dispose();
-        }
-    }
+    /** Near-cache in front of Redis: max trucks held and how old an entry may be before reads go to Redis. */
+    public record Cache(boolean enabled, int maxTrucks, long maxAgeMs) { }
 
-    private void flushOnce() {
-        if (latestByTruck.isEmpty()) return;
+    /**
+     * Adaptive delivery (ws ?mode=adaptive, rsocket fleet.positions.adaptive): bounds for the
+     * per-subscriber refresh interval, bytes allowed in flight per subscriber, and max bytes per frame.
+     */
+    public record Adaptive(long minIntervalMs, long maxIntervalMs, int maxBufferedBytes, int maxFrameBytes) { }
 
-        // Snapshot keys (lock-free) and emit up to emitBatchSize events.
-        String[] keys = latestByTruck.keySet().toArray(String[]::new);
-        int cap = Math.min(keys.length, emitBatchSize);
+    /** Density streams: how often changed cells are sent, and the fuel level counted as low. */
+    public record Density(long emitMs, double lowFuelPct) { }
 
-        for (int i = 0; i < cap; i++) {
-            TruckTelemetry t = latestByTruck.remove(keys[i]);
-            if (t == null) continue;
-            var result = sink.tryEmitNext(t);
-            if (result.isFailure()) {
-                dropped.incrementAndGet();
-                // Reinsert so it can be retried on next flush.
-                latestByTruck.put(t.truckId(), t);
-            }
-        }
-        // If keys.length > cap, remaining entries stay in the map for future flushes.
-    }
+    /**
+     * Change detection ahead of geofencing, Redis and the live stream: minimum change per update
+     * (0 = any change), keepalive after maxSilenceMs, and how long a held-back final state may wait.
+     */
+    public record DeadBand(boolean enabled, double distanceM, double headingDeg, double speedKph, double fuelPct,
+                           long maxSilenceMs, long settleMs) { }
 
-    public long droppedCount() {
-        return dropped.get();
-    }
+    /**
+     * Truck id registry: max distinct truck ids interned for the life of the process
+     * (handles are never released). New ids past the cap are refused and counted. 0 = the table's 16M limit.
+     */
+    public record Registry(int maxTrucks) { }
 }
@@ -1,8 +1,13 @@
 package com.example.fleet.config;
 
 import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.repo.CachingTruckStateRepository;
+import com.example.fleet.repo.RedisTruckStateRepository;
+import com.example.fleet.repo.TruckStateRepository;
+import com.example.fleet.service.TruckRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
@@ -10,7 +15,8 @@ import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
- * Reactive Redis template with JSON serialization for TruckTelemetry.
+ * Reactive Redis template with JSON serialization for TruckTelemetry, and the live state
+ * repository everyone injects: the Redis store behind the in-process near-cache.
  */
 @Configuration
 public class RedisConfig {
@@ -34,4 +40,11 @@ public class RedisConfig {
                 .build();
         return new ReactiveRedisTemplate<>(factory, context);
     }
+
+    @Bean
+    @Primary
+    public CachingTruckStateRepository truckStateRepository(FleetProperties props, RedisTruckStateRepository redis,
+                                                            TruckRegistry registry) {
+        return new CachingTruckStateRepository(props, redis, registry);
+    }
 }
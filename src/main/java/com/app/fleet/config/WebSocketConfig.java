@@ -1,11 +1,12 @@
 package com.example.fleet.config;
 
+import com.example.fleet.ws.DensityWebSocketHandler;
 import com.example.fleet.ws.TelemetryWebSocketHandler;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.config.EnableWebFlux;
 import org.springframework.web.reactive.socket.server.support.WebSocketHandlerAdapter;
 import org.springframework.context.annotation.Bean;
-import org.springframework.web.reactive.socket.server.support.SimpleUrlHandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
 
 import java.util.Map;
 
@@ -14,9 +15,10 @@ import java.util.Map;
 public class WebSocketConfig {
 
     @Bean
-    public SimpleUrlHandlerMapping handlerMapping(TelemetryWebSocketHandler handler) {
+    public SimpleUrlHandlerMapping handlerMapping(TelemetryWebSocketHandler handler,
+                                                  DensityWebSocketHandler density) {
         var mapping = new SimpleUrlHandlerMapping();
-        mapping.setUrlMap(Map.of("/ws/telemetry", handler));
+        mapping.setUrlMap(Map.of("/ws/telemetry", handler, "/ws/density", density));
         mapping.setOrder(1);
         return mapping;
     }
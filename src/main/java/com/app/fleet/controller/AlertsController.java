@@ -1,5 +1,6 @@
 package com.example.fleet.controller;
 
+import com.example.fleet.metrics.FleetMetrics;
 import com.example.fleet.model.AlertEvent;
 import com.example.fleet.service.AlertStreamService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -14,14 +15,17 @@ import reactor.core.publisher.Flux;
 public class AlertsController {
 
     private final AlertStreamService alerts;
+    private final FleetMetrics metrics;
 
-    public AlertsController(AlertStreamService alerts) {
+    public AlertsController(AlertStreamService alerts, FleetMetrics metrics) {
         this.alerts = alerts;
+        this.metrics = metrics;
     }
 
     @Operation(summary = "Server-Sent Events stream of geofence alerts (browser friendly)")
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<AlertEvent> stream() {
-        return alerts.stream();
+        return metrics.latest(FleetMetrics.Transport.SSE, alerts.stream())
+                .doOnNext(a -> metrics.recordSent(FleetMetrics.Transport.SSE, a.telemetry() != null ? a.telemetry().ts() : a.ts()));
     }
 }
@@ -0,0 +1,31 @@
+package com.example.fleet.controller;
+
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.DensityFrame;
+import com.example.fleet.service.DensityService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/api/density")
+@Tag(name = "Density")
+public class DensityController {
+
+    private final DensityService density;
+    private final FleetMetrics metrics;
+
+    public DensityController(DensityService density, FleetMetrics metrics) {
+        this.density = density;
+        this.metrics = metrics;
+    }
+
+    @Operation(summary = "Server-Sent Events stream of per-tile truck count, mean speed and low-fuel count "
+            + "(snapshot first, then changed tiles only; precision = map zoom 1-18)")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<DensityFrame> stream(@RequestParam(defaultValue = "" + DensityService.DEFAULT_PRECISION) int precision) {
+        return metrics.tracked(FleetMetrics.Transport.SSE, density.stream(precision));
+    }
+}
@@ -1,7 +1,12 @@
 package com.example.fleet.controller;
 
+import com.example.fleet.history.HistoryStore;
+import com.example.fleet.model.NearbyTruck;
 import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.repo.CachingTruckStateRepository;
 import com.example.fleet.repo.TruckStateRepository;
+import com.example.fleet.service.AdaptiveTelemetryService;
+import com.example.fleet.service.DeadBandFilter;
 import com.example.fleet.service.TelemetryStreamService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -9,6 +14,10 @@ import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/fleet")
 @Tag(name = "Fleet")
@@ -16,13 +25,23 @@ public class FleetController {
 
     private final TruckStateRepository repo;
     private final TelemetryStreamService stream;
+    private final HistoryStore history;
+    private final CachingTruckStateRepository cache;
+    private final AdaptiveTelemetryService adaptive;
+    private final DeadBandFilter deadBand;
 
-    public FleetController(TruckStateRepository repo, TelemetryStreamService stream) {
+    public FleetController(TruckStateRepository repo, TelemetryStreamService stream, HistoryStore history,
+                           CachingTruckStateRepository cache, AdaptiveTelemetryService adaptive,
+                           DeadBandFilter deadBand) {
         this.repo = repo;
         this.stream = stream;
+        this.history = history;
+        this.cache = cache;
+        this.adaptive = adaptive;
+        this.deadBand = deadBand;
     }
 
-    @Operation(summary = "List live truck states from Redis (unordered set slice)")
+    @Operation(summary = "List live truck states (near-cache, Redis on miss; most recently updated first)")
     @GetMapping("/trucks")
     public Flux<TruckTelemetry> list(@RequestParam(defaultValue = "0") int offset,
                                     @RequestParam(defaultValue = "200") int limit) {
@@ -36,6 +55,43 @@ public class FleetController {
         return repo.get(truckId);
     }
 
+    @Operation(summary = "Trucks within radiusKm of a point, nearest first (Redis GEO index)")
+    @GetMapping("/nearby")
+    public Flux<NearbyTruck> nearby(@RequestParam double lat,
+                                    @RequestParam double lon,
+                                    @RequestParam(defaultValue = "5") double radiusKm,
+                                    @RequestParam(defaultValue = "50") int limit) {
+        if (Math.abs(lat) > 90 || Math.abs(lon) > 180 || !(radiusKm > 0)) {
+            return Flux.error(new IllegalArgumentException("lat/lon out of range or radiusKm <= 0"));
+        }
+        int safeLimit = Math.max(1, Math.min(2000, limit));
+        return repo.nearby(lat, lon, Math.min(radiusKm, 20_000), safeLimit);
+    }
+
+    @Operation(summary = "Recorded positions of one truck between from and to (ISO-8601; default: last 15 minutes)")
+    @GetMapping("/trucks/{truckId}/history")
+    public Flux<TruckTelemetry> history(@PathVariable String truckId,
+                                        @RequestParam(required = false) Instant from,
+                                        @RequestParam(required = false) Instant to,
+                                        @RequestParam(defaultValue = "10000") int limit) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofMinutes(15));
+        int safeLimit = Math.max(1, Math.min(100_000, limit));
+        return history.range(truckId, start.toEpochMilli(), end.toEpochMilli()).take(safeLimit);
+    }
+
+    @Operation(summary = "History store stats (segments, mapped bytes, appended/dropped points)")
+    @GetMapping("/history-stats")
+    public Mono<HistoryStore.Stats> historyStats() {
+        return Mono.just(history.stats());
+    }
+
+    @Operation(summary = "Near-cache stats (cached trucks, hits/misses, evictions)")
+    @GetMapping("/cache-stats")
+    public Mono<CachingTruckStateRepository.Stats> cacheStats() {
+        return Mono.just(cache.stats());
+    }
+
     @Operation(summary = "Count trucks currently cached")
     @GetMapping("/count")
     public Mono<Long> count() {
@@ -45,8 +101,24 @@ public class FleetController {
     @Operation(summary = "Telemetry stream stats (dropped events under backpressure)")
     @GetMapping("/stream-stats")
     public Mono<StreamStats> stats() {
-        return Mono.just(new StreamStats(stream.droppedCount()));
+        return Mono.just(new StreamStats(stream.droppedCount(), stream.contendedCount(), stream.shards()));
+    }
+
+    @Operation(summary = "Adaptive stream subscribers (current interval, precision, buffered bytes, write rate)")
+    @GetMapping("/adaptive-stats")
+    public Mono<List<AdaptiveTelemetryService.SubscriberStats>> adaptiveStats() {
+        return Mono.just(adaptive.stats());
+    }
+
+    @Operation(summary = "Dead-band filter stats (updates received/forwarded, suppression ratio, keepalives, settled flushes)")
+    @GetMapping("/dead-band-stats")
+    public Mono<DeadBandFilter.Stats> deadBandStats() {
+        return Mono.just(deadBand.stats());
     }
 
-    public record StreamStats(long droppedTelemetry) { }
+    /**
+     * droppedTelemetry: updates lost to backpressure; contendedTelemetry: emissions that collided
+     * with another emission into the same shard sink and were retried.
+     */
+    public record StreamStats(long droppedTelemetry, long contendedTelemetry, int shards) { }
 }
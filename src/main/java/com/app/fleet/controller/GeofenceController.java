@@ -2,6 +2,7 @@ package com.example.fleet.controller;
 
 import com.example.fleet.model.Geofence;
 import com.example.fleet.service.GeofenceService;
+import com.example.fleet.service.GeofenceStage;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -9,6 +10,7 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -18,9 +20,11 @@ import java.util.List;
 public class GeofenceController {
 
     private final GeofenceService service;
+    private final GeofenceStage stage;
 
-    public GeofenceController(GeofenceService service) {
+    public GeofenceController(GeofenceService service, GeofenceStage stage) {
         this.service = service;
+        this.stage = stage;
     }
 
     @Operation(summary = "Create a geofence polygon")
@@ -42,6 +46,12 @@ public class GeofenceController {
         return service.delete(geofenceId);
     }
 
+    @Operation(summary = "Geofence evaluation stage stats (throughput, queue depth, dropped batches)")
+    @GetMapping("/stage-stats")
+    public Mono<GeofenceStage.Stats> stageStats() {
+        return Mono.just(stage.stats());
+    }
+
     public record CreateGeofenceRequest(
             @NotBlank String geofenceId,
             @NotBlank String name,
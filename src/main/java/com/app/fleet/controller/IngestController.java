@@ -0,0 +1,34 @@
+package com.example.fleet.controller;
+
+import com.example.fleet.model.IngestResult;
+import com.example.fleet.service.IngestService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/ingest")
+@Tag(name = "Ingest")
+public class IngestController {
+
+    private final IngestService ingest;
+
+    public IngestController(IngestService ingest) {
+        this.ingest = ingest;
+    }
+
+    @Operation(summary = "Stream device telemetry as NDJSON (one TruckTelemetry per line); returns accepted/rejected counts")
+    @PostMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<IngestResult> ingest(@RequestBody Flux<String> lines) {
+        return ingest.ingestLines(lines);
+    }
+
+    @Operation(summary = "Ingestion totals since startup")
+    @GetMapping("/stats")
+    public Mono<IngestResult> stats() {
+        return Mono.just(ingest.totals());
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.fleet.controller;
+
+import com.example.fleet.service.ReplayService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/replay")
+@Tag(name = "Replay")
+public class ReplayController {
+
+    private final ReplayService replay;
+
+    public ReplayController(ReplayService replay) {
+        this.replay = replay;
+    }
+
+    @Operation(summary = "Replay a recorded file (NDJSON or binary .ftb) from the replay directory; speed = 1, 10, ... or max")
+    @PostMapping("/start")
+    public Mono<ReplayService.Status> start(@RequestParam String file,
+                                            @RequestParam(defaultValue = "1") String speed,
+                                            @RequestParam(defaultValue = "false") boolean keepTimestamps) throws IOException {
+        double rate = "max".equalsIgnoreCase(speed) ? 0 : Double.parseDouble(speed);
+        return Mono.just(replay.start(file, rate, keepTimestamps));
+    }
+
+    @Operation(summary = "Stop the running replay")
+    @PostMapping("/stop")
+    public Mono<ReplayService.Status> stop() {
+        return Mono.just(replay.stop());
+    }
+
+    @Operation(summary = "Replay status: throughput and lag behind schedule")
+    @GetMapping("/status")
+    public Mono<ReplayService.Status> status() {
+        return Mono.just(replay.status());
+    }
+
+    @Operation(summary = "Convert an NDJSON recording into the compact binary form (.ftb) next to it")
+    @PostMapping("/convert")
+    public Mono<Long> convert(@RequestParam String file) {
+        return replay.convertToBinary(file);
+    }
+}
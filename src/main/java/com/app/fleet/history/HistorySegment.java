@@ -0,0 +1,354 @@
+package com.example.fleet.history;
+
+import com.example.fleet.model.TruckTelemetry;
+import reactor.core.publisher.Flux;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One rolling history segment: a memory-mapped file of fixed-width records plus a sidecar
+ * file of the truck ids that appear in it.
+ *
+ * File layout (little endian):
+ * - header (64 bytes): i32 magic "FHIS", i32 version, i32 capacity, i32 committed count,
+ *   i64 first ts, i64 last ts
+ * - records (32 bytes each): i32 next record of the same truck (-1 = none), i32 local truck
+ *   index, i64 ts millis, i32 lat*1e7, i32 lon*1e7, u16 speed*100, u16 fuel*100,
+ *   u16 heading*100, u16 reserved
+ *
+ * Per-truck index (in memory, rebuilt from the file on startup): each truck's records form a
+ * forward chain through the "next" field, cut into blocks of {@link #SPARSE_EVERY} records; the
+ * index keeps each block's first record and its lowest and highest ts, so a range query only walks
+ * the blocks whose ts span overlaps the range and checks each record in them. Timestamps come from
+ * the device and need not grow along the chain: a late point is found in whichever block holds it.
+ *
+ * Threading: a single writer appends and then {@link #commit()}s; readers only follow records
+ * below the committed count (volatile), so they never see a half-written record.
+ */
+final class HistorySegment implements Closeable {
+
+    static final int MAGIC = 0x46484953; // "FHIS"
+    static final int VERSION = 1;
+    static final int HEADER = 64;
+    static final int RECORD = 32;
+    static final int SPARSE_EVERY = 32;
+
+    private static final int H_CAPACITY = 8, H_COUNT = 12, H_FIRST_TS = 16, H_LAST_TS = 24;
+    private static final int R_NEXT = 0, R_LOCAL = 4, R_TS = 8, R_LAT = 16, R_LON = 20,
+            R_SPEED = 24, R_FUEL = 26, R_HEADING = 28;
+
+    final Path file;
+    final long createdAtMillis;
+    private final Path idsFile;
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+
+    // Writer-only state
+    private int written;
+    private int[] localByHandle = new int[0]; // handle -> local index + 1
+    private final StringBuilder pendingIds = new StringBuilder();
+
+    // Published to readers
+    private volatile int committed;
+    private volatile long firstTs = Long.MAX_VALUE;
+    private volatile long lastTs = Long.MIN_VALUE;
+
+    // Guarded by this (writer updates, readers look up start positions)
+    private final List<String> ids = new ArrayList<>();
+    private final Map<String, Integer> localById = new HashMap<>();
+    private Track[] tracks = new Track[64];
+
+    private HistorySegment(Path file, long createdAtMillis, int capacity, FileChannel channel, MappedByteBuffer buf) {
+        this.file = file;
+        this.createdAtMillis = createdAtMillis;
+        this.idsFile = idsFileOf(file);
+        this.capacity = capacity;
+        this.channel = channel;
+        this.buf = buf;
+    }
+
+    static HistorySegment create(Path file, int capacity, long nowMillis) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity * RECORD);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, VERSION);
+        buf.putInt(H_CAPACITY, capacity);
+        buf.putInt(H_COUNT, 0);
+        buf.putLong(H_FIRST_TS, Long.MAX_VALUE);
+        buf.putLong(H_LAST_TS, Long.MIN_VALUE);
+        Files.write(idsFileOf(file), new byte[0]);
+        return new HistorySegment(file, nowMillis, capacity, ch, buf);
+    }
+
+    /**
+     * Reopen a segment written by a previous run (sealed: read-only from now on).
+     */
+    static HistorySegment open(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (ch.size() < HEADER || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            ch.close();
+            throw new IOException("not a history segment: " + file);
+        }
+        int capacity = buf.getInt(H_CAPACITY);
+        int count = Math.min(buf.getInt(H_COUNT), (int) ((ch.size() - HEADER) / RECORD));
+
+        HistorySegment seg = new HistorySegment(file, Files.getLastModifiedTime(file).toMillis(), capacity, ch, buf);
+        List<String> known = Files.exists(seg.idsFile)
+                ? Files.readAllLines(seg.idsFile, StandardCharsets.UTF_8) : List.of();
+
+        synchronized (seg) {
+            for (String id : known) seg.addLocal(id);
+            for (int pos = 0; pos < count; pos++) {
+                int local = buf.getInt(seg.offset(pos) + R_LOCAL);
+                if (local < 0 || local >= seg.ids.size()) {
+                    count = pos; // ids sidecar lost its tail; keep what we can resolve
+                    break;
+                }
+                seg.tracks[local].add(pos, buf.getLong(seg.offset(pos) + R_TS));
+            }
+        }
+        seg.written = count;
+        seg.firstTs = buf.getLong(H_FIRST_TS);
+        seg.lastTs = buf.getLong(H_LAST_TS);
+        seg.committed = count;
+        return seg;
+    }
+
+    static Path idsFileOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".ids");
+    }
+
+    boolean isFull() {
+        return written >= capacity;
+    }
+
+    int committedCount() {
+        return committed;
+    }
+
+    long firstTs() {
+        return firstTs;
+    }
+
+    long lastTs() {
+        return lastTs;
+    }
+
+    long sizeBytes() {
+        return HEADER + (long) capacity * RECORD;
+    }
+
+    /**
+     * Append one point (writer thread only). Not visible to readers until {@link #commit()}.
+     */
+    void append(int handle, TruckTelemetry t) {
+        int pos = written++;
+        int local = localOf(handle, t.truckId());
+        long ts = t.ts() != null ? t.ts().toEpochMilli() : System.currentTimeMillis();
+
+        int o = offset(pos);
+        buf.putInt(o + R_NEXT, -1);
+        buf.putInt(o + R_LOCAL, local);
+        buf.putLong(o + R_TS, ts);
+        buf.putInt(o + R_LAT, (int) Math.round(t.lat() * 1e7));
+        buf.putInt(o + R_LON, (int) Math.round(t.lon() * 1e7));
+        buf.putShort(o + R_SPEED, u16(t.speedKph()));
+        buf.putShort(o + R_FUEL, u16(t.fuelPct()));
+        buf.putShort(o + R_HEADING, u16(t.headingDeg()));
+
+        synchronized (this) {
+            Track track = tracks[local];
+            if (track.last >= 0) {
+                buf.putInt(offset(track.last) + R_NEXT, pos);
+            }
+            track.add(pos, ts);
+        }
+        if (ts < firstTs) firstTs = ts;
+        if (ts > lastTs) lastTs = ts;
+    }
+
+    /**
+     * Publish everything appended so far to readers and to the file header.
+     */
+    void commit() throws IOException {
+        if (!pendingIds.isEmpty()) {
+            byte[] bytes = pendingIds.toString().getBytes(StandardCharsets.UTF_8);
+            Files.write(idsFile, bytes, StandardOpenOption.APPEND);
+            pendingIds.setLength(0);
+        }
+        buf.putLong(H_FIRST_TS, firstTs);
+        buf.putLong(H_LAST_TS, lastTs);
+        buf.putInt(H_COUNT, written);
+        committed = written;
+    }
+
+    /**
+     * Records of {@code truckId} with {@code from <= ts <= to}, in append order, read lazily
+     * from the mapped file.
+     */
+    Flux<TruckTelemetry> range(String truckId, long from, long to) {
+        if (to < firstTs || from > lastTs) return Flux.empty();
+        // Read before the index: every record below the limit is already in its block's ts span.
+        int limit = committed;
+        int[] blocks;
+        synchronized (this) {
+            Integer local = localById.get(truckId);
+            if (local == null) return Flux.empty();
+            blocks = tracks[local].blocksFor(from, to);
+        }
+        if (blocks.length == 0) return Flux.empty();
+        return Flux.generate(Cursor::new, (c, sink) -> {
+            while (true) {
+                if (c.left == 0) {
+                    if (c.block == blocks.length) {
+                        sink.complete();
+                        return c;
+                    }
+                    c.pos = blocks[c.block++];
+                    c.left = SPARSE_EVERY;
+                }
+                while (c.left > 0 && c.pos >= 0 && c.pos < limit) {
+                    int o = offset(c.pos);
+                    long ts = buf.getLong(o + R_TS);
+                    c.pos = buf.getInt(o + R_NEXT);
+                    c.left--;
+                    if (ts >= from && ts <= to) {
+                        sink.next(read(truckId, o, ts));
+                        return c;
+                    }
+                }
+                c.left = 0; // block done, or the chain ends before it is full
+            }
+        });
+    }
+
+    /** Walk state of one {@link #range} query: next block, position in the chain, records left in the block. */
+    private static final class Cursor {
+        int block;
+        int pos = -1;
+        int left;
+    }
+
+    private TruckTelemetry read(String truckId, int o, long ts) {
+        return new TruckTelemetry(
+                truckId,
+                Instant.ofEpochMilli(ts),
+                buf.getInt(o + R_LAT) / 1e7,
+                buf.getInt(o + R_LON) / 1e7,
+                (buf.getShort(o + R_SPEED) & 0xFFFF) / 100.0,
+                (buf.getShort(o + R_FUEL) & 0xFFFF) / 100.0,
+                (buf.getShort(o + R_HEADING) & 0xFFFF) / 100.0);
+    }
+
+    void force() {
+        buf.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close(); // the mapping stays valid until the buffer is collected
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(idsFile);
+    }
+
+    private int localOf(int handle, String truckId) {
+        if (handle >= 0) {
+            if (handle >= localByHandle.length) {
+                localByHandle = Arrays.copyOf(localByHandle, Math.max(handle + 1, localByHandle.length * 2));
+            }
+            int cached = localByHandle[handle];
+            if (cached != 0) return cached - 1;
+        }
+        int local;
+        synchronized (this) {
+            Integer existing = localById.get(truckId);
+            if (existing != null) {
+                local = existing;
+            } else {
+                local = addLocal(truckId);
+                pendingIds.append(truckId).append('\n');
+            }
+        }
+        if (handle >= 0) localByHandle[handle] = local + 1;
+        return local;
+    }
+
+    // Caller holds the monitor.
+    private int addLocal(String truckId) {
+        int local = ids.size();
+        ids.add(truckId);
+        localById.put(truckId, local);
+        if (local >= tracks.length) tracks = Arrays.copyOf(tracks, tracks.length * 2);
+        tracks[local] = new Track();
+        return local;
+    }
+
+    private int offset(int pos) {
+        return HEADER + pos * RECORD;
+    }
+
+    private static short u16(double v) {
+        long x = Math.round(v * 100);
+        return (short) Math.max(0, Math.min(0xFFFF, x));
+    }
+
+    /** One truck's chain in this segment: last record, and per block its first record and ts span. */
+    private static final class Track {
+        int last = -1;
+        int records;
+        int[] blockPos = new int[1];
+        long[] blockMinTs = new long[1];
+        long[] blockMaxTs = new long[1];
+        int blocks;
+
+        void add(int pos, long ts) {
+            last = pos;
+            if (records++ % SPARSE_EVERY == 0) {
+                if (blocks == blockPos.length) {
+                    blockPos = Arrays.copyOf(blockPos, blocks * 2);
+                    blockMinTs = Arrays.copyOf(blockMinTs, blocks * 2);
+                    blockMaxTs = Arrays.copyOf(blockMaxTs, blocks * 2);
+                }
+                blockPos[blocks] = pos;
+                blockMinTs[blocks] = ts;
+                blockMaxTs[blocks++] = ts;
+            } else {
+                int b = blocks - 1;
+                if (ts < blockMinTs[b]) blockMinTs[b] = ts;
+                if (ts > blockMaxTs[b]) blockMaxTs[b] = ts;
+            }
+        }
+
+        /** First record of every block holding a ts in [from, to], in chain order. */
+        int[] blocksFor(long from, long to) {
+            int[] out = new int[blocks];
+            int n = 0;
+            for (int b = 0; b < blocks; b++) {
+                if (blockMaxTs[b] >= from && blockMinTs[b] <= to) out[n++] = blockPos[b];
+            }
+            return n == blocks ? out : Arrays.copyOf(out, n);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.fleet.history;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.model.TruckTelemetry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Local telemetry history: every point is appended to rolling memory-mapped segment files
+ * ({@link HistorySegment}) and can be queried per truck by time range.
+ *
+ * Optimizations:
+ * - Fixed-width 32-byte records written straight into the mapping (no serialization, no syscalls
+ *   per point); the file header and truck-id sidecar are updated once per batch
+ * - Per-truck forward chains plus a sparse time index per segment: a range query touches only
+ *   that truck's records in blocks whose time span overlaps the range, never scans the segment
+ * - append() only enqueues the batch for a dedicated writer thread, so the simulator tick and
+ *   ingestion never wait on disk; when the bounded queue is full the batch is dropped and counted
+ * - Retention is per segment: a segment rolls after fleet.history.segment-minutes (or when full)
+ *   and is deleted whole once its newest record is older than fleet.history.retention-minutes
+ *
+ * Points keep their device timestamps, so they may arrive out of order; a late point is still
+ * returned by range queries (segments and records come back in append order, not sorted by time).
+ * Timestamps are kept at millisecond precision.
+ */
+@Service
+public class HistoryStore {
+
+    private static final String SUFFIX = ".seg";
+
+    private record Batch(List<TruckTelemetry> points, int[] handles) {}
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentRecords;
+    private final long segmentMs;
+    private final long retentionMs;
+    private final BlockingQueue<Batch> queue;
+
+    private final List<HistorySegment> segments = new CopyOnWriteArrayList<>(); // oldest first
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writer;
+    private HistorySegment active; // writer thread only
+    private long segmentSeq;       // writer thread only
+
+    public HistoryStore(FleetProperties props) {
+        FleetProperties.History cfg = props.history();
+        this.enabled = cfg != null && cfg.enabled();
+        this.dir = Paths.get(cfg == null || cfg.dir() == null || cfg.dir().isBlank() ? "data/history" : cfg.dir());
+        this.segmentRecords = cfg == null || cfg.segmentRecords() <= 0 ? 1 << 21 : cfg.segmentRecords();
+        this.segmentMs = TimeUnit.MINUTES.toMillis(cfg == null || cfg.segmentMinutes() <= 0 ? 10 : cfg.segmentMinutes());
+        this.retentionMs = TimeUnit.MINUTES.toMillis(cfg == null || cfg.retentionMinutes() <= 0 ? 120 : cfg.retentionMinutes());
+        this.queue = new ArrayBlockingQueue<>(cfg == null || cfg.queueBatches() <= 0 ? 256 : cfg.queueBatches());
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!enabled) return;
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path f : files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).sorted().toList()) {
+                try {
+                    segments.add(HistorySegment.open(f));
+                    segmentSeq = Math.max(segmentSeq, seqOf(f) + 1);
+                } catch (IOException | RuntimeException e) {
+                    writeErrors.incrementAndGet(); // unreadable segment: left on disk, not served
+                }
+            }
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        for (HistorySegment s : segments) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // closing on shutdown; the mapped data is already in the page cache
+            }
+        }
+    }
+
+    /**
+     * Queue a batch for appending; never blocks. {@code handleOf} maps batch index to registry handle.
+     *
+     * @return false if history is disabled or the batch was dropped (writer queue full)
+     */
+    public boolean append(List<TruckTelemetry> batch, IntUnaryOperator handleOf) {
+        if (!running || batch.isEmpty()) return false;
+        int[] handles = new int[batch.size()];
+        for (int i = 0; i < handles.length; i++) handles[i] = handleOf.applyAsInt(i);
+        if (!queue.offer(new Batch(batch, handles))) {
+            dropped.addAndGet(batch.size());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Recorded points of one truck with {@code fromMillis <= ts <= toMillis}, oldest segment first,
+     * streamed from the mapped files.
+     */
+    public Flux<TruckTelemetry> range(String truckId, long fromMillis, long toMillis) {
+        if (!enabled) return Flux.empty();
+        return Flux.fromIterable(segments)
+                .filter(s -> s.lastTs() >= fromMillis && s.firstTs() <= toMillis)
+                .concatMap(s -> s.range(truckId, fromMillis, toMillis));
+    }
+
+    public Stats stats() {
+        long bytes = 0;
+        for (HistorySegment s : segments) bytes += s.sizeBytes();
+        return new Stats(enabled, segments.size(), bytes, appended.get(), dropped.get(), writeErrors.get(), queue.size());
+    }
+
+    public record Stats(boolean enabled, int segments, long bytesMapped, long appended, long dropped,
+                        long writeErrors, int queuedBatches) { }
+
+    private void writeLoop() {
+        long nextRetention = 0;
+        while (running) {
+            try {
+                Batch b = queue.poll(1, TimeUnit.SECONDS);
+                if (b != null) {
+                    write(b);
+                    // Drain whatever queued meanwhile before one commit (fewer header updates).
+                    for (Batch more; (more = queue.poll()) != null; ) write(more);
+                    active.commit();
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextRetention) {
+                    enforceRetention(now);
+                    nextRetention = now + 30_000;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException | RuntimeException e) {
+                writeErrors.incrementAndGet(); // keep the writer alive; the batch is lost
+            }
+        }
+        try {
+            if (active != null) {
+                active.commit();
+                active.force();
+            }
+        } catch (IOException | RuntimeException e) {
+            writeErrors.incrementAndGet();
+        }
+    }
+
+    private void write(Batch b) throws IOException {
+        List<TruckTelemetry> points = b.points();
+        for (int i = 0; i < points.size(); i++) {
+            HistorySegment seg = activeSegment();
+            seg.append(b.handles()[i], points.get(i));
+        }
+        appended.addAndGet(points.size());
+    }
+
+    private HistorySegment activeSegment() throws IOException {
+        long now = System.currentTimeMillis();
+        if (active != null && !active.isFull() && now - active.createdAtMillis < segmentMs) {
+            return active;
+        }
+        if (active != null) {
+            active.commit();
+            active.force();
+        }
+        HistorySegment created = HistorySegment.create(dir.resolve(String.format("%012d%s", segmentSeq++, SUFFIX)),
+                segmentRecords, now);
+        segments.add(created);
+        active = created;
+        return created;
+    }
+
+    private void enforceRetention(long now) {
+        List<HistorySegment> expired = new ArrayList<>();
+        for (HistorySegment s : segments) {
+            if (s != active && s.committedCount() > 0 && s.lastTs() < now - retentionMs) expired.add(s);
+            else if (s != active && s.committedCount() == 0 && now - s.createdAtMillis > retentionMs) expired.add(s);
+        }
+        for (HistorySegment s : expired) {
+            segments.remove(s);
+            try {
+                s.delete();
+            } catch (IOException e) {
+                writeErrors.incrementAndGet();
+            }
+        }
+    }
+
+    private static long seqOf(Path f) {
+        String name = f.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.fleet.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micrometer meters for the telemetry pipeline, published through actuator
+ * (/actuator/metrics, and /actuator/prometheus when built with -Pprometheus).
+ *
+ * Optimization: every meter is registered once, up front, for each tag combination it can
+ * have (stage, sink x reason, transport). Hot paths index a pre-built array by enum ordinal,
+ * so recording never builds Tags or looks a meter up in the registry.
+ *
+ * Meters:
+ * - fleet.simulator.tick, fleet.simulator.tick.overruns: tick duration; ticks longer than fleet.simulator.tick-ms
+ * - fleet.pipeline.stage{stage=upsert|geofence|emit}: Redis bulk write, geofence batch, stream flush
+ * - fleet.sink.emit.failures{sink, reason}: failed Sinks.tryEmitNext by EmitResult
+ * - fleet.subscribers{transport=ws|rsocket|sse}: live stream subscribers
+ * - fleet.backpressure.dropped{transport}: updates replaced by a newer one (onBackpressureLatest, or per truck in
+ *   batch streams) before a slow subscriber asked for them
+ * - fleet.deadband.updates{result=passed|suppressed}: updates forwarded / held back by the dead-band filter
+ * - fleet.registry.refused: points dropped because their truck was new and fleet.registry.max-trucks was reached
+ *
+ * End-to-end latency (age of an update since TruckTelemetry.ts, i.e. since the simulator
+ * step or the device clock), as HDR-style histograms with p50/p99/p999 published:
+ * - fleet.latency.hop{hop=persisted|coalesced}: acknowledged by Redis; published by the coalescing flush
+ * - fleet.latency.sent{transport=ws|rsocket|sse}: handed to the socket (sse: alerts, aged from the triggering point)
+ * Ages are cumulative, so the cost of one hop is the difference between neighbouring medians.
+ */
+@Component
+public class FleetMetrics {
+
+    public enum Stage { UPSERT, GEOFENCE, EMIT }
+
+    public enum Sink { TELEMETRY, ENCODED, ALERTS, VIEWPORT, DENSITY }
+
+    public enum Transport { WS, RSOCKET, SSE }
+
+    public enum Hop { PERSISTED, COALESCED }
+
+    private static final Sinks.EmitResult[] RESULTS = Sinks.EmitResult.values();
+
+    private final Timer tick;
+    private final Counter tickOverruns;
+    private final Timer[] stages = new Timer[Stage.values().length];
+    private final Counter[][] emitFailures = new Counter[Sink.values().length][RESULTS.length];
+    private final AtomicInteger[] subscribers = new AtomicInteger[Transport.values().length];
+    private final Counter[] backpressureDropped = new Counter[Transport.values().length];
+    private final Timer[] hopLatency = new Timer[Hop.values().length];
+    private final Timer[] sentLatency = new Timer[Transport.values().length];
+    private final Counter deadBandPassed;
+    private final Counter deadBandSuppressed;
+    private final Counter registryRefused;
+
+    public FleetMetrics(MeterRegistry registry) {
+        this.tick = Timer.builder("fleet.simulator.tick")
+                .description("Simulator tick: step, materialize and publish through the pipeline")
+                .register(registry);
+        this.tickOverruns = Counter.builder("fleet.simulator.tick.overruns")
+                .description("Ticks that took longer than the tick interval")
+                .register(registry);
+
+        for (Stage s : Stage.values()) {
+            stages[s.ordinal()] = Timer.builder("fleet.pipeline.stage")
+                    .description("Time spent per batch in a pipeline stage")
+                    .tag("stage", tag(s))
+                    .register(registry);
+        }
+        for (Sink s : Sink.values()) {
+            for (Sinks.EmitResult r : RESULTS) {
+                if (r.isSuccess()) continue;
+                emitFailures[s.ordinal()][r.ordinal()] = Counter.builder("fleet.sink.emit.failures")
+                        .description("Failed emissions into a Reactor sink, by EmitResult")
+                        .tag("sink", tag(s))
+                        .tag("reason", r.name())
+                        .register(registry);
+            }
+        }
+        for (Transport t : Transport.values()) {
+            AtomicInteger count = new AtomicInteger();
+            subscribers[t.ordinal()] = count;
+            Gauge.builder("fleet.subscribers", count, AtomicInteger::get)
+                    .description("Live stream subscribers")
+                    .tag("transport", tag(t))
+                    .register(registry);
+            backpressureDropped[t.ordinal()] = Counter.builder("fleet.backpressure.dropped")
+                    .description("Updates superseded before a slow subscriber requested them")
+                    .tag("transport", tag(t))
+                    .register(registry);
+            sentLatency[t.ordinal()] = latencyTimer("fleet.latency.sent", "Age of an update when written to a subscriber")
+                    .tag("transport", tag(t))
+                    .register(registry);
+        }
+        this.deadBandPassed = Counter.builder("fleet.deadband.updates")
+                .description("Updates checked by the dead-band filter, by outcome")
+                .tag("result", "passed")
+                .register(registry);
+        this.deadBandSuppressed = Counter.builder("fleet.deadband.updates")
+                .description("Updates checked by the dead-band filter, by outcome")
+                .tag("result", "suppressed")
+                .register(registry);
+        this.registryRefused = Counter.builder("fleet.registry.refused")
+                .description("Points dropped because their truck id was new and the registry was full")
+                .register(registry);
+        for (Hop h : Hop.values()) {
+            hopLatency[h.ordinal()] = latencyTimer("fleet.latency.hop", "Age of an update when it leaves a pipeline hop")
+                    .tag("hop", tag(h))
+                    .register(registry);
+        }
+    }
+
+    private static Timer.Builder latencyTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .percentilePrecision(2)
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(1));
+    }
+
+    /** Meters that record into nothing, for code built outside Spring (tests, benchmarks). */
+    public static FleetMetrics noop() {
+        return new FleetMetrics(new CompositeMeterRegistry());
+    }
+
+    public void recordTick(long nanos, long intervalMs) {
+        tick.record(nanos, TimeUnit.NANOSECONDS);
+        if (nanos > TimeUnit.MILLISECONDS.toNanos(intervalMs)) {
+            tickOverruns.increment();
+        }
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDeadBand(int passed, int suppressed) {
+        if (passed > 0) deadBandPassed.increment(passed);
+        if (suppressed > 0) deadBandSuppressed.increment(suppressed);
+    }
+
+    public void recordRefused(int points) {
+        registryRefused.increment(points);
+    }
+
+    /** An update replaced by its truck's next one before a slow {@code transport} subscriber asked for it. */
+    public void recordSuperseded(Transport transport) {
+        backpressureDropped[transport.ordinal()].increment();
+    }
+
+    /** Age of an update leaving {@code hop}; {@code nowMs} lets batch callers read the clock once. */
+    public void recordAge(Hop hop, Instant ts, long nowMs) {
+        if (ts != null) record(hopLatency[hop.ordinal()], nowMs - ts.toEpochMilli());
+    }
+
+    /** Age of an update as it is written to a {@code transport} subscriber. */
+    public void recordSent(Transport transport, Instant ts) {
+        if (ts != null) record(sentLatency[transport.ordinal()], System.currentTimeMillis() - ts.toEpochMilli());
+    }
+
+    private static void record(Timer timer, long ageMs) {
+        // Device clocks can run ahead of ours; clamp instead of dropping the sample.
+        timer.record(Math.max(0, ageMs), TimeUnit.MILLISECONDS);
+    }
+
+    public void emitFailed(Sink sink, Sinks.EmitResult result) {
+        Counter c = emitFailures[sink.ordinal()][result.ordinal()];
+        if (c != null) c.increment();
+    }
+
+    /**
+     * Wraps a subscriber's stream: counts it as a live subscriber of {@code transport} while
+     * subscribed and keeps only the latest update when it is slow, counting the updates replaced.
+     * Replaces a bare {@code onBackpressureLatest()} at the transport edge.
+     */
+    public <T> Flux<T> latest(Transport transport, Flux<T> updates) {
+        Counter dropped = backpressureDropped[transport.ordinal()];
+        return tracked(transport, Flux.defer(() -> {
+            // Per subscription: everything received but never emitted was replaced by a newer update.
+            AtomicLong received = new AtomicLong();
+            long[] emitted = {0};
+            return updates
+                    .doOnNext(u -> received.incrementAndGet())
+                    .onBackpressureLatest()
+                    .doOnNext(u -> {
+                        long skipped = received.get() - ++emitted[0];
+                        if (skipped != 0) {
+                            // Negative only if a newer update raced in and was counted early.
+                            if (skipped > 0) dropped.increment(skipped);
+                            emitted[0] += skipped;
+                        }
+                    });
+        }));
+    }
+
+    /** Counts {@code stream} as a live subscriber of {@code transport} while subscribed, for streams that pace themselves. */
+    public <T> Flux<T> tracked(Transport transport, Flux<T> stream) {
+        AtomicInteger live = subscribers[transport.ordinal()];
+        return stream
+                .doOnSubscribe(s -> live.incrementAndGet())
+                .doFinally(sig -> live.decrementAndGet());
+    }
+
+    private static String tag(Enum<?> e) {
+        return e.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -3,12 +3,12 @@ package com.example.fleet.model;
 import java.time.Instant;
 
 /**
- * Alert emitted when a truck enters a geofence.
+ * Alert emitted when a truck enters, leaves or dwells in a geofence.
  */
 public record AlertEvent(
         String alertId,
         Instant ts,
-        String type,      // ENTER_GEOFENCE
+        String type,      // ENTER_GEOFENCE | EXIT_GEOFENCE | DWELL_GEOFENCE
         String truckId,
         String geofenceId,
         TruckTelemetry telemetry
@@ -0,0 +1,14 @@
+package com.example.fleet.model;
+
+/**
+ * Aggregate of the trucks inside one map tile (quadkey; its length is the zoom level).
+ * count == 0 means the tile just emptied and can be removed by the client.
+ */
+public record DensityCell(
+        String quadkey,
+        double lat,           // tile center
+        double lon,
+        int count,
+        double meanSpeedKph,
+        int lowFuel           // trucks at or below fleet.density.low-fuel-pct
+) { }
@@ -0,0 +1,13 @@
+package com.example.fleet.model;
+
+import java.util.List;
+
+/**
+ * One emission of a density stream: every non-empty cell (snapshot) or only the cells
+ * whose values changed since the previous frame.
+ */
+public record DensityFrame(
+        int precision,
+        boolean snapshot,
+        List<DensityCell> cells
+) { }
@@ -0,0 +1,8 @@
+package com.example.fleet.model;
+
+/**
+ * RSocket fleet.density request: grid precision as a map zoom level (quadkey length, 1-18).
+ */
+public record DensityRequest(
+        int precision
+) { }
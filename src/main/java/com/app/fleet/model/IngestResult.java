@@ -0,0 +1,10 @@
+package com.example.fleet.model;
+
+/**
+ * Ingestion outcome: points written to the live pipeline vs points refused
+ * (malformed, out of range, or lost to a failed batch write).
+ */
+public record IngestResult(
+        long accepted,
+        long rejected
+) { }
@@ -0,0 +1,9 @@
+package com.example.fleet.model;
+
+/**
+ * A truck found by a radius query, with its distance from the query point.
+ */
+public record NearbyTruck(
+        TruckTelemetry truck,
+        double distanceKm
+) { }
@@ -1,8 +1,12 @@
 package com.example.fleet.model;
 
 /**
- * Optional request used by RSocket clients to control sampling.
+ * Optional request used by RSocket clients to control sampling (and batching on fleet.positions.batch).
+ * With snapshot set, fleet.positions sends arrays: the latest state of every truck in batches,
+ * then live updates; sampleMs is ignored.
  */
 public record PositionsRequest(
-        long sampleMs // e.g. 250ms for smoother map animations
+        long sampleMs, // e.g. 250ms for smoother map animations
+        long batchMs,  // binary batch window; 0 = server default
+        boolean snapshot
 ) { }
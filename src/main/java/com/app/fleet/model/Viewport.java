@@ -0,0 +1,28 @@
+package com.example.fleet.model;
+
+/**
+ * Lat/lon bounding box of a client's map view (inclusive).
+ */
+public record Viewport(
+        double minLat,
+        double minLon,
+        double maxLat,
+        double maxLon
+) {
+    /** Same box with corners ordered and clamped to valid coordinates. */
+    public Viewport normalized() {
+        return new Viewport(
+                clamp(Math.min(minLat, maxLat), -90, 90),
+                clamp(Math.min(minLon, maxLon), -180, 180),
+                clamp(Math.max(minLat, maxLat), -90, 90),
+                clamp(Math.max(minLon, maxLon), -180, 180));
+    }
+
+    public boolean contains(double lat, double lon) {
+        return lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon;
+    }
+
+    private static double clamp(double v, double min, double max) {
+        return Math.max(min, Math.min(max, v));
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.fleet.repo;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.model.NearbyTruck;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.service.HandleArray;
+import com.example.fleet.service.TruckRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * In-process near-cache in front of the Redis store (decorator; wired as the primary
+ * {@link TruckStateRepository} in RedisConfig).
+ *
+ * Optimizations:
+ * - Write-through: every batch the pipeline persists is copied into a table indexed by
+ *   {@link TruckRegistry} handle once Redis acknowledges it, so the cache is never ahead
+ *   of Redis and get()/getMany() are array reads instead of a round trip per truck
+ * - list() pages from a recency-ordered array rebuilt at most every 250 ms (same order
+ *   as the Redis ZSET: newest write first, ties by id descending)
+ * - Bounded: at most fleet.cache.max-trucks entries; trucks beyond that are read from Redis
+ * - Freshness bound: an entry older than fleet.cache.max-age-ms is a miss, and a periodic
+ *   sweep evicts such entries (trucks that stopped reporting)
+ *
+ * Misses and cold starts fall back to Redis. A page is served from memory only if it lies
+ * entirely within the cached trucks or the cache holds as many trucks as Redis (last ZCARD),
+ * so pages beyond the cached window return the older trucks that only Redis knows about.
+ * Assumes this process is the only writer of the live state, like the rest of the app.
+ */
+public class CachingTruckStateRepository implements TruckStateRepository {
+
+    private static final long RECENCY_REFRESH_MS = 250;
+
+    private record Entry(TruckTelemetry telemetry, long cachedAtMs, long seq) {}
+
+    private record Recency(TruckTelemetry[] trucks, long builtAtMs, long seq) {}
+
+    private final TruckStateRepository delegate;
+    private final TruckRegistry registry;
+    private final boolean enabled;
+    private final int maxTrucks;
+    private final long maxAgeMs;
+
+    private final HandleArray<Entry> entries = new HandleArray<>();
+    private final AtomicInteger cached = new AtomicInteger();
+    private final AtomicLong writeSeq = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private volatile Recency recency = new Recency(new TruckTelemetry[0], 0, 0);
+    private volatile long redisCount = -1; // last known ZCARD; -1 = unknown (cold start)
+
+    private volatile Disposable sweeper;
+
+    public CachingTruckStateRepository(FleetProperties props, TruckStateRepository delegate, TruckRegistry registry) {
+        this.delegate = delegate;
+        this.registry = registry;
+        FleetProperties.Cache cfg = props.cache();
+        this.enabled = cfg != null && cfg.enabled();
+        this.maxTrucks = cfg == null || cfg.maxTrucks() <= 0 ? 100_000 : cfg.maxTrucks();
+        this.maxAgeMs = cfg == null || cfg.maxAgeMs() <= 0 ? 30_000 : cfg.maxAgeMs();
+    }
+
+    @PostConstruct
+    void startSweeper() {
+        if (!enabled) return;
+        this.sweeper = Flux.interval(Duration.ofMillis(Math.max(1000, maxAgeMs / 2)))
+                .concatMap(tick -> {
+                    evictStale(System.currentTimeMillis());
+                    return refreshCount();
+                })
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stopSweeper() {
+        if (sweeper != null && !sweeper.isDisposed()) {
+            sweeper.dispose();
+        }
+    }
+
+    @Override
+    public Mono<Void> upsert(TruckTelemetry telemetry) {
+        if (!enabled) return delegate.upsert(telemetry);
+        return delegate.upsert(telemetry)
+                .doOnSuccess(ok -> put(registry.tryHandleOf(telemetry.truckId()), telemetry,
+                        System.currentTimeMillis(), writeSeq.incrementAndGet()));
+    }
+
+    @Override
+    public Mono<Void> upsertAll(Collection<TruckTelemetry> batch) {
+        List<TruckTelemetry> all = batch instanceof List<TruckTelemetry> l ? l : new ArrayList<>(batch);
+        int[] handles = new int[all.size()];
+        for (int i = 0; i < handles.length; i++) handles[i] = registry.tryHandleOf(all.get(i).truckId());
+        return upsertAll(all, i -> handles[i]);
+    }
+
+    @Override
+    public Mono<Void> upsertAll(List<TruckTelemetry> batch, IntUnaryOperator handleOf) {
+        if (!enabled) return delegate.upsertAll(batch, handleOf);
+        return delegate.upsertAll(batch, handleOf)
+                .doOnSuccess(ok -> {
+                    long now = System.currentTimeMillis();
+                    long seq = writeSeq.incrementAndGet();
+                    for (int i = 0; i < batch.size(); i++) {
+                        put(handleOf.applyAsInt(i), batch.get(i), now, seq);
+                    }
+                });
+    }
+
+    // A truck without a handle (the registry was full) cannot be cached: counted as rejected.
+    private void put(int h, TruckTelemetry t, long now, long seq) {
+        if (h == TruckRegistry.NO_HANDLE) {
+            rejected.incrementAndGet();
+            return;
+        }
+        Entry next = new Entry(t, now, seq);
+        while (true) {
+            Entry old = entries.get(h);
+            if (old != null && old.seq() > seq) return; // a newer write already landed
+            if (old == null && cached.get() >= maxTrucks) {
+                rejected.incrementAndGet();
+                return;
+            }
+            if (entries.compareAndSet(h, old, next)) {
+                if (old == null) cached.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Mono<TruckTelemetry> get(String truckId) {
+        if (!enabled) return delegate.get(truckId);
+        TruckTelemetry t = lookup(truckId, System.currentTimeMillis());
+        if (t != null) {
+            hits.incrementAndGet();
+            return Mono.just(t);
+        }
+        misses.incrementAndGet();
+        return delegate.get(truckId);
+    }
+
+    @Override
+    public Flux<TruckTelemetry> getMany(Collection<String> truckIds) {
+        if (!enabled || truckIds.isEmpty()) return delegate.getMany(truckIds);
+
+        long now = System.currentTimeMillis();
+        List<String> ids = truckIds instanceof List<String> l ? l : new ArrayList<>(truckIds);
+        TruckTelemetry[] found = new TruckTelemetry[ids.size()];
+        List<String> missing = null;
+        for (int i = 0; i < found.length; i++) {
+            found[i] = lookup(ids.get(i), now);
+            if (found[i] == null) {
+                if (missing == null) missing = new ArrayList<>();
+                missing.add(ids.get(i));
+            }
+        }
+        hits.addAndGet(found.length - (missing == null ? 0 : missing.size()));
+        if (missing == null) {
+            return Flux.fromArray(found);
+        }
+
+        misses.addAndGet(missing.size());
+        // One batched read for the misses, merged back in request order.
+        return delegate.getMany(missing)
+                .collectMap(TruckTelemetry::truckId)
+                .flatMapIterable(fromRedis -> {
+                    List<TruckTelemetry> out = new ArrayList<>(found.length);
+                    for (int i = 0; i < found.length; i++) {
+                        TruckTelemetry t = found[i] != null ? found[i] : fromRedis.get(ids.get(i));
+                        if (t != null) out.add(t);
+                    }
+                    return out;
+                });
+    }
+
+    private TruckTelemetry lookup(String truckId, long now) {
+        int h = registry.find(truckId);
+        if (h == TruckRegistry.NO_HANDLE) return null;
+        Entry e = entries.get(h);
+        return e != null && now - e.cachedAtMs() <= maxAgeMs ? e.telemetry() : null;
+    }
+
+    @Override
+    public Flux<TruckTelemetry> list(int offset, int limit) {
+        if (!enabled) return delegate.list(offset, limit);
+
+        TruckTelemetry[] trucks = recency(System.currentTimeMillis()).trucks();
+        int from = Math.max(0, offset);
+        int to = (int) Math.min((long) from + Math.max(1, limit), Integer.MAX_VALUE);
+        long total = redisCount;
+        boolean complete = total >= 0 && trucks.length >= total;
+        if (to > trucks.length && !complete) {
+            misses.incrementAndGet();
+            return delegate.list(offset, limit);
+        }
+        hits.incrementAndGet();
+        if (from >= trucks.length) return Flux.empty();
+        return Flux.fromArray(Arrays.copyOfRange(trucks, from, Math.min(to, trucks.length)));
+    }
+
+    private Recency recency(long now) {
+        Recency r = recency;
+        if (now - r.builtAtMs() < RECENCY_REFRESH_MS || r.seq() == writeSeq.get()) return r;
+        synchronized (this) {
+            r = recency;
+            if (now - r.builtAtMs() < RECENCY_REFRESH_MS || r.seq() == writeSeq.get()) return r;
+
+            long seq = writeSeq.get();
+            List<Entry> live = new ArrayList<>(cached.get());
+            for (int h = 0, n = registry.size(); h < n; h++) {
+                Entry e = entries.get(h);
+                if (e != null && now - e.cachedAtMs() <= maxAgeMs) live.add(e);
+            }
+            live.sort((a, b) -> a.seq() != b.seq()
+                    ? Long.compare(b.seq(), a.seq())
+                    : b.telemetry().truckId().compareTo(a.telemetry().truckId()));
+
+            TruckTelemetry[] trucks = new TruckTelemetry[live.size()];
+            for (int i = 0; i < trucks.length; i++) trucks[i] = live.get(i).telemetry();
+            r = new Recency(trucks, now, seq);
+            recency = r;
+            return r;
+        }
+    }
+
+    /**
+     * Drop entries past the freshness bound. Called by the sweeper; package-private for tests.
+     *
+     * @return number of entries evicted
+     */
+    int evictStale(long now) {
+        int removed = 0;
+        for (int h = 0, n = registry.size(); h < n; h++) {
+            Entry e = entries.get(h);
+            if (e != null && now - e.cachedAtMs() > maxAgeMs && entries.compareAndSet(h, e, null)) {
+                cached.decrementAndGet();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            evicted.addAndGet(removed);
+            recency = new Recency(recency.trucks(), 0, -1); // rebuild on the next list()
+        }
+        return removed;
+    }
+
+    private Mono<Long> refreshCount() {
+        return delegate.count()
+                .doOnNext(n -> redisCount = n)
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    @Override
+    public Flux<NearbyTruck> nearby(double lat, double lon, double radiusKm, int limit) {
+        return delegate.nearby(lat, lon, radiusKm, limit);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        if (!enabled) return delegate.count();
+        return delegate.count().doOnNext(n -> redisCount = n);
+    }
+
+    @Override
+    public Mono<Void> clearAll() {
+        return delegate.clearAll()
+                .doOnSuccess(ok -> {
+                    for (int h = 0, n = registry.size(); h < n; h++) {
+                        if (entries.get(h) != null) {
+                            entries.set(h, null);
+                            cached.decrementAndGet();
+                        }
+                    }
+                    redisCount = -1;
+                    recency = new Recency(new TruckTelemetry[0], 0, writeSeq.incrementAndGet());
+                });
+    }
+
+    public Stats stats() {
+        return new Stats(enabled, cached.get(), maxTrucks, maxAgeMs, hits.get(), misses.get(), rejected.get(), evicted.get());
+    }
+
+    public record Stats(boolean enabled, int cached, int maxTrucks, long maxAgeMs,
+                        long hits, long misses, long rejected, long evicted) { }
+}
@@ -1,57 +1,212 @@
 package com.example.fleet.repo;
 
+import com.example.fleet.model.NearbyTruck;
 import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.service.TruckRegistry;
+import org.springframework.data.domain.Range;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation;
+import org.springframework.data.redis.connection.RedisGeoCommands.GeoSearchCommandArgs;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.domain.geo.GeoReference;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Redis-backed live state store.
+ *
+ * Optimization: use a Sorted Set (ZSET) for stable paging:
+ * - ZSET key stores truckIds with score = lastUpdateEpochMillis
+ * - list() pages via reverseRange (most recently updated first) and resolves the page
+ *   with chunked MGETs, so a 2,000-truck page costs a handful of round trips
+ *
+ * Optimization: upsertAll() writes a whole tick as one MSET + one multi-member ZADD
+ * per chunk. Lettuce shares a single native connection and does not wait for a reply
+ * before writing the next command, so the chunks issued concurrently are pipelined
+ * on that connection: 5,000 trucks cost ~10 commands instead of 10,000.
+ *
+ * Optimization: bulk writes go straight to the connection with the key and member bytes
+ * cached per truck by {@link TruckRegistry}; only the value is serialized per update.
+ *
+ * Optimization: a GEO set (truck:geo) is updated by a GEOADD in the same pipelined chunk
+ * write, so nearby() is one GEOSEARCH (sorted, limited by Redis) plus batched MGETs
+ * for the hits, instead of reading the whole fleet and filtering.
+ */
 @Repository
 public class RedisTruckStateRepository implements TruckStateRepository {
 
-    private static final String KEY_PREFIX = "truck:";
-    private static final String IDS_KEY = "truck:ids";
+    private static final String KEY_PREFIX = TruckRegistry.REDIS_KEY_PREFIX;
+    private static final String IDS_ZSET = "truck:ids:z";
+    private static final byte[] IDS_ZSET_BYTES = IDS_ZSET.getBytes(StandardCharsets.UTF_8);
+    private static final String GEO_KEY = "truck:geo";
+    private static final byte[] GEO_KEY_BYTES = GEO_KEY.getBytes(StandardCharsets.UTF_8);
+    // Redis GEO only indexes Web Mercator latitudes.
+    private static final double GEO_MAX_LAT = 85.05112878;
+    private static final int WRITE_CHUNK = 500;
+    private static final int CHUNK_CONCURRENCY = 8;
+    private static final int READ_CHUNK = 500;
 
     private final ReactiveRedisTemplate<String, TruckTelemetry> telemetryTemplate;
     private final ReactiveRedisTemplate<String, String> stringTemplate;
+    private final SerializationPair<TruckTelemetry> values;
+    private final TruckRegistry registry;
 
     public RedisTruckStateRepository(ReactiveRedisTemplate<String, TruckTelemetry> telemetryTemplate,
-                                    ReactiveRedisTemplate<String, String> stringTemplate) {
+                                    ReactiveRedisTemplate<String, String> stringTemplate,
+                                    TruckRegistry registry) {
         this.telemetryTemplate = telemetryTemplate;
         this.stringTemplate = stringTemplate;
+        this.values = telemetryTemplate.getSerializationContext().getValueSerializationPair();
+        this.registry = registry;
     }
 
     @Override
     public Mono<Void> upsert(TruckTelemetry telemetry) {
         String key = KEY_PREFIX + telemetry.truckId();
+        double score = (double) Instant.now().toEpochMilli();
+
+        Mono<Void> geo = geoIndexable(telemetry)
+                ? stringTemplate.opsForGeo().add(GEO_KEY, new Point(telemetry.lon(), telemetry.lat()), telemetry.truckId()).then()
+                : Mono.empty();
         return telemetryTemplate.opsForValue().set(key, telemetry)
-                .then(stringTemplate.opsForSet().add(IDS_KEY, telemetry.truckId()).then())
+                .then(stringTemplate.opsForZSet().add(IDS_ZSET, telemetry.truckId(), score).then())
+                .then(geo);
+    }
+
+    @Override
+    public Mono<Void> upsertAll(Collection<TruckTelemetry> batch) {
+        List<TruckTelemetry> all = batch instanceof List<TruckTelemetry> l ? l : new ArrayList<>(batch);
+        return upsertAll(all, i -> registry.tryHandleOf(all.get(i).truckId()));
+    }
+
+    /**
+     * Trucks without a handle (the registry was full) are still written, with their key and
+     * member bytes built for this write instead of read from the registry.
+     */
+    @Override
+    public Mono<Void> upsertAll(List<TruckTelemetry> batch, IntUnaryOperator handleOf) {
+        if (batch.isEmpty()) return Mono.empty();
+
+        double score = (double) Instant.now().toEpochMilli();
+        int chunks = (batch.size() + WRITE_CHUNK - 1) / WRITE_CHUNK;
+
+        return Flux.range(0, chunks)
+                .flatMap(c -> writeChunk(batch, c * WRITE_CHUNK, Math.min(batch.size(), (c + 1) * WRITE_CHUNK),
+                        handleOf, score), CHUNK_CONCURRENCY)
                 .then();
     }
 
+    private Mono<Void> writeChunk(List<TruckTelemetry> batch, int from, int to, IntUnaryOperator handleOf,
+                                  double score) {
+        int size = to - from;
+        // LinkedHashMap: the last update wins if a truck appears twice in one chunk.
+        Map<ByteBuffer, ByteBuffer> entries = new LinkedHashMap<>(size * 2);
+        List<Tuple> ids = new ArrayList<>(size);
+        List<GeoLocation<ByteBuffer>> positions = new ArrayList<>(size);
+        for (int i = from; i < to; i++) {
+            TruckTelemetry t = batch.get(i);
+            int h = handleOf.applyAsInt(i);
+            byte[] key = h != TruckRegistry.NO_HANDLE ? registry.redisKey(h)
+                    : (KEY_PREFIX + t.truckId()).getBytes(StandardCharsets.UTF_8);
+            byte[] id = h != TruckRegistry.NO_HANDLE ? registry.idBytes(h)
+                    : t.truckId().getBytes(StandardCharsets.UTF_8);
+            entries.put(ByteBuffer.wrap(key), values.write(t));
+            ids.add(new DefaultTuple(id, score));
+            if (geoIndexable(t)) {
+                positions.add(new GeoLocation<>(ByteBuffer.wrap(id), new Point(t.lon(), t.lat())));
+            }
+        }
+        // All three commands go out back-to-back; we only wait for the replies.
+        return telemetryTemplate.execute(conn -> Mono.when(
+                        conn.stringCommands().mSet(entries),
+                        conn.zSetCommands().zAdd(ByteBuffer.wrap(IDS_ZSET_BYTES), ids),
+                        positions.isEmpty() ? Mono.empty() : conn.geoCommands().geoAdd(ByteBuffer.wrap(GEO_KEY_BYTES), positions)))
+                .then();
+    }
+
+    private static boolean geoIndexable(TruckTelemetry t) {
+        return Math.abs(t.lat()) <= GEO_MAX_LAT && Math.abs(t.lon()) <= 180;
+    }
+
+    private static <T> List<List<T>> chunk(Collection<T> batch, int size) {
+        List<T> all = batch instanceof List<T> l ? l : new ArrayList<>(batch);
+        List<List<T>> out = new ArrayList<>((all.size() + size - 1) / size);
+        for (int from = 0; from < all.size(); from += size) {
+            out.add(all.subList(from, Math.min(all.size(), from + size)));
+        }
+        return out;
+    }
+
     @Override
     public Mono<TruckTelemetry> get(String truckId) {
         return telemetryTemplate.opsForValue().get(KEY_PREFIX + truckId);
     }
 
+    @Override
+    public Flux<TruckTelemetry> getMany(Collection<String> truckIds) {
+        if (truckIds.isEmpty()) return Flux.empty();
+
+        List<String> keys = new ArrayList<>(truckIds.size());
+        for (String id : truckIds) keys.add(KEY_PREFIX + id);
+
+        // flatMapSequential: chunks are fetched concurrently but emitted in request order.
+        return Flux.fromIterable(chunk(keys, READ_CHUNK))
+                .flatMapSequential(chunk -> telemetryTemplate.opsForValue().multiGet(chunk), CHUNK_CONCURRENCY)
+                // MGET returns null for keys that expired or were never written.
+                .concatMapIterable(values -> values.stream().filter(Objects::nonNull).toList());
+    }
+
     @Override
     public Flux<TruckTelemetry> list(int offset, int limit) {
-        // Redis sets are unordered; for dashboards you usually page by a stable list or query by geo index.
-        // For this demo, we take a slice from the set membership stream.
-        return stringTemplate.opsForSet().members(IDS_KEY)
-                .skip(offset)
-                .take(limit)
-                .flatMap(this::get);
+        long start = Math.max(0, offset);
+        long end = start + Math.max(1, limit) - 1;
+
+        return stringTemplate.opsForZSet().reverseRange(IDS_ZSET, Range.closed(start, end))
+                .collectList()
+                .flatMapMany(this::getMany);
+    }
+
+    @Override
+    public Flux<NearbyTruck> nearby(double lat, double lon, double radiusKm, int limit) {
+        GeoSearchCommandArgs args = GeoSearchCommandArgs.newGeoSearchArgs()
+                .includeDistance()
+                .sortAscending()
+                .limit(Math.max(1, limit));
+
+        return stringTemplate.opsForGeo()
+                .search(GEO_KEY, GeoReference.fromCoordinate(lon, lat), new Distance(radiusKm, Metrics.KILOMETERS), args)
+                .collectList()
+                .flatMapMany(hits -> {
+                    Map<String, Double> distanceById = new LinkedHashMap<>(hits.size() * 2);
+                    for (GeoResult<GeoLocation<String>> hit : hits) {
+                        distanceById.put(hit.getContent().getName(), hit.getDistance().getValue());
+                    }
+                    // One batched read for all hits; getMany keeps GEOSEARCH's distance order.
+                    return getMany(distanceById.keySet())
+                            .map(t -> new NearbyTruck(t, distanceById.get(t.truckId())));
+                });
     }
 
     @Override
     public Mono<Long> count() {
-        return stringTemplate.opsForSet().size(IDS_KEY);
+        return stringTemplate.opsForZSet().size(IDS_ZSET);
     }
 
     @Override
     public Mono<Void> clearAll() {
-        // Delete set of ids and rely on key expiry in production; for demo we delete ids only.
-        return stringTemplate.delete(IDS_KEY).then();
+        return stringTemplate.delete(IDS_ZSET, GEO_KEY).then();
     }
 }
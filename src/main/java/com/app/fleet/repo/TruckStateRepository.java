@@ -1,66 +1,52 @@
 package com.example.fleet.repo;
 
+import com.example.fleet.model.NearbyTruck;
 import com.example.fleet.model.TruckTelemetry;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
 
 /**
- * Redis-backed live state store.
- *
- * Optimization: use a Sorted Set (ZSET) for stable paging:
- * - ZSET key stores truckIds with score = lastUpdateEpochMillis
- * - list() pages via reverseRange (most recently updated first)
+ * Live (latest-per-truck) state store used by the simulator and the REST API.
  */
-@Repository
-public class RedisTruckStateRepository implements TruckStateRepository {
-
-    private static final String KEY_PREFIX = "truck:";
-    private static final String IDS_ZSET = "truck:ids:z";
-
-    private final ReactiveRedisTemplate<String, TruckTelemetry> telemetryTemplate;
-    private final ReactiveRedisTemplate<String, String> stringTemplate;
-
-    public RedisTruckStateRepository(ReactiveRedisTemplate<String, TruckTelemetry> telemetryTemplate,
-                                    ReactiveRedisTemplate<String, String> stringTemplate) {
-        this.telemetryTemplate = telemetryTemplate;
-        this.stringTemplate = stringTemplate;
+public interface TruckStateRepository {
+
+    Mono<Void> upsert(TruckTelemetry telemetry);
+
+    /**
+     * Write a whole batch (e.g. one simulator tick) in as few round trips as the store allows.
+     */
+    Mono<Void> upsertAll(Collection<TruckTelemetry> batch);
+
+    /**
+     * Same as {@link #upsertAll(Collection)} for callers that already hold each truck's
+     * {@link com.example.fleet.service.TruckRegistry} handle ({@code handleOf} maps batch index to
+     * handle, {@code NO_HANDLE} if the truck has none).
+     */
+    default Mono<Void> upsertAll(List<TruckTelemetry> batch, IntUnaryOperator handleOf) {
+        return upsertAll(batch);
     }
 
-    @Override
-    public Mono<Void> upsert(TruckTelemetry telemetry) {
-        String key = KEY_PREFIX + telemetry.truckId();
-        double score = (double) Instant.now().toEpochMilli();
+    Mono<TruckTelemetry> get(String truckId);
 
-        return telemetryTemplate.opsForValue().set(key, telemetry)
-                .then(stringTemplate.opsForZSet().add(IDS_ZSET, telemetry.truckId(), score).then())
-                .then();
-    }
+    /**
+     * Resolve many trucks in batched reads. Results keep the order of {@code truckIds};
+     * ids without a stored value are skipped.
+     */
+    Flux<TruckTelemetry> getMany(Collection<String> truckIds);
 
-    @Override
-    public Mono<TruckTelemetry> get(String truckId) {
-        return telemetryTemplate.opsForValue().get(KEY_PREFIX + truckId);
-    }
+    Flux<TruckTelemetry> list(int offset, int limit);
 
-    @Override
-    public Flux<TruckTelemetry> list(int offset, int limit) {
-        long start = Math.max(0, offset);
-        long end = start + Math.max(1, limit) - 1;
+    /**
+     * Trucks whose last position is within {@code radiusKm} of (lat, lon), nearest first,
+     * at most {@code limit}.
+     */
+    Flux<NearbyTruck> nearby(double lat, double lon, double radiusKm, int limit);
 
-        return stringTemplate.opsForZSet().reverseRange(IDS_ZSET, start, end)
-                .flatMap(this::get);
-    }
-
-    @Override
-    public Mono<Long> count() {
-        return stringTemplate.opsForZSet().zCard(IDS_ZSET);
-    }
+    Mono<Long> count();
 
-    @Override
-    public Mono<Void> clearAll() {
-        return stringTemplate.delete(IDS_ZSET).then();
-    }
+    Mono<Void> clearAll();
 }
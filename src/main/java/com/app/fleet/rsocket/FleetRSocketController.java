@@ -1,15 +1,35 @@
 package com.example.fleet.rsocket;
 
+import com.example.fleet.codec.TelemetryBatchCodec;
+import com.example.fleet.metrics.FleetMetrics;
 import com.example.fleet.model.AlertEvent;
+import com.example.fleet.model.DensityFrame;
+import com.example.fleet.model.DensityRequest;
+import com.example.fleet.model.IngestResult;
 import com.example.fleet.model.PositionsRequest;
 import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.model.Viewport;
+import com.example.fleet.service.AdaptiveTelemetryService;
 import com.example.fleet.service.AlertStreamService;
+import com.example.fleet.service.DensityService;
+import com.example.fleet.service.EncodedTelemetry;
+import com.example.fleet.service.IngestService;
 import com.example.fleet.service.TelemetryStreamService;
+import com.example.fleet.service.ViewportStreamService;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
 import reactor.core.publisher.Flux;
 
 import java.time.Duration;
+import java.util.List;
 
 /**
  * RSocket routes for bidirectional streaming.
@@ -17,34 +37,160 @@ import java.time.Duration;
  * Example client route:
  * - route: fleet.positions
  * - data: { "sampleMs": 250 }
+ *
+ * Snapshot-then-live variant of the same route (JSON arrays: the latest state of every truck in
+ * batches of up to TelemetryStreamService.SNAPSHOT_BATCH, then each live update, with no gap):
+ * - route: fleet.positions
+ * - data: { "snapshot": true }
+ *
+ * Compact binary variant (same request, batched {@link TelemetryBatchCodec} frames,
+ * retrieve as byte[] / DataBuffer on any connection data MIME type):
+ * - route: fleet.positions.batch
+ * - data: { "sampleMs": 0, "batchMs": 100 }
+ *
+ * Adaptive variant (latest state of every changed truck per frame; interval and coordinate
+ * precision follow this requester's demand, see AdaptiveTelemetryService; retrieve as byte[]):
+ * - route: fleet.positions.adaptive
+ *
+ * Viewport-filtered request-channel (send a new box at any time to pan/zoom):
+ * - route: fleet.positions.viewport
+ * - data: Flux of { "minLat": 51.45, "minLon": -0.2, "maxLat": 51.55, "maxLon": -0.05 }
+ *
+ * Per-tile aggregates for zoomed-out maps (snapshot, then only changed cells; precision = zoom 1-18):
+ * - route: fleet.density
+ * - data: { "precision": 10 }
+ *
+ * Device ingestion request-channel (points in, running accepted/rejected totals out per batch):
+ * - route: fleet.ingest
+ * - data: Flux of TruckTelemetry
+ *
+ * On connections with a JSON data MIME type, position payloads reuse the bytes encoded
+ * once in TelemetryStreamService; other MIME types (e.g. CBOR) are encoded per requester.
  */
 @Controller
 public class FleetRSocketController {
 
+    static final long DEFAULT_BATCH_MS = 100;
+
+    private static final ResolvableType TELEMETRY_TYPE = ResolvableType.forClass(TruckTelemetry.class);
+    private static final ResolvableType TELEMETRY_LIST_TYPE =
+            ResolvableType.forClassWithGenerics(List.class, TruckTelemetry.class);
+
     private final TelemetryStreamService telemetry;
+    private final ViewportStreamService viewports;
+    private final AdaptiveTelemetryService adaptive;
     private final AlertStreamService alerts;
+    private final DensityService density;
+    private final IngestService ingest;
+    private final RSocketStrategies strategies;
+    private final FleetMetrics metrics;
 
-    public FleetRSocketController(TelemetryStreamService telemetry, AlertStreamService alerts) {
+    public FleetRSocketController(TelemetryStreamService telemetry,
+                                  ViewportStreamService viewports,
+                                  AdaptiveTelemetryService adaptive,
+                                  AlertStreamService alerts,
+                                  DensityService density,
+                                  IngestService ingest,
+                                  RSocketStrategies strategies,
+                                  FleetMetrics metrics) {
         this.telemetry = telemetry;
+        this.viewports = viewports;
+        this.adaptive = adaptive;
         this.alerts = alerts;
+        this.density = density;
+        this.ingest = ingest;
+        this.strategies = strategies;
+        this.metrics = metrics;
     }
 
     @MessageMapping("fleet.positions")
-    public Flux<TruckTelemetry> positions(PositionsRequest req) {
+    public Flux<DataBuffer> positions(PositionsRequest req, RSocketRequester requester) {
+        if (req != null && req.snapshot()) {
+            return encodeBatches(metrics.tracked(FleetMetrics.Transport.RSOCKET,
+                    telemetry.snapshotThenLive(TelemetryStreamService.SNAPSHOT_BATCH)), requester.dataMimeType());
+        }
+        // Backpressure safety: latest events only if consumer is slow (applied before encoding,
+        // so dropped updates never hold a buffer).
+        return encode(metrics.latest(FleetMetrics.Transport.RSOCKET, sampled(telemetry.encodedStream(), req)),
+                requester.dataMimeType());
+    }
+
+    @MessageMapping("fleet.positions.batch")
+    public Flux<byte[]> positionsBatch(PositionsRequest req) {
+        long batchMs = req == null || req.batchMs() <= 0 ? DEFAULT_BATCH_MS : Math.max(10, req.batchMs());
+
+        return Flux.defer(() -> {
+            var encoder = TelemetryBatchCodec.encoder(); // per-subscription truck-id dictionary
+            // Coalesced per truck and drained only on demand: a slow requester still gets every truck,
+            // and only frames actually sent carry dictionary entries.
+            var batches = telemetry.latestBatches(sampled(telemetry.stream(), req), Duration.ofMillis(batchMs),
+                    TelemetryBatchCodec.MAX_BATCH, FleetMetrics.Transport.RSOCKET);
+            return metrics.tracked(FleetMetrics.Transport.RSOCKET, batches)
+                    .doOnNext(batch -> {
+                        for (TruckTelemetry t : batch) metrics.recordSent(FleetMetrics.Transport.RSOCKET, t.ts());
+                    })
+                    .map(encoder::encode);
+        });
+    }
+
+    @MessageMapping("fleet.positions.adaptive")
+    public Flux<byte[]> positionsAdaptive() {
+        return adaptive.stream(FleetMetrics.Transport.RSOCKET);
+    }
+
+    @MessageMapping("fleet.positions.viewport")
+    public Flux<DataBuffer> positionsInViewport(Flux<Viewport> boxes, RSocketRequester requester) {
+        return encode(metrics.latest(FleetMetrics.Transport.RSOCKET, viewports.stream(boxes)), requester.dataMimeType());
+    }
+
+    private Flux<DataBuffer> encode(Flux<EncodedTelemetry> updates, MimeType mimeType) {
+        DataBufferFactory factory = strategies.dataBufferFactory();
+        updates = updates.doOnNext(e -> metrics.recordSent(FleetMetrics.Transport.RSOCKET, e.telemetry().ts()));
+        if (MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType)) {
+            // Shared bytes encoded once upstream; wrap() does not copy.
+            return updates.map(e -> factory.wrap(e.json()));
+        }
+        Encoder<TruckTelemetry> encoder = strategies.encoder(TELEMETRY_TYPE, mimeType);
+        return updates.map(e -> encoder.encodeValue(e.telemetry(), factory, TELEMETRY_TYPE, mimeType, null));
+    }
+
+    private Flux<DataBuffer> encodeBatches(Flux<List<EncodedTelemetry>> batches, MimeType mimeType) {
+        DataBufferFactory factory = strategies.dataBufferFactory();
+        batches = batches.doOnNext(batch -> {
+            for (EncodedTelemetry e : batch) metrics.recordSent(FleetMetrics.Transport.RSOCKET, e.telemetry().ts());
+        });
+        if (MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType)) {
+            return batches.map(batch -> factory.wrap(EncodedTelemetry.jsonArray(batch)));
+        }
+        Encoder<List<TruckTelemetry>> encoder = strategies.encoder(TELEMETRY_LIST_TYPE, mimeType);
+        return batches.map(batch -> encoder.encodeValue(batch.stream().map(EncodedTelemetry::telemetry).toList(),
+                factory, TELEMETRY_LIST_TYPE, mimeType, null));
+    }
+
+    private <T> Flux<T> sampled(Flux<T> f, PositionsRequest req) {
         long sampleMs = req == null ? 0 : req.sampleMs();
-        Flux<TruckTelemetry> f = telemetry.stream();
 
         // Sampling can reduce client CPU and network usage while keeping smooth animations.
         if (sampleMs > 0) {
             f = f.sample(Duration.ofMillis(Math.max(50, sampleMs)));
         }
+        return f;
+    }
+
+    @MessageMapping("fleet.density")
+    public Flux<DensityFrame> density(DensityRequest req) {
+        int precision = req == null || req.precision() <= 0 ? DensityService.DEFAULT_PRECISION : req.precision();
+        // Deltas must not be skipped, so no onBackpressureLatest: the service resyncs slow subscribers.
+        return metrics.tracked(FleetMetrics.Transport.RSOCKET, density.stream(precision));
+    }
 
-        // Backpressure safety: latest events only if consumer is slow.
-        return f.onBackpressureLatest();
+    @MessageMapping("fleet.ingest")
+    public Flux<IngestResult> ingest(Flux<TruckTelemetry> points) {
+        return ingest.ingest(points);
     }
 
     @MessageMapping("fleet.alerts")
     public Flux<AlertEvent> alerts() {
-        return alerts.stream().onBackpressureLatest();
+        return metrics.latest(FleetMetrics.Transport.RSOCKET, alerts.stream());
     }
 }
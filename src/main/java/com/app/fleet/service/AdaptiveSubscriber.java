@@ -0,0 +1,273 @@
+package com.example.fleet.service;
+
+import com.example.fleet.model.TruckTelemetry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Per-subscriber state of the adaptive delivery mode ({@link AdaptiveTelemetryService}).
+ *
+ * The subscriber keeps the latest value of every truck in its own {@link LatestTelemetryBuffer}.
+ * Every intervalMs a tick packs the trucks changed since they were last sent into one frame,
+ * at most maxFrameBytes and never more than the room left under maxBufferedBytes. Trucks that
+ * do not fit stay dirty and lead the next frame (the drain resumes after the last truck sent),
+ * so every truck is still refreshed, only less often.
+ *
+ * Demand and write rate come from the transport's request signals: reactor-netty (WebSocket)
+ * and RSocket request more frames as earlier ones are written. Frames sent but not yet
+ * re-requested are the bytes still buffered for this subscriber; bytes re-requested per
+ * second are its write rate. A subscriber that requests unbounded demand is not metered.
+ *
+ * Control loop:
+ * - congested (no demand, or less than 1 KB of room left): the interval doubles, or rises to
+ *   what the measured write rate can carry, and coordinates lose one decimal (down to 3, ~100 m)
+ * - frame cut short by the budget: the rest follows on the next service tick
+ * - {@value #CALM_FRAMES} calm frames in a row (buffer under a quarter full): the interval
+ *   shrinks by a quarter toward minIntervalMs, then precision is restored
+ *
+ * Frame (JSON): {"intervalMs":500,"precision":4,"trucks":[[truckId,tsMs,lat,lon,speedKph,fuelPct,heading],...]}
+ *
+ * tick() and onRequest() are synchronized; offer() is lock-free and may run concurrently.
+ */
+final class AdaptiveSubscriber {
+
+    static final int MAX_PRECISION = 5;   // ~1 m
+    static final int MIN_PRECISION = 3;   // ~100 m
+    static final int MIN_FRAME_BYTES = 1024;
+    static final int CALM_FRAMES = 8;
+
+    private static final long[] POW10 = {1, 10, 100, 1_000, 10_000, 100_000};
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final LatestTelemetryBuffer pending = new LatestTelemetryBuffer();
+    private final ArrayDeque<Integer> inFlight = new ArrayDeque<>();
+    private final Consumer<TruckTelemetry> onSent;
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final int maxBufferedBytes;
+    private final int maxFrameBytes;
+
+    private long intervalMs;
+    private int precision = MAX_PRECISION;
+    private long nextFrameAtMs;
+    private boolean metered = true;
+    private boolean requested;
+    private long demand;
+    private long bufferedBytes;
+    private long ackedBytes;
+    private long rateSampleBytes;
+    private long rateSampledAtMs = -1;
+    private long writeBytesPerSec = -1;   // -1 = not measured yet
+    private int lastFrameBytes;
+    private int calmFrames;
+    private long framesSent;
+
+    // Frame assembly scratch, used inside tick() only.
+    private final StringBuilder frame = new StringBuilder(4096);
+    private final StringBuilder entry = new StringBuilder(128);
+    private final Predicate<TruckTelemetry> appendTruck = this::append;
+    private int budget;
+    private int count;
+    private boolean full;
+
+    AdaptiveSubscriber(long minIntervalMs, long maxIntervalMs, int maxBufferedBytes, int maxFrameBytes,
+                       Consumer<TruckTelemetry> onSent) {
+        this.minIntervalMs = Math.max(50, minIntervalMs);
+        this.maxIntervalMs = Math.max(this.minIntervalMs, maxIntervalMs);
+        this.maxFrameBytes = Math.max(MIN_FRAME_BYTES, maxFrameBytes);
+        this.maxBufferedBytes = Math.max(this.maxFrameBytes, maxBufferedBytes);
+        this.onSent = onSent;
+        this.intervalMs = this.minIntervalMs;
+    }
+
+    void offer(int handle, TruckTelemetry t) {
+        pending.offer(handle, t);
+    }
+
+    /** Demand signalled by the transport: the first request opens the window, later ones acknowledge written frames. */
+    synchronized void onRequest(long n) {
+        if (n == Long.MAX_VALUE || !metered) {
+            metered = false;
+            demand = Long.MAX_VALUE;
+            inFlight.clear();
+            bufferedBytes = 0;
+            return;
+        }
+        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        if (!requested) {
+            requested = true;
+            return;
+        }
+        for (long i = 0; i < n && !inFlight.isEmpty(); i++) {
+            int bytes = inFlight.poll();
+            bufferedBytes -= bytes;
+            ackedBytes += bytes;
+        }
+    }
+
+    /**
+     * Builds the next frame if this subscriber is due one.
+     *
+     * @return frame bytes, or null when not due, congested or nothing changed
+     */
+    synchronized byte[] tick(long nowMs) {
+        if (nowMs < nextFrameAtMs) return null;
+        sampleWriteRate(nowMs);
+
+        long room = metered ? maxBufferedBytes - bufferedBytes : maxFrameBytes;
+        int frameBudget = (int) Math.min(maxFrameBytes, room);
+        if (demand == 0 || frameBudget < MIN_FRAME_BYTES) {
+            congested(nowMs);
+            return null;
+        }
+
+        byte[] out = build(frameBudget);
+        if (out == null) {
+            nextFrameAtMs = nowMs + intervalMs;
+            return null;
+        }
+        if (demand != Long.MAX_VALUE) demand--;
+        if (metered) {
+            inFlight.add(out.length);
+            bufferedBytes += out.length;
+        }
+        lastFrameBytes = out.length;
+        framesSent++;
+
+        // Cut short by the budget: the trucks left over go on the next service tick.
+        nextFrameAtMs = full ? nowMs : nowMs + intervalMs;
+        if (bufferedBytes <= maxBufferedBytes / 4) {
+            if (++calmFrames >= CALM_FRAMES) relax();
+        } else {
+            calmFrames = 0;
+        }
+        return out;
+    }
+
+    private void congested(long nowMs) {
+        calmFrames = 0;
+        long next = intervalMs * 2;
+        if (writeBytesPerSec > 0 && lastFrameBytes > 0) {
+            next = Math.max(next, lastFrameBytes * 1000L / writeBytesPerSec);
+        }
+        intervalMs = Math.min(maxIntervalMs, next);
+        precision = Math.max(MIN_PRECISION, precision - 1);
+        nextFrameAtMs = nowMs + intervalMs;
+    }
+
+    private void relax() {
+        calmFrames = 0;
+        if (intervalMs > minIntervalMs) {
+            intervalMs = Math.max(minIntervalMs, intervalMs * 3 / 4);
+        } else if (precision < MAX_PRECISION) {
+            precision++;
+        }
+    }
+
+    private void sampleWriteRate(long nowMs) {
+        if (rateSampledAtMs < 0) {
+            rateSampledAtMs = nowMs;
+            return;
+        }
+        long elapsed = nowMs - rateSampledAtMs;
+        if (!metered || elapsed < 1000) return;
+        long rate = (ackedBytes - rateSampleBytes) * 1000 / elapsed;
+        writeBytesPerSec = writeBytesPerSec < 0 ? rate : (writeBytesPerSec + rate) / 2;
+        rateSampleBytes = ackedBytes;
+        rateSampledAtMs = nowMs;
+    }
+
+    private byte[] build(int frameBudget) {
+        frame.setLength(0);
+        frame.append("{\"intervalMs\":").append(intervalMs)
+                .append(",\"precision\":").append(precision)
+                .append(",\"trucks\":[");
+        budget = frameBudget - 2; // closing "]}"
+        count = 0;
+        full = false;
+        pending.drain(Integer.MAX_VALUE, appendTruck);
+        if (count == 0) {
+            full = false;
+            return null;
+        }
+        frame.append("]}");
+        // Ids are escaped to ASCII, so chars == bytes and the budget check above is exact.
+        return frame.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private boolean append(TruckTelemetry t) {
+        if (full) return false;
+        entry.setLength(0);
+        if (count > 0) entry.append(',');
+        entry.append("[\"");
+        appendEscaped(entry, t.truckId());
+        entry.append("\",").append(t.ts() == null ? 0 : t.ts().toEpochMilli()).append(',');
+        appendFixed(entry, t.lat(), precision);
+        entry.append(',');
+        appendFixed(entry, t.lon(), precision);
+        int detail = precision == MAX_PRECISION ? 1 : 0;
+        entry.append(',');
+        appendFixed(entry, t.speedKph(), detail);
+        entry.append(',');
+        appendFixed(entry, t.fuelPct(), detail);
+        entry.append(',');
+        appendFixed(entry, t.headingDeg(), detail);
+        entry.append(']');
+
+        if (frame.length() + entry.length() > budget) {
+            full = true;
+            return false;   // stays dirty for the next frame
+        }
+        frame.append(entry);
+        count++;
+        onSent.accept(t);
+        return true;
+    }
+
+    static void appendFixed(StringBuilder sb, double v, int decimals) {
+        if (!Double.isFinite(v)) {
+            sb.append("null");
+            return;
+        }
+        long pow = POW10[decimals];
+        long scaled = Math.round(v * pow);
+        if (scaled < 0) {
+            sb.append('-');
+            scaled = -scaled;
+        }
+        sb.append(scaled / pow);
+        if (decimals == 0) return;
+        sb.append('.');
+        long frac = scaled % pow;
+        for (long p = pow / 10; p > frac && p > 1; p /= 10) sb.append('0');
+        sb.append(frac);
+    }
+
+    private static void appendEscaped(StringBuilder sb, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                sb.append("\\u").append(HEX[(c >> 12) & 15]).append(HEX[(c >> 8) & 15])
+                        .append(HEX[(c >> 4) & 15]).append(HEX[c & 15]);
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    long intervalMs() { return intervalMs; }
+
+    int precision() { return precision; }
+
+    synchronized long bufferedBytes() { return bufferedBytes; }
+
+    synchronized AdaptiveTelemetryService.SubscriberStats stats() {
+        return new AdaptiveTelemetryService.SubscriberStats(intervalMs, precision, metered, bufferedBytes,
+                writeBytesPerSec, framesSent);
+    }
+}
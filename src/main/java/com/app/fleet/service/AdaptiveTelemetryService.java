@@ -0,0 +1,144 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.TruckTelemetry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Adaptive delivery: the latest state of every truck, paced per subscriber to what its link
+ * can take (WebSocket ?mode=adaptive, RSocket fleet.positions.adaptive).
+ *
+ * A fixed sampleMs either wastes a fast link or overruns a slow one, and Flux.sample keeps
+ * one update per window rather than one per truck. Here each subscriber gets frames holding
+ * the latest state of the trucks that changed, and its refresh interval and coordinate
+ * precision follow its measured demand and write rate ({@link AdaptiveSubscriber}).
+ *
+ * Optimizations:
+ * - One listener on the coalesced stream feeds every adaptive subscriber; an update arrives with
+ *   the handle its shard already holds and is a slot write and a dirty bit in each subscriber's
+ *   buffer, nothing is queued or looked up per update
+ * - One shared timer drives every subscriber's frames; the subscriber list is a
+ *   copy-on-write array, so dispatch and ticks never lock it
+ * - The listener and the timer run only while there is at least one adaptive subscriber
+ * - Frames are compact JSON arrays with coordinates rounded to the subscriber's precision,
+ *   built without an ObjectMapper
+ */
+@Service
+public class AdaptiveTelemetryService {
+
+    static final long TICK_MS = 50;
+
+    private record Session(AdaptiveSubscriber state, FluxSink<byte[]> sink) {}
+
+    private static final Session[] NONE = new Session[0];
+
+    private final TelemetryStreamService telemetry;
+    private final FleetMetrics metrics;
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final int maxBufferedBytes;
+    private final int maxFrameBytes;
+    private volatile Session[] sessions = NONE;
+
+    private Disposable feed;   // guarded by this; live while sessions is not empty
+    private Disposable ticker; // guarded by this
+
+    public AdaptiveTelemetryService(FleetProperties props, TelemetryStreamService telemetry,
+                                    FleetMetrics metrics) {
+        this.telemetry = telemetry;
+        this.metrics = metrics;
+        FleetProperties.Adaptive cfg = props.adaptive();
+        this.minIntervalMs = cfg == null || cfg.minIntervalMs() <= 0 ? 250 : cfg.minIntervalMs();
+        this.maxIntervalMs = cfg == null || cfg.maxIntervalMs() <= 0 ? 5000 : cfg.maxIntervalMs();
+        this.maxBufferedBytes = cfg == null || cfg.maxBufferedBytes() <= 0 ? 256 * 1024 : cfg.maxBufferedBytes();
+        this.maxFrameBytes = cfg == null || cfg.maxFrameBytes() <= 0 ? 64 * 1024 : cfg.maxFrameBytes();
+    }
+
+    // The first session starts the feed and the timer.
+    private void start() {
+        this.feed = telemetry.listen(this::dispatch);
+        this.ticker = Flux.interval(Duration.ofMillis(TICK_MS))
+                .doOnNext(tick -> tick(System.currentTimeMillis()))
+                .onErrorContinue((e, o) -> {})
+                .subscribe();
+    }
+
+    @PreDestroy
+    synchronized void stop() {
+        if (feed != null) feed.dispose();
+        if (ticker != null) ticker.dispose();
+        feed = null;
+        ticker = null;
+    }
+
+    /**
+     * Frames for one subscriber; sent on {@code transport} (for subscriber and latency metrics).
+     * Starts with the trucks that change after subscribing.
+     */
+    public Flux<byte[]> stream(FleetMetrics.Transport transport) {
+        Flux<byte[]> frames = Flux.create(sink -> {
+            Session s = new Session(new AdaptiveSubscriber(minIntervalMs, maxIntervalMs, maxBufferedBytes,
+                    maxFrameBytes, t -> metrics.recordSent(transport, t.ts())), sink);
+            sink.onRequest(s.state()::onRequest);
+            sink.onDispose(() -> remove(s));
+            add(s);
+        });
+        return metrics.tracked(transport, frames);
+    }
+
+    public List<SubscriberStats> stats() {
+        Session[] current = sessions;
+        List<SubscriberStats> out = new ArrayList<>(current.length);
+        for (Session s : current) out.add(s.state().stats());
+        return out;
+    }
+
+    private void dispatch(int handle, TruckTelemetry t) {
+        for (Session s : sessions) s.state().offer(handle, t);
+    }
+
+    private void tick(long nowMs) {
+        for (Session s : sessions) {
+            byte[] frame = s.state().tick(nowMs);
+            if (frame != null) s.sink().next(frame);
+        }
+    }
+
+    private synchronized void add(Session s) {
+        Session[] next = Arrays.copyOf(sessions, sessions.length + 1);
+        next[sessions.length] = s;
+        sessions = next;
+        if (next.length == 1) start();
+    }
+
+    private synchronized void remove(Session s) {
+        Session[] current = sessions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == s) {
+                Session[] next = new Session[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                sessions = next;
+                if (next.length == 0) stop(); // the last session left
+                return;
+            }
+        }
+    }
+
+    /**
+     * intervalMs/precision: current per-truck refresh interval and coordinate decimals;
+     * bufferedBytes: sent but not yet written (0 when not metered); writeBytesPerSec: -1 until measured.
+     */
+    public record SubscriberStats(long intervalMs, int precision, boolean metered, long bufferedBytes,
+                                  long writeBytesPerSec, long framesSent) { }
+}
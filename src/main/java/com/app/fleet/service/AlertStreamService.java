@@ -1,5 +1,6 @@
 package com.example.fleet.service;
 
+import com.example.fleet.metrics.FleetMetrics;
 import com.example.fleet.model.AlertEvent;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
@@ -8,17 +9,31 @@ import reactor.core.publisher.Sinks;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Hot stream of alert events (geofence enters).
+ * Hot stream of alert events (geofence enter/exit/dwell).
  */
 @Service
 public class AlertStreamService {
 
     private final Sinks.Many<AlertEvent> sink = Sinks.many().multicast().directBestEffort();
     private final AtomicLong dropped = new AtomicLong();
+    private final FleetMetrics metrics;
 
-    public void emit(AlertEvent evt) {
-        var r = sink.tryEmitNext(evt);
-        if (r.isFailure()) dropped.incrementAndGet();
+    public AlertStreamService(FleetMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Safe to call from several threads (geofence shards): emits are serialized on this service's
+     * monitor, so the sink never sees two emitters at once and nothing spins. Alerts are rare, so
+     * the lock is almost never contended. An alert with no subscriber is simply not delivered;
+     * one a subscriber cannot take is dropped and counted.
+     */
+    public synchronized void emit(AlertEvent evt) {
+        Sinks.EmitResult result = sink.tryEmitNext(evt);
+        if (result.isFailure() && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            dropped.incrementAndGet();
+            metrics.emitFailed(FleetMetrics.Sink.ALERTS, result);
+        }
     }
 
     public Flux<AlertEvent> stream() {
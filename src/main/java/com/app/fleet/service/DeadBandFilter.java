@@ -0,0 +1,180 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.model.TruckTelemetry;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dead-band change detection at the head of the {@link TelemetryPipeline}: an update goes on to
+ * geofencing, Redis and the live stream only if it differs materially from the last one that did.
+ *
+ * An update passes when, compared with the truck's last passed update:
+ * - it moved at least fleet.dead-band.distance-m (equirectangular distance), or
+ * - heading, speed or fuel changed by at least their thresholds, or
+ * - nothing passed for fleet.dead-band.max-silence-ms (keepalive, so readers can tell a parked
+ *   truck from a lost one and the near-cache keeps it fresh), or
+ * - the truck stopped changing (the same values twice in a row) while the last passed update
+ *   is not its current state: the exact final state is flushed once ("settled")
+ * Trucks that go quiet with a held-back update are flushed by {@link #takeSettled(long)} after
+ * fleet.dead-band.settle-ms, so the stored state ends exact either way.
+ *
+ * Optimization: per-truck state is one small mutable object in a table indexed by
+ * {@link TruckRegistry} handle; the check is a few subtractions and no allocation.
+ */
+@Service
+public class DeadBandFilter {
+
+    private static final double M_PER_DEG_LAT = 111_320.0;
+
+    private static final class Track {
+        TruckTelemetry sent;    // last update let through
+        long sentAtMs;
+        TruckTelemetry seen;    // last update received
+        long seenAtMs;
+        boolean pending;        // seen is not what downstream holds
+    }
+
+    private final TruckRegistry registry;
+    private final boolean enabled;
+    private final double distanceM;
+    private final double headingDeg;
+    private final double speedKph;
+    private final double fuelPct;
+    private final long maxSilenceMs;
+    private final long settleMs;
+
+    private final HandleArray<Track> tracks = new HandleArray<>();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong passed = new AtomicLong();
+    private final AtomicLong keepalives = new AtomicLong();
+    private final AtomicLong settled = new AtomicLong();
+
+    public DeadBandFilter(FleetProperties props, TruckRegistry registry) {
+        this.registry = registry;
+        FleetProperties.DeadBand cfg = props.deadBand();
+        this.enabled = cfg != null && cfg.enabled();
+        this.distanceM = cfg == null ? 0 : Math.max(0, cfg.distanceM());
+        this.headingDeg = cfg == null ? 0 : Math.max(0, cfg.headingDeg());
+        this.speedKph = cfg == null ? 0 : Math.max(0, cfg.speedKph());
+        this.fuelPct = cfg == null ? 0 : Math.max(0, cfg.fuelPct());
+        this.maxSilenceMs = cfg == null || cfg.maxSilenceMs() <= 0 ? 10_000 : cfg.maxSilenceMs();
+        this.settleMs = cfg == null || cfg.settleMs() <= 0 ? 2_000 : cfg.settleMs();
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /** Settle delay, i.e. how often {@link #takeSettled(long)} is worth calling. */
+    public long settleMs() {
+        return settleMs;
+    }
+
+    /**
+     * @return true if the update should go downstream (it then becomes the truck's reference state)
+     */
+    public boolean accept(int handle, TruckTelemetry t, long nowMs) {
+        if (!enabled) return true;
+        received.incrementAndGet();
+
+        Track tr = tracks.get(handle);
+        if (tr == null) {
+            tr = new Track();
+            if (!tracks.compareAndSet(handle, null, tr)) tr = tracks.get(handle);
+        }
+        synchronized (tr) {
+            TruckTelemetry sent = tr.sent;
+            TruckTelemetry prev = tr.seen;
+            tr.seen = t;
+            tr.seenAtMs = nowMs;
+
+            if (sent != null && !crosses(sent, t)) {
+                if (nowMs - tr.sentAtMs >= maxSilenceMs) {
+                    keepalives.incrementAndGet();
+                } else if (tr.pending && sameState(prev, t)) {
+                    settled.incrementAndGet();
+                } else {
+                    tr.pending = !sameState(sent, t);
+                    return false;
+                }
+            }
+            tr.sent = t;
+            tr.sentAtMs = nowMs;
+            tr.pending = false;
+        }
+        passed.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Latest state of every truck whose last update was held back and that has sent nothing
+     * for settle-ms; each is marked as passed, so callers must forward them downstream.
+     */
+    public Settled takeSettled(long nowMs) {
+        List<TruckTelemetry> out = new ArrayList<>();
+        if (!enabled) return new Settled(out, new int[0]);
+        int[] handles = new int[16];
+        for (int h = 0, n = registry.size(); h < n; h++) {
+            Track tr = tracks.get(h);
+            if (tr == null || !tr.pending) continue;
+            synchronized (tr) {
+                if (tr.pending && nowMs - tr.seenAtMs >= settleMs) {
+                    tr.sent = tr.seen;
+                    tr.sentAtMs = nowMs;
+                    tr.pending = false;
+                    if (out.size() == handles.length) handles = Arrays.copyOf(handles, handles.length * 2);
+                    handles[out.size()] = h;
+                    out.add(tr.seen);
+                }
+            }
+        }
+        settled.addAndGet(out.size());
+        passed.addAndGet(out.size());
+        return new Settled(out, Arrays.copyOf(handles, out.size()));
+    }
+
+    /** Trucks released by {@link #takeSettled(long)}, and their handles in the same order. */
+    public record Settled(List<TruckTelemetry> trucks, int[] handles) { }
+
+    // A threshold of 0 passes any change of that value.
+    private boolean crosses(TruckTelemetry a, TruckTelemetry b) {
+        if (exceeds(Math.abs(b.speedKph() - a.speedKph()), speedKph)) return true;
+        if (exceeds(Math.abs(b.fuelPct() - a.fuelPct()), fuelPct)) return true;
+        double dh = Math.abs(b.headingDeg() - a.headingDeg()) % 360;
+        if (exceeds(Math.min(dh, 360 - dh), headingDeg)) return true;
+
+        double dy = (b.lat() - a.lat()) * M_PER_DEG_LAT;
+        double dx = (b.lon() - a.lon()) * M_PER_DEG_LAT * Math.cos(Math.toRadians(a.lat()));
+        return exceeds(Math.sqrt(dx * dx + dy * dy), distanceM);
+    }
+
+    private static boolean exceeds(double delta, double threshold) {
+        return threshold > 0 ? delta >= threshold : delta > 0;
+    }
+
+    private static boolean sameState(TruckTelemetry a, TruckTelemetry b) {
+        return a != null && b != null
+                && a.lat() == b.lat() && a.lon() == b.lon()
+                && a.speedKph() == b.speedKph() && a.fuelPct() == b.fuelPct()
+                && a.headingDeg() == b.headingDeg();
+    }
+
+    public Stats stats() {
+        long in = received.get();
+        long out = passed.get();
+        return new Stats(enabled, in, out, in - out, keepalives.get(), settled.get(),
+                in == 0 ? 0 : (double) (in - out) / in);
+    }
+
+    /**
+     * received: updates into the filter; passed: forwarded downstream, keepalives and settled
+     * flushes included; suppressionRatio = suppressed / received.
+     */
+    public record Stats(boolean enabled, long received, long passed, long suppressed,
+                        long keepalives, long settled, double suppressionRatio) { }
+}
@@ -0,0 +1,261 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.DensityCell;
+import com.example.fleet.model.DensityFrame;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.util.QuadKey;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-tile fleet aggregates (truck count, mean speed, low-fuel count) for zoomed-out map views,
+ * streamed instead of individual trucks (RSocket fleet.density, ws /ws/density, SSE /api/density/stream).
+ *
+ * Optimizations:
+ * - Incremental: every update from TelemetryStreamService moves one truck's contribution from
+ *   its previous tile to its current one (or adjusts it in place); emissions never rescan the fleet
+ * - The feed (a {@link TelemetryStreamService#listen listener}, indexed by the handle the pipeline
+ *   already resolved) and the emitter run only while some grid has subscribers; the first
+ *   subscriber re-reads every truck's last published position from TelemetryStreamService
+ * - One grid per precision (quadkey level) that has subscribers, shared by all of them; a grid
+ *   is seeded from the last known position of every truck once, when its first subscriber arrives,
+ *   and dropped with its last subscriber
+ * - Every fleet.density.emit-ms a grid emits only the cells whose count, mean speed (0.1 km/h) or
+ *   low-fuel count changed; the delta frame is built once and shared by its subscribers
+ * - A subscriber starts with a snapshot of its grid; one that cannot keep up (bounded buffer
+ *   full) gets a fresh snapshot on the next emission instead of a gap in its deltas
+ *
+ * Grids, cells and subscriber lists are guarded by the service monitor; updates arrive from the
+ * publishing shards, so the lock is contended by those, emissions and (un)subscribes.
+ */
+@Service
+public class DensityService {
+
+    public static final int DEFAULT_PRECISION = 10;   // ~40 km tiles, a metro area
+    static final int SUBSCRIBER_BUFFER = 64;
+
+    private final TelemetryStreamService telemetry;
+    private final TruckRegistry registry;
+    private final FleetMetrics metrics;
+    private final long emitMs;
+    private final double lowFuelPct;
+
+    private final HandleArray<TruckTelemetry> last = new HandleArray<>(); // current while feed is live
+    private final Map<Integer, Grid> grids = new HashMap<>();  // guarded by this
+
+    private Disposable feed;     // guarded by this; live while grids is not empty
+    private Disposable emitter;  // guarded by this
+
+    public DensityService(FleetProperties props, TelemetryStreamService telemetry, TruckRegistry registry,
+                          FleetMetrics metrics) {
+        this.telemetry = telemetry;
+        this.registry = registry;
+        this.metrics = metrics;
+        FleetProperties.Density cfg = props.density();
+        this.emitMs = cfg == null || cfg.emitMs() <= 0 ? 1000 : Math.max(100, cfg.emitMs());
+        this.lowFuelPct = cfg == null || cfg.lowFuelPct() <= 0 ? 15 : cfg.lowFuelPct();
+    }
+
+    // Called under the monitor by the first subscriber. Listening first and then reading the
+    // published table leaves no gap; an update seen by both is applied as a no-op move.
+    private void start() {
+        feed = telemetry.listen(this::accept);
+        for (int h = 0, n = registry.size(); h < n; h++) {
+            TruckTelemetry t = telemetry.latest(h);
+            if (t != null) last.set(h, t);
+        }
+        emitter = Flux.interval(Duration.ofMillis(emitMs))
+                .doOnNext(tick -> emit())
+                .onErrorContinue((e, o) -> {})
+                .subscribe();
+    }
+
+    @PreDestroy
+    synchronized void stop() {
+        if (feed != null) {
+            feed.dispose();
+            feed = null;
+        }
+        if (emitter != null) {
+            emitter.dispose();
+            emitter = null;
+        }
+    }
+
+    /**
+     * Snapshot of the grid at {@code precision} (clamped to 1-18), then changed cells every emission.
+     */
+    public Flux<DensityFrame> stream(int precision) {
+        int level = Math.max(QuadKey.MIN_LEVEL, Math.min(QuadKey.MAX_LEVEL, precision));
+        return Flux.defer(() -> {
+            Subscriber sub = new Subscriber();
+            subscribe(level, sub);
+            return sub.sink.asFlux().doFinally(sig -> unsubscribe(level, sub));
+        });
+    }
+
+    synchronized void accept(int h, TruckTelemetry t) {
+        TruckTelemetry old = last.get(h);
+        last.set(h, t);
+        for (Grid g : grids.values()) {
+            g.move(old, t);
+        }
+    }
+
+    /** Sends changed cells to every subscriber. Called by the emitter; package-private for tests. */
+    synchronized void emit() {
+        for (Grid g : grids.values()) {
+            DensityFrame delta = g.delta();
+            for (Subscriber s : g.subscribers) {
+                if (s.resync) {
+                    s.resync = !send(s, g.snapshot());
+                } else if (delta != null) {
+                    s.resync = !send(s, delta);
+                }
+            }
+        }
+    }
+
+    private synchronized void subscribe(int level, Subscriber sub) {
+        Grid g = grids.get(level);
+        if (g == null) {
+            if (grids.isEmpty()) start();
+            g = new Grid(level);
+            for (int h = 0, n = registry.size(); h < n; h++) {
+                TruckTelemetry t = last.get(h);
+                if (t != null) g.move(null, t);
+            }
+            g.delta(); // seeded state counts as sent
+            grids.put(level, g);
+        }
+        g.subscribers.add(sub);
+        sub.resync = !send(sub, g.snapshot());
+    }
+
+    private synchronized void unsubscribe(int level, Subscriber sub) {
+        Grid g = grids.get(level);
+        if (g != null && g.subscribers.remove(sub) && g.subscribers.isEmpty()) {
+            grids.remove(level);
+            if (grids.isEmpty()) stop();
+        }
+    }
+
+    private boolean send(Subscriber s, DensityFrame frame) {
+        Sinks.EmitResult r = s.sink.tryEmitNext(frame);
+        if (r.isFailure()) {
+            metrics.emitFailed(FleetMetrics.Sink.DENSITY, r);
+            return false;
+        }
+        return true;
+    }
+
+    private static final class Subscriber {
+        // Emission only happens under the service monitor, so a unicast sink is safe.
+        final Sinks.Many<DensityFrame> sink =
+                Sinks.many().unicast().onBackpressureBuffer(Queues.<DensityFrame>get(SUBSCRIBER_BUFFER).get());
+        boolean resync;
+    }
+
+    private static final class Cell {
+        final long key;
+        int count;
+        double speedSum;
+        int lowFuel;
+        boolean dirty;
+        // Values last sent to subscribers.
+        int sentCount;
+        long sentSpeedTenths;
+        int sentLowFuel;
+
+        Cell(long key) {
+            this.key = key;
+        }
+
+        long meanSpeedTenths() {
+            return count == 0 ? 0 : Math.round(speedSum / count * 10);
+        }
+    }
+
+    private final class Grid {
+        final int level;
+        final Map<Long, Cell> cells = new HashMap<>();
+        final List<Cell> dirty = new ArrayList<>();
+        final List<Subscriber> subscribers = new ArrayList<>();
+
+        Grid(int level) {
+            this.level = level;
+        }
+
+        void move(TruckTelemetry old, TruckTelemetry t) {
+            if (old != null) add(cellOf(old), old, -1);
+            add(cellOf(t), t, 1);
+        }
+
+        private long cellOf(TruckTelemetry t) {
+            return QuadKey.pack(QuadKey.tileX(t.lon(), level), QuadKey.tileY(t.lat(), level));
+        }
+
+        private void add(long key, TruckTelemetry t, int sign) {
+            Cell c = cells.get(key);
+            if (c == null) {
+                c = new Cell(key);
+                cells.put(key, c);
+            }
+            c.count += sign;
+            c.speedSum += sign * t.speedKph();
+            if (t.fuelPct() <= lowFuelPct) c.lowFuel += sign;
+            if (c.count == 0) c.speedSum = 0; // no drift once a cell empties
+            if (!c.dirty) {
+                c.dirty = true;
+                dirty.add(c);
+            }
+        }
+
+        /** Cells changed since the last call (null if none); marks them sent and drops emptied cells. */
+        DensityFrame delta() {
+            if (dirty.isEmpty()) return null;
+            List<DensityCell> changed = new ArrayList<>();
+            for (Cell c : dirty) {
+                c.dirty = false;
+                long speed = c.meanSpeedTenths();
+                if (c.count != c.sentCount || speed != c.sentSpeedTenths || c.lowFuel != c.sentLowFuel) {
+                    changed.add(view(c.key, c.count, speed, c.lowFuel));
+                    c.sentCount = c.count;
+                    c.sentSpeedTenths = speed;
+                    c.sentLowFuel = c.lowFuel;
+                }
+                if (c.count == 0) cells.remove(c.key);
+            }
+            dirty.clear();
+            return changed.isEmpty() ? null : new DensityFrame(level, false, changed);
+        }
+
+        /** Every cell as of the last delta, so the deltas that follow apply on top of it. */
+        DensityFrame snapshot() {
+            List<DensityCell> all = new ArrayList<>(cells.size());
+            for (Cell c : cells.values()) {
+                if (c.sentCount > 0) all.add(view(c.key, c.sentCount, c.sentSpeedTenths, c.sentLowFuel));
+            }
+            return new DensityFrame(level, true, all);
+        }
+
+        private DensityCell view(long key, int count, long speedTenths, int lowFuel) {
+            int x = QuadKey.unpackX(key), y = QuadKey.unpackY(key);
+            return new DensityCell(QuadKey.toQuadKey(x, y, level),
+                    QuadKey.centerLat(y, level), QuadKey.centerLon(x, level),
+                    count, speedTenths / 10.0, lowFuel);
+        }
+    }
+}
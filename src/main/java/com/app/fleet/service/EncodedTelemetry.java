@@ -0,0 +1,32 @@
+package com.example.fleet.service;
+
+import com.example.fleet.model.TruckTelemetry;
+
+import java.util.List;
+
+/**
+ * A telemetry update together with its JSON encoding, produced once per update by
+ * {@link TelemetryStreamService} and shared by every subscriber.
+ *
+ * The byte array is never modified after creation; transports wrap it (zero-copy)
+ * instead of serializing the record again. {@code seq} is the publish sequence number of
+ * the truck's shard: it grows with every update that shard publishes, so it only grows per truck.
+ */
+public record EncodedTelemetry(TruckTelemetry telemetry, byte[] json, long seq) {
+
+    /** JSON array of the given updates, concatenating their shared encodings. */
+    public static byte[] jsonArray(List<EncodedTelemetry> updates) {
+        int size = 2;
+        for (EncodedTelemetry e : updates) size += e.json().length + 1;
+        byte[] out = new byte[size - (updates.isEmpty() ? 0 : 1)];
+        int pos = 0;
+        out[pos++] = '[';
+        for (EncodedTelemetry e : updates) {
+            if (pos > 1) out[pos++] = ',';
+            System.arraycopy(e.json(), 0, out, pos, e.json().length);
+            pos += e.json().length;
+        }
+        out[pos] = ']';
+        return out;
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.fleet.service;
+
+import com.example.fleet.model.TruckTelemetry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Structure-of-arrays fleet state with a parallel random-walk step (CPU-only).
+ *
+ * Optimizations:
+ * - lat/lon/speed/fuel/heading live in primitive arrays indexed by truck slot;
+ *   stepping allocates nothing
+ * - The fleet is cut into fixed chunks, each with its own SplittableRandom split
+ *   from the seed in chunk order, so chunks step in parallel on a fork-join pool
+ *   and a run is reproducible for a given seed regardless of thread scheduling
+ * - TruckTelemetry records are only materialized at the publish boundary,
+ *   sharing one timestamp per tick
+ * - Truck ids are interned in the {@link TruckRegistry} once at seeding; downstream
+ *   stages receive the handle alongside each record via {@link #handle(int)}
+ *
+ * Not thread-safe for concurrent step() calls; the simulator ticks one at a time.
+ */
+public final class FleetSimulationEngine {
+
+    static final int CHUNK_SIZE = 1024;
+
+    // Demo bounding box around a city. Lat: 51.3..51.7, Lon: -0.5..0.2
+    private static final double MIN_LAT = 51.3, LAT_SPAN = 0.4;
+    private static final double MIN_LON = -0.5, LON_SPAN = 0.7;
+
+    private final int size;
+    private final String[] ids;
+    private final int[] handles;
+    private final double[] lat;
+    private final double[] lon;
+    private final double[] speed;
+    private final double[] fuel;
+    private final double[] heading;
+    private final SplittableRandom[] chunkRng;
+    private final ForkJoinPool pool;
+
+    private volatile Instant lastStepTs;
+
+    public FleetSimulationEngine(int count, long seed, ForkJoinPool pool) {
+        this(count, seed, pool, new TruckRegistry());
+    }
+
+    public FleetSimulationEngine(int count, long seed, ForkJoinPool pool, TruckRegistry registry) {
+        this.size = Math.max(0, count);
+        this.pool = pool;
+        this.ids = new String[size];
+        this.handles = new int[size];
+        this.lat = new double[size];
+        this.lon = new double[size];
+        this.speed = new double[size];
+        this.fuel = new double[size];
+        this.heading = new double[size];
+
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        SplittableRandom root = new SplittableRandom(seed);
+        this.chunkRng = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++) {
+            chunkRng[c] = root.split();
+        }
+
+        for (int c = 0; c < chunks; c++) {
+            SplittableRandom rng = chunkRng[c];
+            for (int i = c * CHUNK_SIZE, end = Math.min(size, i + CHUNK_SIZE); i < end; i++) {
+                ids[i] = String.format("TRK-%05d", i + 1);
+                handles[i] = registry.handleOf(ids[i]);
+                lat[i] = MIN_LAT + rng.nextDouble() * LAT_SPAN;
+                lon[i] = MIN_LON + rng.nextDouble() * LON_SPAN;
+                speed[i] = 10 + rng.nextDouble() * 60;
+                fuel[i] = 20 + rng.nextDouble() * 80;
+                heading[i] = rng.nextDouble() * 360;
+            }
+        }
+        this.lastStepTs = Instant.now();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Registry handle of the truck in {@code slot} (same order as {@link #snapshot()}). */
+    public int handle(int slot) {
+        return handles[slot];
+    }
+
+    /**
+     * Advance every truck by one 1 Hz step.
+     */
+    public void step() {
+        if (size == 0) return;
+        if (chunkRng.length == 1) {
+            stepChunk(0);
+        } else {
+            pool.invoke(new StepTask(0, chunkRng.length));
+        }
+        lastStepTs = Instant.now();
+    }
+
+    /**
+     * Materialize the current state of every truck (publish boundary).
+     */
+    public List<TruckTelemetry> snapshot() {
+        Instant ts = lastStepTs;
+        List<TruckTelemetry> out = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            out.add(materialize(i, ts));
+        }
+        return out;
+    }
+
+    public TruckTelemetry materialize(int slot) {
+        return materialize(slot, lastStepTs);
+    }
+
+    private TruckTelemetry materialize(int slot, Instant ts) {
+        return new TruckTelemetry(ids[slot], ts, lat[slot], lon[slot], speed[slot], fuel[slot], heading[slot]);
+    }
+
+    private void stepChunk(int chunk) {
+        SplittableRandom rng = chunkRng[chunk];
+        for (int i = chunk * CHUNK_SIZE, end = Math.min(size, i + CHUNK_SIZE); i < end; i++) {
+            double h = wrap360(heading[i] + (rng.nextDouble() - 0.5) * 12);
+            double s = clamp(speed[i] + (rng.nextDouble() - 0.5) * 8, 0, 120);
+            double f = clamp(fuel[i] - (0.005 + s / 12000.0), 0, 100);
+
+            double distance = s / 3600.0; // km per second at 1Hz
+            double rad = Math.toRadians(h);
+            double dLat = (distance / 110.574) * Math.cos(rad);
+            double dLon = (distance / (111.320 * Math.cos(Math.toRadians(lat[i])) + 1e-9)) * Math.sin(rad);
+
+            double la = lat[i] + dLat;
+            double lo = lon[i] + dLon;
+
+            if (la < MIN_LAT || la > MIN_LAT + LAT_SPAN) la = MIN_LAT + rng.nextDouble() * LAT_SPAN;
+            if (lo < MIN_LON || lo > MIN_LON + LON_SPAN) lo = MIN_LON + rng.nextDouble() * LON_SPAN;
+
+            heading[i] = h;
+            speed[i] = s;
+            fuel[i] = f;
+            lat[i] = la;
+            lon[i] = lo;
+        }
+    }
+
+    private static double clamp(double v, double min, double max) {
+        return Math.max(min, Math.min(max, v));
+    }
+
+    private static double wrap360(double v) {
+        double x = v % 360.0;
+        return x < 0 ? x + 360.0 : x;
+    }
+
+    /** Splits the chunk range in halves until a single chunk remains. */
+    private final class StepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        StepTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                stepChunk(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new StepTask(from, mid), new StepTask(mid, to));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.fleet.service;
+
+import java.util.Arrays;
+
+/**
+ * Geofences one truck is currently inside, as parallel primitive arrays.
+ *
+ * - fences: int geofence indexes, sorted (binary search, linear merge)
+ * - enteredAt: epoch millis of the ENTER for each membership
+ * - dwellSent: whether the DWELL alert for that membership already fired
+ *
+ * Size follows the number of fences the truck is in (usually 0-2), not the number
+ * of fences defined. Instances are immutable once published; a transition builds a
+ * new one.
+ */
+final class GeofenceMembership {
+
+    final int[] fences;
+    final long[] enteredAt;
+    final boolean[] dwellSent;
+
+    GeofenceMembership(int[] fences, long[] enteredAt, boolean[] dwellSent) {
+        this.fences = fences;
+        this.enteredAt = enteredAt;
+        this.dwellSent = dwellSent;
+    }
+
+    int size() {
+        return fences.length;
+    }
+
+    int indexOf(int fence) {
+        return Arrays.binarySearch(fences, fence);
+    }
+
+    GeofenceMembership withDwellSent(int i) {
+        boolean[] sent = dwellSent.clone();
+        sent[i] = true;
+        return new GeofenceMembership(fences, enteredAt, sent);
+    }
+}
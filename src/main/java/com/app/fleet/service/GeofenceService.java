@@ -1,9 +1,12 @@
 package com.example.fleet.service;
 
+import com.example.fleet.config.FleetProperties;
 import com.example.fleet.model.AlertEvent;
 import com.example.fleet.model.Geofence;
 import com.example.fleet.model.GeoPoint;
 import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.util.GeoGridIndex;
+import com.example.fleet.util.CompiledPolygon;
 import com.example.fleet.util.GeoUtils;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
@@ -11,73 +14,217 @@ import reactor.core.publisher.Flux;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Reactive geofencing service (CPU-only; non-blocking).
  *
  * Optimizations:
  * 1) Precompute a bounding box per geofence to skip expensive point-in-polygon tests
- * 2) Track inside sets per truck to detect enter/exit transitions
+ * 2) Uniform-grid spatial index over those boxes: a point only tests the fences filed
+ *    under its cell instead of scanning every geofence
+ * 3) Compile each polygon once into flat primitive arrays (allocation-free containment test)
+ * 4) Compact membership per truck: geofences get dense int indexes and a truck keeps a
+ *    sorted int[] of the fences it is in, with entry timestamps in a long[]
+ *    ({@link GeofenceMembership}), held in a table indexed by {@link TruckRegistry}
+ *    handle; trucks outside every fence store nothing
+ *
+ * Alerts: ENTER_GEOFENCE, EXIT_GEOFENCE and DWELL_GEOFENCE (once per visit, after
+ * fleet.geofence.dwell-ms inside the zone; 0 disables). Durations use telemetry time.
+ *
+ * The grid is immutable; add/delete rebuild it and swap a volatile reference, so
+ * evaluation keeps running against the previous snapshot while a rebuild is in flight.
+ * Deleting a fence does not touch any truck: memberships that point at a removed index
+ * are dropped (without EXIT) the next time that truck is evaluated.
+ *
+ * evaluate() must not run concurrently for the same truck (alerts would interleave).
  */
 @Service
 public class GeofenceService {
 
-    private record IndexedGeofence(Geofence geofence, double minLat, double maxLat, double minLon, double maxLon) {}
+    public static final String ENTER = "ENTER_GEOFENCE";
+    public static final String EXIT = "EXIT_GEOFENCE";
+    public static final String DWELL = "DWELL_GEOFENCE";
+
+    private record IndexedGeofence(int index, Geofence geofence, CompiledPolygon polygon,
+                                   double minLat, double maxLat, double minLon, double maxLon)
+            implements GeoGridIndex.Box {}
 
+    private record Snapshot(GeoGridIndex<IndexedGeofence> grid, IndexedGeofence[] byIndex) {}
+
+    private final long dwellMs;
     private final Map<String, IndexedGeofence> geofences = new ConcurrentHashMap<>();
-    private final Map<String, Set<String>> insideByTruck = new ConcurrentHashMap<>();
+    private final HandleArray<GeofenceMembership> membershipByTruck = new HandleArray<>();
+    private final TruckRegistry registry;
+    private volatile Snapshot snapshot = new Snapshot(GeoGridIndex.empty(), new IndexedGeofence[0]);
+    private int nextIndex; // guarded by this
+
+    public GeofenceService(FleetProperties props, TruckRegistry registry) {
+        this.registry = registry;
+        this.dwellMs = props.geofence() == null ? 0 : Math.max(0, props.geofence().dwellMs());
+    }
 
     public Flux<Geofence> list() {
         return Flux.fromIterable(geofences.values()).map(IndexedGeofence::geofence);
     }
 
     public Flux<Geofence> add(Geofence geofence) {
-        geofences.put(geofence.geofenceId(), index(geofence));
+        synchronized (this) {
+            // Replacing a fence keeps its index, so trucks inside it keep their membership.
+            IndexedGeofence existing = geofences.get(geofence.geofenceId());
+            int idx = existing != null ? existing.index() : nextIndex++;
+            geofences.put(geofence.geofenceId(), index(idx, geofence));
+            rebuildSnapshot();
+        }
         return Flux.just(geofence);
     }
 
     public Flux<Void> delete(String geofenceId) {
-        geofences.remove(geofenceId);
-        insideByTruck.values().forEach(set -> set.remove(geofenceId));
+        synchronized (this) {
+            if (geofences.remove(geofenceId) != null) {
+                rebuildSnapshot();
+            }
+        }
         return Flux.empty();
     }
 
+    /**
+     * Evaluate one point, resolving the truck's handle through the registry. A truck the registry
+     * refuses (full) has nowhere to keep its fence state: nothing is evaluated, and the registry
+     * counts the refusal.
+     */
     public Flux<AlertEvent> evaluate(TruckTelemetry t) {
-        if (geofences.isEmpty()) return Flux.empty();
+        int handle = registry.tryHandleOf(t.truckId());
+        return handle == TruckRegistry.NO_HANDLE ? Flux.empty() : evaluate(handle, t);
+    }
 
-        Set<String> inside = insideByTruck.computeIfAbsent(t.truckId(), k -> ConcurrentHashMap.newKeySet());
+    /**
+     * Same as {@link #evaluate(TruckTelemetry)} for callers that already hold the truck's handle.
+     */
+    public Flux<AlertEvent> evaluate(int handle, TruckTelemetry t) {
         List<AlertEvent> alerts = new ArrayList<>();
+        evaluate(handle, t, alerts::add);
+        return alerts.isEmpty() ? Flux.empty() : Flux.fromIterable(alerts);
+    }
 
-        for (IndexedGeofence ig : geofences.values()) {
-            String gid = ig.geofence().geofenceId();
-
-            if (!inBoundingBox(t.lat(), t.lon(), ig)) {
-                inside.remove(gid);
-                continue;
+    /**
+     * Synchronous form used by the pipeline ({@link GeofenceStage}): alerts go straight to
+     * {@code out}, in order, and nothing is allocated unless the truck's membership changes.
+     *
+     * @return number of alerts produced
+     */
+    public int evaluate(int handle, TruckTelemetry t, Consumer<AlertEvent> out) {
+        GeofenceMembership old = membershipByTruck.get(handle);
+        Snapshot snap = snapshot;
+        if (old == null && snap.grid().size() == 0) return 0;
+
+        List<IndexedGeofence> candidates = snap.grid().candidates(t.lat(), t.lon());
+        long now = t.ts() != null ? t.ts().toEpochMilli() : System.currentTimeMillis();
+
+        // Pass 1 (no allocation): count hits and check whether they match the current membership.
+        int hits = 0;
+        boolean changed = false;
+        for (IndexedGeofence ig : candidates) {
+            if (contains(ig, t)) {
+                hits++;
+                if (old == null || old.indexOf(ig.index()) < 0) changed = true;
+            }
+        }
+        int oldSize = old == null ? 0 : old.size();
+
+        int alerts = 0;
+        if (!changed && hits == oldSize) {
+            if (old == null) return 0;
+            // Steady state: same fences as last time, only DWELL can fire.
+            for (int k = 0; k < oldSize; k++) {
+                if (dwellDue(old, k, now)) {
+                    out.accept(alert(DWELL, t, snap.byIndex()[old.fences[k]]));
+                    alerts++;
+                    old = old.withDwellSent(k);
+                    membershipByTruck.set(handle, old);
+                }
             }
+            return alerts;
+        }
 
-            boolean in = GeoUtils.pointInPolygon(t.lat(), t.lon(), ig.geofence().polygon());
-            boolean wasIn = inside.contains(gid);
-
-            if (in && !wasIn) {
-                inside.add(gid);
-                alerts.add(new AlertEvent(
-                        "alert-" + UUID.randomUUID(),
-                        Instant.now(),
-                        "ENTER_GEOFENCE",
-                        t.truckId(),
-                        gid,
-                        t
-                ));
-            } else if (!in && wasIn) {
-                inside.remove(gid);
+        // Pass 2: membership changed; collect sorted hits and merge with the old membership.
+        int[] in = new int[hits];
+        int n = 0;
+        for (IndexedGeofence ig : candidates) {
+            if (contains(ig, t)) in[n++] = ig.index();
+        }
+        Arrays.sort(in);
+
+        int[] fences = new int[hits];
+        long[] enteredAt = new long[hits];
+        boolean[] dwellSent = new boolean[hits];
+        int i = 0, j = 0, m = 0;
+        while (i < oldSize || j < hits) {
+            int o = i < oldSize ? old.fences[i] : Integer.MAX_VALUE;
+            int h = j < hits ? in[j] : Integer.MAX_VALUE;
+            if (o == h) {
+                fences[m] = h;
+                enteredAt[m] = old.enteredAt[i];
+                dwellSent[m] = old.dwellSent[i];
+                if (dwellDue(old, i, now)) {
+                    out.accept(alert(DWELL, t, snap.byIndex()[h]));
+                    alerts++;
+                    dwellSent[m] = true;
+                }
+                m++; i++; j++;
+            } else if (o < h) {
+                IndexedGeofence left = o < snap.byIndex().length ? snap.byIndex()[o] : null;
+                if (left != null) { // deleted fences exit silently
+                    out.accept(alert(EXIT, t, left));
+                    alerts++;
+                }
+                i++;
+            } else {
+                fences[m] = h;
+                enteredAt[m] = now;
+                out.accept(alert(ENTER, t, snap.byIndex()[h]));
+                alerts++;
+                m++; j++;
             }
         }
 
-        return Flux.fromIterable(alerts);
+        if (m == 0) {
+            membershipByTruck.set(handle, null);
+        } else {
+            membershipByTruck.set(handle, new GeofenceMembership(fences, enteredAt, dwellSent));
+        }
+        return alerts;
+    }
+
+    private boolean dwellDue(GeofenceMembership ms, int k, long now) {
+        return dwellMs > 0 && !ms.dwellSent[k] && now - ms.enteredAt[k] >= dwellMs;
+    }
+
+    private boolean contains(IndexedGeofence ig, TruckTelemetry t) {
+        return inBoundingBox(t.lat(), t.lon(), ig) && GeoUtils.pointInPolygon(t.lat(), t.lon(), ig.polygon());
+    }
+
+    private static AlertEvent alert(String type, TruckTelemetry t, IndexedGeofence ig) {
+        return new AlertEvent(
+                "alert-" + UUID.randomUUID(),
+                Instant.now(),
+                type,
+                t.truckId(),
+                ig.geofence().geofenceId(),
+                t
+        );
+    }
+
+    // Called under the service monitor so the last rebuild always sees every completed add/delete.
+    private void rebuildSnapshot() {
+        IndexedGeofence[] byIndex = new IndexedGeofence[nextIndex];
+        for (IndexedGeofence ig : geofences.values()) {
+            byIndex[ig.index()] = ig;
+        }
+        snapshot = new Snapshot(GeoGridIndex.build(geofences.values()), byIndex);
     }
 
-    private IndexedGeofence index(Geofence g) {
+    private IndexedGeofence index(int idx, Geofence g) {
         double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
         double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
 
@@ -87,7 +234,7 @@ public class GeofenceService {
             minLon = Math.min(minLon, p.lon());
             maxLon = Math.max(maxLon, p.lon());
         }
-        return new IndexedGeofence(g, minLat, maxLat, minLon, maxLon);
+        return new IndexedGeofence(idx, g, CompiledPolygon.of(g.polygon()), minLat, maxLat, minLon, maxLon);
     }
 
     private boolean inBoundingBox(double lat, double lon, IndexedGeofence ig) {
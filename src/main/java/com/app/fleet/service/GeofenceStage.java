@@ -0,0 +1,174 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.TruckTelemetry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Geofence evaluation as its own pipeline stage, decoupled from Redis persistence.
+ *
+ * Optimizations:
+ * - Takes a whole tick at once and shards it by truck handle over a bounded parallel
+ *   scheduler; polygon tests run on CPU threads and never wait for a Redis reply
+ * - A truck always lands on the same shard and each shard is one serial worker, so a
+ *   truck's alerts keep their order across ticks (ENTER before DWELL before EXIT)
+ * - Queue depth is bounded (fleet.geofence.max-queued points); a batch that would
+ *   exceed it is dropped and counted rather than growing memory without limit
+ *
+ * Alerts are published to {@link AlertStreamService} as they are produced.
+ */
+@Service
+public class GeofenceStage {
+
+    private final GeofenceService geofences;
+    private final AlertStreamService alerts;
+    private final TruckRegistry registry;
+    private final FleetMetrics metrics;
+    private final int shards;
+    private final long maxQueued;
+    private final Scheduler scheduler;
+    private final Scheduler.Worker[] workers;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong evaluated = new AtomicLong();
+    private final AtomicLong alerted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long lastBatchSize;
+    private volatile long lastBatchNanos;
+
+    public GeofenceStage(FleetProperties props, GeofenceService geofences, AlertStreamService alerts,
+                         TruckRegistry registry, FleetMetrics metrics) {
+        this.geofences = geofences;
+        this.alerts = alerts;
+        this.registry = registry;
+        this.metrics = metrics;
+
+        FleetProperties.Geofence cfg = props.geofence();
+        int configured = cfg == null ? 0 : cfg.shards();
+        this.shards = configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+        this.maxQueued = cfg == null || cfg.maxQueued() <= 0 ? 200_000 : cfg.maxQueued();
+
+        this.scheduler = Schedulers.newParallel("geofence", shards, true);
+        this.workers = new Scheduler.Worker[shards];
+        for (int i = 0; i < shards; i++) {
+            workers[i] = scheduler.createWorker();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.dispose();
+    }
+
+    /**
+     * Queue a batch, resolving handles through the registry.
+     */
+    public boolean submit(List<TruckTelemetry> batch) {
+        return submit(batch, i -> registry.tryHandleOf(batch.get(i).truckId()));
+    }
+
+    /**
+     * Queue a batch for evaluation; {@code handleOf} maps a batch index to the truck's handle.
+     * Points without one ({@link TruckRegistry#NO_HANDLE}: the registry was full) are skipped and
+     * counted as refused. Returns immediately.
+     *
+     * @return false if the batch was dropped because the stage is over its queue bound
+     */
+    public boolean submit(List<TruckTelemetry> batch, IntUnaryOperator handleOf) {
+        int size = batch.size();
+        if (size == 0) return true;
+        if (queued.addAndGet(size) > maxQueued) {
+            queued.addAndGet(-size);
+            dropped.addAndGet(size);
+            return false;
+        }
+
+        // Partition batch indexes by shard (counting sort: two passes, one int[] per shard).
+        int[] handles = new int[size];
+        int[] counts = new int[shards];
+        int refused = 0;
+        for (int i = 0; i < size; i++) {
+            handles[i] = handleOf.applyAsInt(i);
+            if (handles[i] == TruckRegistry.NO_HANDLE) {
+                refused++;
+                continue;
+            }
+            counts[handles[i] % shards]++;
+        }
+        if (refused > 0) {
+            queued.addAndGet(-refused);
+            metrics.recordRefused(refused);
+        }
+        int[][] byShard = new int[shards][];
+        for (int s = 0; s < shards; s++) {
+            byShard[s] = new int[counts[s]];
+            counts[s] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            if (handles[i] == TruckRegistry.NO_HANDLE) continue;
+            int s = handles[i] % shards;
+            byShard[s][counts[s]++] = i;
+        }
+
+        long started = System.nanoTime();
+        AtomicInteger remaining = new AtomicInteger(shards);
+        for (int s = 0; s < shards; s++) {
+            int[] indexes = byShard[s];
+            workers[s].schedule(() -> {
+                try {
+                    runShard(batch, handles, indexes);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        lastBatchSize = size;
+                        lastBatchNanos = System.nanoTime() - started;
+                        metrics.recordStage(FleetMetrics.Stage.GEOFENCE, lastBatchNanos);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    private void runShard(List<TruckTelemetry> batch, int[] handles, int[] indexes) {
+        long produced = 0;
+        int done = 0;
+        try {
+            for (int i : indexes) {
+                try {
+                    produced += geofences.evaluate(handles[i], batch.get(i), alerts::emit);
+                } catch (RuntimeException e) {
+                    // One bad record must not stall the shard; the truck is re-evaluated next tick.
+                }
+                done++;
+            }
+        } finally {
+            queued.addAndGet(-indexes.length);
+            evaluated.addAndGet(done);
+            alerted.addAndGet(produced);
+        }
+    }
+
+    public Stats stats() {
+        long nanos = lastBatchNanos;
+        double perSecond = nanos > 0 ? lastBatchSize * 1e9 / nanos : 0;
+        return new Stats(shards, queued.get(), evaluated.get(), alerted.get(), dropped.get(),
+                lastBatchSize, nanos / 1_000_000.0, perSecond);
+    }
+
+    /**
+     * @param queued           points submitted but not yet evaluated (queue depth)
+     * @param lastBatchMillis  submit-to-last-shard-done time of the most recent batch
+     * @param lastBatchPerSec  points evaluated per second in that batch
+     */
+    public record Stats(int shards, long queued, long evaluated, long alerts, long dropped,
+                        long lastBatchSize, double lastBatchMillis, double lastBatchPerSec) { }
+}
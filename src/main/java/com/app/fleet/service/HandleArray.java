@@ -0,0 +1,43 @@
+package com.example.fleet.service;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Array-like table indexed by truck handle ({@link TruckRegistry}), lock-free.
+ *
+ * Storage grows in fixed pages created with CAS (same layout as {@link LatestTelemetryBuffer}),
+ * so set() never waits on a resize and get() is two array reads.
+ */
+public final class HandleArray<T> {
+
+    static final int PAGE_BITS = 12;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    static final int MAX_PAGES = 1 << 12;          // 16M handles
+    public static final int CAPACITY = PAGE_SIZE * MAX_PAGES;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<T>> pages = new AtomicReferenceArray<>(MAX_PAGES);
+
+    public T get(int handle) {
+        AtomicReferenceArray<T> p = pages.get(handle >>> PAGE_BITS);
+        return p == null ? null : p.get(handle & (PAGE_SIZE - 1));
+    }
+
+    public void set(int handle, T value) {
+        page(handle >>> PAGE_BITS).set(handle & (PAGE_SIZE - 1), value);
+    }
+
+    public boolean compareAndSet(int handle, T expect, T update) {
+        return page(handle >>> PAGE_BITS).compareAndSet(handle & (PAGE_SIZE - 1), expect, update);
+    }
+
+    private AtomicReferenceArray<T> page(int index) {
+        if (index >= MAX_PAGES) {
+            throw new IllegalStateException("truck handle out of range: page " + index);
+        }
+        AtomicReferenceArray<T> p = pages.get(index);
+        if (p != null) return p;
+
+        AtomicReferenceArray<T> created = new AtomicReferenceArray<>(PAGE_SIZE);
+        return pages.compareAndSet(index, null, created) ? created : pages.get(index);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.model.IngestResult;
+import com.example.fleet.model.TruckTelemetry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Device ingestion into the same {@link TelemetryPipeline} the simulator uses.
+ *
+ * Optimizations:
+ * - Points are grouped into batches (fleet.ingest.batch-size / batch-ms) so each batch costs
+ *   one pipelined Redis write and one geofence-stage submit, not one per point
+ * - Backpressure reaches the producer: a connection has one batch in flight and requests
+ *   the next points only when that batch is persisted (HTTP stops reading the socket,
+ *   RSocket stops granting request(n)); nothing is buffered without limit
+ * - Invalid points, and points from new trucks once the registry is full, are counted and
+ *   skipped instead of failing the whole stream
+ *
+ * Per-connection batches are processed in order, so a truck's points stay ordered.
+ */
+@Service
+public class IngestService {
+
+    private final TelemetryPipeline pipeline;
+    private final TruckRegistry registry;
+    private final ObjectMapper mapper;
+    private final int batchSize;
+    private final Duration batchWindow;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public IngestService(FleetProperties props, TelemetryPipeline pipeline, TruckRegistry registry, ObjectMapper mapper) {
+        this.pipeline = pipeline;
+        this.registry = registry;
+        this.mapper = mapper;
+        FleetProperties.Ingest cfg = props.ingest();
+        this.batchSize = cfg == null || cfg.batchSize() <= 0 ? 2000 : Math.min(50_000, cfg.batchSize());
+        this.batchWindow = Duration.ofMillis(cfg == null || cfg.batchMs() <= 0 ? 50 : Math.max(5, cfg.batchMs()));
+    }
+
+    /**
+     * Ingest NDJSON lines (one TruckTelemetry object per line; blank lines are ignored).
+     *
+     * @return totals for this stream, once it completes
+     */
+    public Mono<IngestResult> ingestLines(Flux<String> lines) {
+        return Mono.defer(() -> {
+            Tally tally = new Tally();
+            Flux<TruckTelemetry> points = lines.handle((line, sink) -> {
+                if (line.isBlank()) return;
+                TruckTelemetry t = parse(line);
+                if (t != null) {
+                    sink.next(t);
+                } else {
+                    tally.reject(1);
+                }
+            });
+            // Lines rejected after the last batch never reach a batch tally, so report the total at completion.
+            return ingest(points, tally).then(Mono.fromSupplier(tally::snapshot));
+        });
+    }
+
+    /**
+     * Ingest decoded points. Emits the running totals for this stream after every batch.
+     */
+    public Flux<IngestResult> ingest(Flux<TruckTelemetry> points) {
+        return Flux.defer(() -> ingest(points, new Tally()));
+    }
+
+    private Flux<IngestResult> ingest(Flux<TruckTelemetry> points, Tally tally) {
+        return points
+                .<TruckTelemetry>handle((t, sink) -> {
+                    TruckTelemetry n = normalize(t);
+                    if (n != null && admit(n.truckId())) {
+                        sink.next(n);
+                    } else {
+                        tally.reject(1);
+                    }
+                })
+                // fairBackpressure: only pulls points downstream has asked for, never overflows
+                .bufferTimeout(batchSize, batchWindow, true)
+                .concatMap(batch -> write(batch, tally), 1);
+    }
+
+    private Mono<IngestResult> write(List<TruckTelemetry> batch, Tally tally) {
+        return pipeline.publish(batch)
+                .then(Mono.fromSupplier(() -> tally.accept(batch.size())))
+                // A failed write loses this batch only; the stream keeps going and reports it.
+                .onErrorResume(e -> Mono.fromSupplier(() -> tally.reject(batch.size())));
+    }
+
+    private TruckTelemetry parse(String line) {
+        try {
+            return mapper.readValue(line, TruckTelemetry.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the point with a server timestamp if it had none, or null if it is unusable.
+     */
+    static TruckTelemetry normalize(TruckTelemetry t) {
+        if (!isValid(t)) return null;
+        return t.ts() != null ? t
+                : new TruckTelemetry(t.truckId(), Instant.now(), t.lat(), t.lon(), t.speedKph(), t.fuelPct(), t.headingDeg());
+    }
+
+    /** Has an id, an in-range position and finite readings; replay applies the same checks. */
+    static boolean isValid(TruckTelemetry t) {
+        if (t == null || t.truckId() == null || t.truckId().isBlank()) return false;
+        if (!(t.lat() >= -90 && t.lat() <= 90 && t.lon() >= -180 && t.lon() <= 180)) return false;
+        return Double.isFinite(t.speedKph()) && Double.isFinite(t.fuelPct()) && Double.isFinite(t.headingDeg());
+    }
+
+    /**
+     * Interns the id as the point is admitted, so the registry cap (fleet.registry.max-trucks) is
+     * enforced per point: a device inventing ids must not grow the never-released handle table.
+     */
+    private boolean admit(String truckId) {
+        return registry.tryHandleOf(truckId) != TruckRegistry.NO_HANDLE;
+    }
+
+    /** Totals since startup, across all connections. */
+    public IngestResult totals() {
+        return new IngestResult(accepted.get(), rejected.get());
+    }
+
+    /** Per-stream counters; also rolls into the service totals. */
+    private final class Tally {
+        private final AtomicLong streamAccepted = new AtomicLong();
+        private final AtomicLong streamRejected = new AtomicLong();
+
+        IngestResult accept(int n) {
+            accepted.addAndGet(n);
+            return new IngestResult(streamAccepted.addAndGet(n), streamRejected.get());
+        }
+
+        IngestResult reject(int n) {
+            rejected.addAndGet(n);
+            return new IngestResult(streamAccepted.get(), streamRejected.addAndGet(n));
+        }
+
+        IngestResult snapshot() {
+            return new IngestResult(streamAccepted.get(), streamRejected.get());
+        }
+    }
+}
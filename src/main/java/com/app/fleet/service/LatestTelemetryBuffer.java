@@ -0,0 +1,154 @@
+package com.example.fleet.service;
+
+import com.example.fleet.model.TruckTelemetry;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Slot-indexed latest-value store with a concurrent dirty bitset (lock-free).
+ *
+ * Optimizations:
+ * - offer() is two array writes: the value into its slot, then the slot's dirty bit
+ *   (skipped when already set); no map churn, no allocation after a page exists
+ * - drain() only visits words of the bitset that are non-zero, so a flush costs
+ *   O(changed trucks), never a copy of the key set
+ * - Storage grows in fixed pages created with CAS, so offer() never waits on a resize
+ * - A capped drain resumes right after the last slot it handed out, so slots that change
+ *   on every tick cannot starve the ones after them
+ *
+ * Ordering: offer() writes the value before the bit, drain() clears the bit before
+ * reading the value. An update racing a drain is therefore emitted now or on the
+ * next drain, never lost (at worst the newest value is emitted twice).
+ */
+final class LatestTelemetryBuffer {
+
+    static final int PAGE_BITS = 12;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;   // slots per page
+    static final int MAX_PAGES = 1 << 12;          // 16M slots
+    private static final int WORDS_PER_PAGE = PAGE_SIZE / 64;
+    private static final int WORD_BITS = PAGE_BITS - 6; // log2(WORDS_PER_PAGE)
+
+    private final AtomicReferenceArray<Page> pages = new AtomicReferenceArray<>(MAX_PAGES);
+    private volatile int pageCount;
+
+    // Slot where the next drain starts (one past the last slot drained), and per-drain scratch.
+    // Single drainer, so plain fields.
+    private int cursor;
+    private int drained;
+    private int lastDrained;
+
+    /**
+     * Stores {@code t} as the slot's latest value and marks it dirty.
+     *
+     * @return true if it replaced a value not drained yet
+     */
+    boolean offer(int slot, TruckTelemetry t) {
+        Page p = page(slot >>> PAGE_BITS);
+        int local = slot & (PAGE_SIZE - 1);
+        p.values.set(local, t);
+
+        int word = local >>> 6;
+        long mask = 1L << local;
+        if ((p.dirty.get(word) & mask) == 0) {
+            return (p.dirty.getAndAccumulate(word, mask, (a, b) -> a | b) & mask) != 0;
+        }
+        return true;
+    }
+
+    /**
+     * Hands up to {@code max} changed values to {@code sink}. If the sink returns false
+     * the slot stays dirty and is retried on the next drain. Single drainer only.
+     *
+     * @return number of values accepted by the sink
+     */
+    int drain(int max, Predicate<TruckTelemetry> sink) {
+        return drainSlots(max, (slot, t) -> sink.test(t));
+    }
+
+    /** Sink that also receives the value's slot. */
+    interface SlotSink {
+        boolean accept(int slot, TruckTelemetry t);
+    }
+
+    /**
+     * Same as {@link #drain(int, Predicate)} for sinks that need each value's slot.
+     */
+    int drainSlots(int max, SlotSink sink) {
+        int pagesNow = pageCount;
+        if (pagesNow == 0) return 0;
+
+        int words = pagesNow * WORDS_PER_PAGE;
+        int startWord = (cursor >>> 6) % words;
+        long startMask = -1L << (cursor & 63);
+        drained = 0;
+        lastDrained = -1;
+
+        // Start mid-word at the cursor, go round every word once, then finish the start word's low bits.
+        drainWord(startWord, startMask, max, sink);
+        for (int n = 1; n < words && drained < max; n++) {
+            drainWord(startWord + n < words ? startWord + n : startWord + n - words, -1L, max, sink);
+        }
+        if (drained < max && startMask != -1L) {
+            drainWord(startWord, ~startMask, max, sink);
+        }
+
+        if (lastDrained >= 0) {
+            cursor = (lastDrained + 1) % (words << 6);
+        }
+        return drained;
+    }
+
+    private void drainWord(int globalWord, long mask, int max, SlotSink sink) {
+        Page p = pages.get(globalWord >>> WORD_BITS);
+        if (p == null) return;
+
+        int w = globalWord & (WORDS_PER_PAGE - 1);
+        if ((p.dirty.get(w) & mask) == 0) return;
+        long bits = p.dirty.getAndAccumulate(w, ~mask, (a, b) -> a & b) & mask;
+        long retry = 0;
+
+        while (bits != 0) {
+            long lowest = bits & -bits;
+            bits ^= lowest;
+            if (drained >= max) {
+                retry |= lowest;
+                continue;
+            }
+            int bit = Long.numberOfTrailingZeros(lowest);
+            TruckTelemetry t = p.values.get((w << 6) + bit);
+            if (t != null && sink.accept((globalWord << 6) + bit, t)) {
+                drained++;
+                lastDrained = (globalWord << 6) + bit;
+            } else if (t != null) {
+                retry |= lowest;
+            }
+        }
+        if (retry != 0) {
+            p.dirty.getAndAccumulate(w, retry, (a, b) -> a | b);
+        }
+    }
+
+    private Page page(int index) {
+        if (index >= MAX_PAGES) {
+            throw new IllegalStateException("truck slot out of range: page " + index);
+        }
+        Page p = pages.get(index);
+        if (p != null) return p;
+
+        Page created = new Page();
+        if (!pages.compareAndSet(index, null, created)) {
+            return pages.get(index);
+        }
+        synchronized (this) {
+            if (pageCount <= index) pageCount = index + 1;
+        }
+        return created;
+    }
+
+    private static final class Page {
+        final AtomicReferenceArray<TruckTelemetry> values = new AtomicReferenceArray<>(PAGE_SIZE);
+        final AtomicLongArray dirty = new AtomicLongArray(WORDS_PER_PAGE);
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.model.TruckTelemetry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Replays recorded telemetry files ({@link ReplaySource}) through the same {@link TelemetryPipeline}
+ * as the simulator and device ingestion, at a chosen speed (1x, 10x, ... or as fast as possible).
+ *
+ * Pacing:
+ * - Points are cut into batches covering fleet.replay.batch-ms of wall time (or batch-size points)
+ * - Each batch is due at start + (event time - first event time) / speed; the run waits for that
+ *   instant, publishes, and records how late it was (lag behind schedule)
+ * - At max speed batches are size-based and published back to back; the pipeline's own
+ *   backpressure (one batch in flight) sets the pace
+ *
+ * By default points are re-stamped with the publish time so the live pipeline (dashboards, dwell
+ * timers) sees them as current; keepTimestamps=true forwards the recorded timestamps unchanged.
+ *
+ * Files are resolved inside fleet.replay.dir only. One replay runs at a time.
+ */
+@Service
+public class ReplayService {
+
+    private final TelemetryPipeline pipeline;
+    private final ObjectMapper mapper;
+    private final Path dir;
+    private final int batchSize;
+    private final long batchMs;
+
+    private volatile Run current;
+
+    public ReplayService(FleetProperties props, TelemetryPipeline pipeline, ObjectMapper mapper) {
+        this.pipeline = pipeline;
+        this.mapper = mapper;
+        FleetProperties.Replay cfg = props.replay();
+        this.dir = Paths.get(cfg == null || cfg.dir() == null || cfg.dir().isBlank() ? "data/replay" : cfg.dir())
+                .toAbsolutePath().normalize();
+        this.batchSize = cfg == null || cfg.batchSize() <= 0 ? 2000 : Math.min(50_000, cfg.batchSize());
+        this.batchMs = cfg == null || cfg.batchMs() <= 0 ? 100 : Math.max(10, cfg.batchMs());
+    }
+
+    /**
+     * Start replaying {@code fileName} (relative to the replay directory), stopping any running replay.
+     *
+     * @param speed playback rate; 0 or less = as fast as possible
+     */
+    public synchronized Status start(String fileName, double speed, boolean keepTimestamps) throws IOException {
+        Path file = resolve(fileName);
+        stop();
+
+        Run run = new Run(file.getFileName().toString(), speed > 0 ? speed : 0, keepTimestamps);
+        this.current = run;
+        run.subscription = ReplaySource.read(file, mapper, run.rejected)
+                .bufferUntil(batchCut(run), true)
+                .concatMap(batch -> replay(run, batch), 1)
+                .doOnError(e -> run.error = e.toString())
+                .doFinally(signal -> run.finished(System.nanoTime()))
+                .subscribe(v -> {}, e -> {});
+        return run.status();
+    }
+
+    public synchronized Status stop() {
+        Run run = current;
+        if (run != null && run.subscription != null && !run.subscription.isDisposed()) {
+            run.subscription.dispose();
+        }
+        return status();
+    }
+
+    public Status status() {
+        Run run = current;
+        return run == null ? Status.IDLE : run.status();
+    }
+
+    /**
+     * Convert an NDJSON recording in the replay directory into the binary form next to it.
+     *
+     * @return number of points written
+     */
+    public Mono<Long> convertToBinary(String fileName) {
+        return Mono.fromCallable(() -> {
+            Path in = resolve(fileName);
+            String name = in.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            Path out = in.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ReplaySource.BINARY_SUFFIX);
+            return ReplaySource.writeBinary(ReplaySource.ndjson(in, mapper, new AtomicLong()), out);
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        stop();
+    }
+
+    private Path resolve(String fileName) throws IOException {
+        Path file = dir.resolve(fileName).normalize();
+        if (!file.startsWith(dir)) {
+            throw new IllegalArgumentException("replay file must be inside " + dir);
+        }
+        if (!Files.isRegularFile(file)) {
+            throw new NoSuchFileException(file.toString());
+        }
+        return file;
+    }
+
+    /** Closes a batch before the point that would exceed batch-size or the batch's wall-time window. */
+    private Predicate<TruckTelemetry> batchCut(Run run) {
+        long windowEventMs = run.speed > 0 ? Math.max(1, (long) (batchMs * run.speed)) : Long.MAX_VALUE;
+        return new Predicate<>() {
+            long batchStart = Long.MIN_VALUE;
+            int size;
+
+            @Override
+            public boolean test(TruckTelemetry t) {
+                long ev = run.eventMs(t);
+                if (batchStart == Long.MIN_VALUE || size >= batchSize || ev - batchStart >= windowEventMs) {
+                    boolean cut = batchStart != Long.MIN_VALUE;
+                    batchStart = ev;
+                    size = 1;
+                    return cut;
+                }
+                size++;
+                return false;
+            }
+        };
+    }
+
+    private Mono<Void> replay(Run run, List<TruckTelemetry> batch) {
+        long due = run.dueNanos(run.eventMs(batch.get(0)));
+        long wait = due - System.nanoTime();
+        Mono<Long> pace = run.speed > 0 && wait > 0 ? Mono.delay(Duration.ofNanos(wait)) : Mono.just(0L);
+
+        return pace.then(Mono.defer(() -> {
+            if (run.speed > 0) run.recordLag(System.nanoTime() - due);
+            List<TruckTelemetry> out = run.keepTimestamps ? batch : restamp(batch, Instant.now());
+            return pipeline.publish(out)
+                    .doOnSuccess(ok -> run.published(batch))
+                    .onErrorResume(e -> {
+                        run.rejected.addAndGet(batch.size()); // lose this batch, keep replaying
+                        return Mono.empty();
+                    });
+        }));
+    }
+
+    private static List<TruckTelemetry> restamp(List<TruckTelemetry> batch, Instant ts) {
+        List<TruckTelemetry> out = new ArrayList<>(batch.size());
+        for (TruckTelemetry t : batch) {
+            out.add(new TruckTelemetry(t.truckId(), ts, t.lat(), t.lon(), t.speedKph(), t.fuelPct(), t.headingDeg()));
+        }
+        return out;
+    }
+
+    /**
+     * @param speed          playback rate, 0 = as fast as possible
+     * @param pointsPerSec   published points / elapsed wall time
+     * @param lagMs          how late the latest batch was published vs its schedule
+     * @param eventTime      recorded timestamp of the latest published point
+     */
+    public record Status(boolean running, String file, double speed, long published, long rejected, long batches,
+                         long elapsedMs, double pointsPerSec, double lagMs, double maxLagMs, Instant eventTime,
+                         String error) {
+        static final Status IDLE = new Status(false, null, 0, 0, 0, 0, 0, 0, 0, 0, null, null);
+    }
+
+    private static final class Run {
+        final String file;
+        final double speed;
+        final boolean keepTimestamps;
+        final long startNanos = System.nanoTime();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong published = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+
+        volatile Disposable subscription;
+        volatile String error;
+        volatile long endNanos;
+        volatile long lagNanos;
+        volatile long maxLagNanos;
+        volatile long lastEventMs = Long.MIN_VALUE;
+        private long firstEventMs = Long.MIN_VALUE; // replay thread only
+
+        Run(String file, double speed, boolean keepTimestamps) {
+            this.file = file;
+            this.speed = speed;
+            this.keepTimestamps = keepTimestamps;
+        }
+
+        /** Recorded event time; points without a timestamp reuse the previous one. */
+        long eventMs(TruckTelemetry t) {
+            if (t.ts() != null) return t.ts().toEpochMilli();
+            return lastEventMs == Long.MIN_VALUE ? 0 : lastEventMs;
+        }
+
+        long dueNanos(long eventMs) {
+            if (firstEventMs == Long.MIN_VALUE) firstEventMs = eventMs;
+            if (speed <= 0) return startNanos;
+            return startNanos + (long) (Math.max(0, eventMs - firstEventMs) * 1_000_000L / speed);
+        }
+
+        void recordLag(long nanos) {
+            lagNanos = Math.max(0, nanos);
+            if (lagNanos > maxLagNanos) maxLagNanos = lagNanos;
+        }
+
+        void published(List<TruckTelemetry> batch) {
+            published.addAndGet(batch.size());
+            batches.incrementAndGet();
+            lastEventMs = eventMs(batch.get(batch.size() - 1));
+        }
+
+        void finished(long nanos) {
+            endNanos = nanos;
+        }
+
+        Status status() {
+            boolean running = endNanos == 0;
+            long elapsed = (running ? System.nanoTime() : endNanos) - startNanos;
+            long points = published.get();
+            long ev = lastEventMs;
+            return new Status(running, file, speed, points, rejected.get(), batches.get(),
+                    elapsed / 1_000_000, elapsed > 0 ? points * 1e9 / elapsed : 0,
+                    lagNanos / 1e6, maxLagNanos / 1e6,
+                    ev == Long.MIN_VALUE ? null : Instant.ofEpochMilli(ev), error);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.fleet.service;
+
+import com.example.fleet.codec.TelemetryBatchCodec;
+import com.example.fleet.model.TruckTelemetry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recorded telemetry files for replay, read lazily (one line / one frame at a time).
+ *
+ * Formats:
+ * - NDJSON (any other extension): one TruckTelemetry JSON object per line, e.g. an upload to /api/ingest
+ * - Binary ({@value #BINARY_SUFFIX}): a sequence of {@link TelemetryBatchCodec} frames, each prefixed
+ *   with its u32 big-endian length; one truck-id dictionary spans the whole file (~22 bytes per point)
+ *
+ * Reading blocks on file I/O, so both readers run on the bounded-elastic scheduler.
+ */
+final class ReplaySource {
+
+    static final String BINARY_SUFFIX = ".ftb";
+    static final int FRAME_POINTS = 4096;
+
+    private ReplaySource() {}
+
+    static boolean isBinary(Path file) {
+        return file.getFileName().toString().endsWith(BINARY_SUFFIX);
+    }
+
+    /**
+     * Points that fail device-ingest validation ({@link IngestService#isValid}) are counted in
+     * {@code rejected} and skipped one by one, so a bad point never costs its batch.
+     */
+    static Flux<TruckTelemetry> read(Path file, ObjectMapper mapper, AtomicLong rejected) {
+        return isBinary(file) ? validOnly(binary(file), rejected) : ndjson(file, mapper, rejected);
+    }
+
+    /** Unparseable or invalid lines are counted in {@code rejected} and skipped. */
+    static Flux<TruckTelemetry> ndjson(Path file, ObjectMapper mapper, AtomicLong rejected) {
+        return Flux.using(() -> Files.newBufferedReader(file), (BufferedReader r) -> Flux.fromStream(r.lines()), ReplaySource::closeQuietly)
+                .<TruckTelemetry>handle((line, sink) -> {
+                    if (line.isBlank()) return;
+                    TruckTelemetry t;
+                    try {
+                        t = mapper.readValue(line, TruckTelemetry.class);
+                    } catch (Exception e) {
+                        t = null;
+                    }
+                    if (IngestService.isValid(t)) {
+                        sink.next(t);
+                    } else {
+                        rejected.incrementAndGet();
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    static Flux<TruckTelemetry> binary(Path file) {
+        return Flux.using(
+                        () -> new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)),
+                        in -> {
+                            TelemetryBatchCodec.Decoder decoder = TelemetryBatchCodec.decoder();
+                            return Flux.<List<TruckTelemetry>>generate(sink -> {
+                                try {
+                                    int length = in.readInt();
+                                    byte[] frame = new byte[length];
+                                    in.readFully(frame);
+                                    sink.next(decoder.decode(ByteBuffer.wrap(frame)));
+                                } catch (EOFException eof) {
+                                    sink.complete();
+                                } catch (IOException e) {
+                                    sink.error(new UncheckedIOException(e));
+                                }
+                            });
+                        },
+                        ReplaySource::closeQuietly)
+                .concatMapIterable(batch -> batch)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Flux<TruckTelemetry> validOnly(Flux<TruckTelemetry> points, AtomicLong rejected) {
+        return points.filter(t -> {
+            if (IngestService.isValid(t)) return true;
+            rejected.incrementAndGet();
+            return false;
+        });
+    }
+
+    /**
+     * Write {@code points} as a binary recording. Blocking; call off the event loop.
+     *
+     * @return number of points written
+     */
+    static long writeBinary(Flux<TruckTelemetry> points, Path out) throws IOException {
+        TelemetryBatchCodec.Encoder encoder = TelemetryBatchCodec.encoder();
+        long written = 0;
+        try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(out), 1 << 16))) {
+            for (List<TruckTelemetry> frame : points.buffer(FRAME_POINTS).toIterable()) {
+                byte[] bytes = encoder.encode(frame);
+                os.writeInt(bytes.length);
+                os.write(bytes);
+                written += frame.size();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return written;
+    }
+
+    private static void closeQuietly(AutoCloseable c) {
+        try {
+            c.close();
+        } catch (Exception ignored) {
+            // read-only file; nothing to recover
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package com.example.fleet.service;
 
 import com.example.fleet.config.FleetProperties;
+import com.example.fleet.metrics.FleetMetrics;
 import com.example.fleet.model.TruckTelemetry;
-import com.example.fleet.repo.TruckStateRepository;
+import jakarta.annotation.PreDestroy;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
@@ -11,41 +12,38 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
-import java.time.Instant;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Non-blocking simulator:
- * - Maintains in-memory truck state for fast updates
- * - Writes latest state to Redis (reactive)
- * - Publishes to a hot telemetry stream service (aggregated downstream)
- * - Evaluates geofences and emits alerts (reactively composed; no nested subscribe)
+ * - Maintains in-memory truck state in a structure-of-arrays engine stepped in parallel
+ * - Feeds each tick through the shared {@link TelemetryPipeline} (same path as device ingest):
+ *   geofence stage first, one bulk Redis write, then the coalesced telemetry stream
  */
 @Service
 public class SimulatorService {
 
     private final FleetProperties props;
-    private final TruckStateRepository repo;
-    private final TelemetryStreamService telemetryStream;
-    private final GeofenceService geofenceService;
-    private final AlertStreamService alertStream;
+    private final TelemetryPipeline pipeline;
+    private final TruckRegistry registry;
+    private final FleetMetrics metrics;
 
-    private final Map<String, TruckTelemetry> state = new ConcurrentHashMap<>();
-    private final Random rng = new Random(7);
+    private static final long SEED = 7;
 
+    private final ForkJoinPool stepPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private volatile FleetSimulationEngine engine = new FleetSimulationEngine(0, SEED, stepPool);
     private volatile Disposable loop;
 
     public SimulatorService(FleetProperties props,
-                            TruckStateRepository repo,
-                            TelemetryStreamService telemetryStream,
-                            GeofenceService geofenceService,
-                            AlertStreamService alertStream) {
+                            TelemetryPipeline pipeline,
+                            TruckRegistry registry,
+                            FleetMetrics metrics) {
         this.props = props;
-        this.repo = repo;
-        this.telemetryStream = telemetryStream;
-        this.geofenceService = geofenceService;
-        this.alertStream = alertStream;
+        this.pipeline = pipeline;
+        this.registry = registry;
+        this.metrics = metrics;
     }
 
     @EventListener(ApplicationReadyEvent.class)
@@ -62,7 +60,7 @@ public class SimulatorService {
         long tickMs = Math.max(50, props.simulator().tickMs());
 
         this.loop = Flux.interval(Duration.ofMillis(tickMs))
-                .flatMap(tick -> tickOnce(), 1) // one tick at a time (keeps load predictable)
+                .flatMap(tick -> tickOnce(tickMs), 1) // one tick at a time (keeps load predictable)
                 .onErrorContinue((err, o) -> {}) // keep simulator alive
                 .subscribe();
     }
@@ -74,73 +72,33 @@ public class SimulatorService {
         loop = null;
     }
 
+    @PreDestroy
+    void shutdown() {
+        stop();
+        stepPool.shutdown();
+    }
+
     public boolean isRunning() {
         return loop != null && !loop.isDisposed();
     }
 
     public int truckCount() {
-        return state.size();
+        return engine.size();
     }
 
     private void seedTrucks(int count) {
-        state.clear();
-        // Bounding box around a city for demo. Lat: 51.3..51.7, Lon: -0.5..0.2
-        for (int i = 1; i <= count; i++) {
-            String id = String.format("TRK-%05d", i);
-            double lat = 51.3 + rng.nextDouble() * 0.4;
-            double lon = -0.5 + rng.nextDouble() * 0.7;
-            double speed = 10 + rng.nextDouble() * 60;
-            double fuel = 20 + rng.nextDouble() * 80;
-            double heading = rng.nextDouble() * 360;
-            state.put(id, new TruckTelemetry(id, Instant.now(), lat, lon, speed, fuel, heading));
-        }
-    }
-
-    private Mono<Void> tickOnce() {
-        // Compute updated state in-memory (CPU only)
-        List<TruckTelemetry> updated = new ArrayList<>(state.size());
-        for (TruckTelemetry t : state.values()) {
-            updated.add(step(t));
-        }
-
-        // Persist + stream + geofence checks, bounded concurrency so Redis doesn't get flooded.
-        return Flux.fromIterable(updated)
-                .flatMap(t ->
-                        repo.upsert(t)
-                                .then(Mono.fromRunnable(() -> telemetryStream.accept(t)))
-                                .then(geofenceService.evaluate(t)
-                                        .doOnNext(alertStream::emit)
-                                        .then())
-                , 256)
-                .then();
-    }
-
-    private TruckTelemetry step(TruckTelemetry t) {
-        double heading = wrap360(t.headingDeg() + (rng.nextDouble() - 0.5) * 12);
-        double speed = clamp(t.speedKph() + (rng.nextDouble() - 0.5) * 8, 0, 120);
-        double fuel = clamp(t.fuelPct() - (0.005 + speed / 12000.0), 0, 100);
-
-        double distance = speed / 3600.0; // km per second at 1Hz
-        double dLat = (distance / 110.574) * Math.cos(Math.toRadians(heading));
-        double dLon = (distance / (111.320 * Math.cos(Math.toRadians(t.lat())) + 1e-9)) * Math.sin(Math.toRadians(heading));
-
-        double lat = t.lat() + dLat;
-        double lon = t.lon() + dLon;
-
-        if (lat < 51.3 || lat > 51.7) lat = 51.3 + rng.nextDouble() * 0.4;
-        if (lon < -0.5 || lon > 0.2) lon = -0.5 + rng.nextDouble() * 0.7;
-
-        TruckTelemetry next = new TruckTelemetry(t.truckId(), Instant.now(), lat, lon, speed, fuel, heading);
-        state.put(t.truckId(), next);
-        return next;
+        this.engine = new FleetSimulationEngine(count, SEED, stepPool, registry);
     }
 
-    private double clamp(double v, double min, double max) {
-        return Math.max(min, Math.min(max, v));
-    }
+    private Mono<Void> tickOnce(long tickMs) {
+        long started = System.nanoTime();
+        // Compute updated state in-memory (CPU only, parallel chunks); records are built only here.
+        FleetSimulationEngine e = engine;
+        e.step();
+        List<TruckTelemetry> updated = e.snapshot();
 
-    private double wrap360(double v) {
-        double x = v % 360.0;
-        return x < 0 ? x + 360.0 : x;
+        // Snapshot order == slot order, so the engine already knows every handle.
+        return pipeline.publish(updated, e::handle)
+                .doOnSuccess(ok -> metrics.recordTick(System.nanoTime() - started, tickMs));
     }
 }
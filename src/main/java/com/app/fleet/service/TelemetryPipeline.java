@@ -0,0 +1,152 @@
+package com.example.fleet.service;
+
+import com.example.fleet.history.HistoryStore;
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.repo.TruckStateRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The one path every telemetry batch takes, whatever its source (simulator tick, device ingest).
+ * Each truck's {@link TruckRegistry} handle is resolved once, at the head, and travels with the
+ * batch to every stage below:
+ * - the batch is queued for the local {@link HistoryStore} (never waits for disk; every point is kept)
+ * - the {@link DeadBandFilter} drops updates that barely differ from the truck's last forwarded one;
+ *   only the rest reach the stages below (held-back final states are flushed by a settle sweep)
+ * - geofence evaluation is handed to the {@link GeofenceStage} first (never waits for Redis)
+ * - the batch is persisted with one pipelined bulk write
+ * - once persisted, each truck's update is offered to the coalescing {@link TelemetryStreamService}
+ */
+@Service
+public class TelemetryPipeline {
+
+    private final TruckStateRepository repo;
+    private final TelemetryStreamService telemetryStream;
+    private final GeofenceStage geofenceStage;
+    private final HistoryStore history;
+    private final DeadBandFilter deadBand;
+    private final TruckRegistry registry;
+    private final FleetMetrics metrics;
+
+    private volatile Disposable settler;
+
+    public TelemetryPipeline(TruckStateRepository repo,
+                             TelemetryStreamService telemetryStream,
+                             GeofenceStage geofenceStage,
+                             HistoryStore history,
+                             DeadBandFilter deadBand,
+                             TruckRegistry registry,
+                             FleetMetrics metrics) {
+        this.repo = repo;
+        this.telemetryStream = telemetryStream;
+        this.geofenceStage = geofenceStage;
+        this.history = history;
+        this.deadBand = deadBand;
+        this.registry = registry;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    void startSettler() {
+        if (!deadBand.enabled()) return;
+        this.settler = Flux.interval(Duration.ofMillis(Math.max(100, deadBand.settleMs() / 2)))
+                .concatMap(tick -> flushSettled().onErrorResume(e -> Mono.empty()))
+                .onErrorContinue((e, o) -> {})
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stopSettler() {
+        if (settler != null && !settler.isDisposed()) {
+            settler.dispose();
+        }
+    }
+
+    /** Forward the exact last state of trucks whose final update was held back by the dead band. */
+    Mono<Void> flushSettled() {
+        DeadBandFilter.Settled settled = deadBand.takeSettled(System.currentTimeMillis());
+        if (settled.trucks().isEmpty()) return Mono.empty();
+        metrics.recordDeadBand(settled.trucks().size(), 0);
+        int[] handles = settled.handles();
+        return forward(settled.trucks(), i -> handles[i]);
+    }
+
+    /**
+     * Publish a batch, resolving each truck's handle once through the registry.
+     * Points from new trucks the registry refuses (fleet.registry.max-trucks reached) are dropped and counted.
+     */
+    public Mono<Void> publish(List<TruckTelemetry> batch) {
+        int[] handles = new int[batch.size()];
+        int refused = 0;
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = registry.tryHandleOf(batch.get(i).truckId());
+            if (handles[i] == TruckRegistry.NO_HANDLE) refused++;
+        }
+        if (refused == 0) return publish(batch, i -> handles[i]);
+
+        metrics.recordRefused(refused);
+        List<TruckTelemetry> known = new ArrayList<>(batch.size() - refused);
+        int[] knownHandles = new int[batch.size() - refused];
+        for (int i = 0; i < handles.length; i++) {
+            if (handles[i] == TruckRegistry.NO_HANDLE) continue;
+            knownHandles[known.size()] = handles[i];
+            known.add(batch.get(i));
+        }
+        return publish(known, k -> knownHandles[k]);
+    }
+
+    /**
+     * Publish a batch whose handles the caller already knows ({@code handleOf} maps batch index to handle).
+     */
+    public Mono<Void> publish(List<TruckTelemetry> batch, IntUnaryOperator handleOf) {
+        if (batch.isEmpty()) return Mono.empty();
+
+        history.append(batch, handleOf);
+        if (!deadBand.enabled()) return forward(batch, handleOf);
+
+        long now = System.currentTimeMillis();
+        int[] kept = new int[batch.size()];
+        int n = 0;
+        for (int i = 0; i < kept.length; i++) {
+            if (deadBand.accept(handleOf.applyAsInt(i), batch.get(i), now)) kept[n++] = i;
+        }
+        metrics.recordDeadBand(n, batch.size() - n);
+        if (n == batch.size()) return forward(batch, handleOf);
+        if (n == 0) return Mono.empty();
+
+        List<TruckTelemetry> changed = new ArrayList<>(n);
+        int[] handles = new int[n];
+        for (int k = 0; k < n; k++) {
+            changed.add(batch.get(kept[k]));
+            handles[k] = handleOf.applyAsInt(kept[k]);
+        }
+        return forward(changed, k -> handles[k]);
+    }
+
+    private Mono<Void> forward(List<TruckTelemetry> batch, IntUnaryOperator handleOf) {
+        geofenceStage.submit(batch, handleOf);
+        return Mono.defer(() -> {
+                    long started = System.nanoTime();
+                    return repo.upsertAll(batch, handleOf)
+                            .doOnSuccess(ok -> metrics.recordStage(FleetMetrics.Stage.UPSERT, System.nanoTime() - started));
+                })
+                .doOnSuccess(ok -> {
+                    long now = System.currentTimeMillis();
+                    for (int i = 0; i < batch.size(); i++) {
+                        TruckTelemetry t = batch.get(i);
+                        metrics.recordAge(FleetMetrics.Hop.PERSISTED, t.ts(), now);
+                        telemetryStream.accept(handleOf.applyAsInt(i), t);
+                    }
+                });
+    }
+}
@@ -1,49 +1,480 @@
 package com.example.fleet.service;
 
 import com.example.fleet.config.FleetProperties;
+import com.example.fleet.metrics.FleetMetrics;
 import com.example.fleet.model.TruckTelemetry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.BufferOverflowStrategy;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * Central hot stream of telemetry for WebSocket/RSocket consumers.
  *
  * Backpressure strategy is configurable. For "latest", slow consumers will not
  * accumulate memory; they'll see the newest update when they can.
+ *
+ * Optimization: latest-per-truck coalescing.
+ * - Producers call {@link #accept(TruckTelemetry)}: the update overwrites the truck's
+ *   slot (its {@link TruckRegistry} handle) and marks it dirty (see {@link LatestTelemetryBuffer})
+ * - Every {@code fleet.stream.flush-ms} the flusher publishes only the trucks that
+ *   changed since the last flush, at most {@code fleet.stream.emit-batch-size} per flush;
+ *   the rest stay dirty for the next flush
+ *
+ * Optimization: sharded emission.
+ * - The stream is split into {@code fleet.stream.shards} shards by truck handle (0 = one per CPU),
+ *   each with its own coalescing buffer and sinks, flushed by its own worker; emission and
+ *   fan-out to subscribers run on all shards at once instead of one serialized sink
+ * - A shard only ever emits under its own lock, so FAIL_NON_SERIALIZED should not happen; if it
+ *   does it is counted as contention ({@link #contendedCount()}), apart from real backpressure
+ *   drops ({@link #droppedCount()}), and the update stays dirty for the next flush
+ * - {@link #stream()} and {@link #encodedStream()} merge every shard; consumers that only need
+ *   some trucks can merge just their shards ({@link #shardOf(String)}, {@link #stream(int)})
+ *
+ * Optimization: encode once, fan out to all subscribers.
+ * - While anyone subscribes to {@link #encodedStream()}, each update is serialized to
+ *   JSON exactly once and multicast as an {@link EncodedTelemetry}
+ * - Sessions wrap the shared bytes instead of re-encoding, so serialization cost
+ *   follows the update rate, not updates x dashboards
+ *
+ * Optimization: in-process consumers skip the stream hop.
+ * - Services that index trucks by handle ({@link #listen(UpdateListener)}) get each published
+ *   update with the handle its shard already holds, called straight from the shard's publish
+ *
+ * Optimization: snapshot-then-live from memory ({@link #snapshotThenLive(int)}).
+ * - Every published update gets a sequence number and is kept, per truck, in a table indexed
+ *   by {@link TruckRegistry} handle; a new subscriber is sent that table as batches, then the
+ *   live updates numbered after it, so reconnects and fleet size never touch Redis
  */
 @Service
 public class TelemetryStreamService {
 
-    private final Sinks.Many<TruckTelemetry> sink;
+    /** Trucks per snapshot frame in {@link #snapshotThenLive(int)} transports. */
+    public static final int SNAPSHOT_BATCH = 500;
+
+    /** Receives a published update together with its truck's {@link TruckRegistry} handle. */
+    @FunctionalInterface
+    public interface UpdateListener {
+        void onUpdate(int handle, TruckTelemetry telemetry);
+    }
+
+    private static final UpdateListener[] NO_LISTENERS = new UpdateListener[0];
+
+    private final ObjectMapper mapper;
     private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+    private final AtomicLong encodeFailures = new AtomicLong();
+
+    private final TruckRegistry registry;
+    private final FleetMetrics metrics;
+    private final long flushMs;
+    private final int mergeBuffer;
+    private final Shard[] shards;
+
+    // Latest published update per truck handle, each entry written only by its truck's shard.
+    private final HandleArray<EncodedTelemetry> published = new HandleArray<>();
+
+    private volatile UpdateListener[] listeners = NO_LISTENERS;
+    private volatile Scheduler flushScheduler;
+
+    public TelemetryStreamService(FleetProperties props, ObjectMapper mapper, TruckRegistry registry,
+                                  FleetMetrics metrics) {
+        this.mapper = mapper;
+        this.registry = registry;
+        this.metrics = metrics;
+        this.flushMs = Math.max(50, props.stream().flushMs());
+
+        int configured = props.stream().shards();
+        int count = configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+        // The per-flush cap is shared out between shards.
+        int emitBatchSize = Math.max(100, props.stream().emitBatchSize());
+        int perShard = Math.max(1, (emitBatchSize + count - 1) / count);
+        this.mergeBuffer = emitBatchSize;
 
-    public TelemetryStreamService(FleetProperties props) {
         String mode = props.backpressure().mode() == null ? "latest" : props.backpressure().mode().toLowerCase();
         int bufferSize = Math.max(100, props.backpressure().bufferSize());
 
-        this.sink = switch (mode) {
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i, perShard, newSink(mode, bufferSize), newSink(mode, bufferSize));
+        }
+    }
+
+    private static <T> Sinks.Many<T> newSink(String mode, int bufferSize) {
+        return switch (mode) {
             case "buffer" -> Sinks.many().multicast().onBackpressureBuffer(bufferSize, false);
             case "drop" -> Sinks.many().multicast().directBestEffort();
             default -> Sinks.many().multicast().directBestEffort(); // "latest" behavior implemented at subscriber level
         };
     }
 
+    /**
+     * Accept telemetry updates from producers (coalesced, published on the next flush).
+     * This is O(1) and never blocks. An update for a new truck past fleet.registry.max-trucks
+     * is dropped and counted as refused.
+     */
+    public void accept(TruckTelemetry telemetry) {
+        int handle = handleOf(telemetry);
+        if (handle != TruckRegistry.NO_HANDLE) accept(handle, telemetry);
+    }
+
+    /**
+     * Same as {@link #accept(TruckTelemetry)} for producers that already hold the truck's handle
+     * (the pipeline resolves it once per update).
+     */
+    public void accept(int handle, TruckTelemetry telemetry) {
+        shards[handle % shards.length].latest.offer(handle / shards.length, telemetry);
+    }
+
+    /**
+     * Publish immediately, bypassing coalescing.
+     */
     public void emit(TruckTelemetry telemetry) {
-        var result = sink.tryEmitNext(telemetry);
-        if (result.isFailure()) {
-            dropped.incrementAndGet();
+        int handle = handleOf(telemetry);
+        if (handle != TruckRegistry.NO_HANDLE) emit(handle, telemetry);
+    }
+
+    /**
+     * Same as {@link #emit(TruckTelemetry)} for producers that already hold the truck's handle.
+     */
+    public void emit(int handle, TruckTelemetry telemetry) {
+        Shard shard = shards[handle % shards.length];
+        synchronized (shard) {
+            shard.publish(handle, telemetry);
+        }
+    }
+
+    @PostConstruct
+    void startFlusher() {
+        Scheduler scheduler = Schedulers.newParallel("telemetry-flush", shards.length, true);
+        for (Shard shard : shards) {
+            // One worker per shard: its flushes never overlap and never wait for another shard.
+            scheduler.createWorker().schedulePeriodically(() -> {
+                try {
+                    shard.flush();
+                } catch (RuntimeException e) {
+                    // A failed flush leaves its trucks dirty; the next one retries them.
+                }
+            }, flushMs, flushMs, TimeUnit.MILLISECONDS);
         }
+        this.flushScheduler = scheduler;
+    }
+
+    @PreDestroy
+    void stopFlusher() {
+        Scheduler scheduler = flushScheduler;
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+    }
+
+    /**
+     * Publish trucks changed since the last flush (at most emit-batch-size), shard by shard
+     * on the calling thread. The flusher workers flush their shards on their own.
+     *
+     * @return number of updates published
+     */
+    public int flush() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.flush();
+        }
+        return count;
+    }
+
+    public int shards() {
+        return shards.length;
+    }
+
+    /** Shard that publishes the given truck's updates, or -1 for a truck never seen (not interned). */
+    public int shardOf(String truckId) {
+        int handle = registry.find(truckId);
+        return handle == TruckRegistry.NO_HANDLE ? -1 : handle % shards.length;
+    }
+
+    private int handleOf(TruckTelemetry telemetry) {
+        int handle = registry.tryHandleOf(telemetry.truckId());
+        if (handle == TruckRegistry.NO_HANDLE) metrics.recordRefused(1);
+        return handle;
     }
 
     public Flux<TruckTelemetry> stream() {
         // Provide a baseline safety net: if a subscriber can't keep up, keep only latest.
-        return sink.asFlux().onBackpressureLatest();
+        return merged(s -> s.sink.asFlux()).onBackpressureLatest();
     }
 
+    /** Updates of one shard's trucks only, for consumers that merge the shards they need. */
+    public Flux<TruckTelemetry> stream(int shard) {
+        return shards[shard].sink.asFlux().onBackpressureLatest();
+    }
+
+    /**
+     * Calls {@code listener} with every update published from now on, until the returned
+     * Disposable is disposed. It runs on the publishing shard's worker, under the shard's lock, so
+     * different shards call it concurrently and it must be quick; an exception it throws is ignored.
+     */
+    public Disposable listen(UpdateListener listener) {
+        synchronized (this) {
+            UpdateListener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+            next[listeners.length] = listener;
+            listeners = next;
+        }
+        return () -> {
+            synchronized (this) {
+                UpdateListener[] current = listeners;
+                for (int i = 0; i < current.length; i++) {
+                    if (current[i] == listener) {
+                        UpdateListener[] next = new UpdateListener[current.length - 1];
+                        System.arraycopy(current, 0, next, 0, i);
+                        System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                        listeners = next;
+                        return;
+                    }
+                }
+            }
+        };
+    }
+
+    /** Listeners currently attached; package-private for tests. */
+    int listenerCount() {
+        return listeners.length;
+    }
+
+    /** The last update published for the truck with {@code handle}, or null if none was yet. */
+    public TruckTelemetry latest(int handle) {
+        EncodedTelemetry e = published.get(handle);
+        return e == null ? null : e.telemetry();
+    }
+
+    /**
+     * Same updates as {@link #stream()}, each carrying its JSON bytes encoded once for all subscribers.
+     */
+    public Flux<EncodedTelemetry> encodedStream() {
+        return merged(s -> s.encodedSink.asFlux()).onBackpressureLatest();
+    }
+
+    /** Encoded updates of one shard's trucks only. */
+    public Flux<EncodedTelemetry> encodedStream(int shard) {
+        return shards[shard].encodedSink.asFlux().onBackpressureLatest();
+    }
+
+    /**
+     * The latest state of each truck changed in {@code updates}, as one batch of at most
+     * {@code maxBatch} trucks every {@code window}, for transports that send batch frames.
+     *
+     * Updates are coalesced per truck before batching, in this subscriber's own
+     * {@link LatestTelemetryBuffer}, and a batch is only drained when the subscriber asks for one:
+     * a slow subscriber gets every truck's newest state later, it never loses a truck. Trucks left
+     * over when a batch is full lead the next one. An update replaced while the subscriber had no
+     * demand is counted as superseded on {@code transport}.
+     */
+    public Flux<List<TruckTelemetry>> latestBatches(Flux<TruckTelemetry> updates, Duration window, int maxBatch,
+                                                   FleetMetrics.Transport transport) {
+        int max = Math.max(1, maxBatch);
+        return Flux.defer(() -> {
+            LatestTelemetryBuffer pending = new LatestTelemetryBuffer();
+            AtomicBoolean stalled = new AtomicBoolean(); // a tick found no demand; cleared by the next drain
+            Disposable.Swap feed = Disposables.swap();
+            return Flux.interval(window)
+                    .onBackpressureDrop(tick -> stalled.set(true))
+                    .map(tick -> {
+                        // Ticks are serialized, so this is the buffer's single drainer.
+                        List<TruckTelemetry> batch = new ArrayList<>();
+                        pending.drain(max, batch::add);
+                        stalled.set(false);
+                        return batch;
+                    })
+                    .filter(batch -> !batch.isEmpty())
+                    .doOnSubscribe(s -> feed.update(updates.subscribe(t -> {
+                        int handle = registry.find(t.truckId());
+                        if (handle != TruckRegistry.NO_HANDLE && pending.offer(handle, t) && stalled.get()) {
+                            metrics.recordSuperseded(transport);
+                        }
+                    }, e -> {})))
+                    .doFinally(sig -> feed.dispose());
+        });
+    }
+
+    /**
+     * A shard's sink only hands an update to a subscriber that has room for it. While one shard's
+     * worker drains the merge into a slow subscriber, the other shards' updates wait in a per-shard
+     * buffer (the merge's own 32-item prefetch would lose the rest of a flush for that subscriber).
+     * A subscriber that falls more than a full flush behind on a shard loses that shard's oldest
+     * updates, counted in {@link #droppedCount()}.
+     */
+    private <T> Flux<T> merged(Function<Shard, Flux<T>> source) {
+        if (shards.length == 1) return source.apply(shards[0]);
+        List<Flux<T>> all = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            all.add(source.apply(shard)
+                    .onBackpressureBuffer(mergeBuffer, superseded -> dropped.incrementAndGet(),
+                            BufferOverflowStrategy.DROP_OLDEST));
+        }
+        return Flux.merge(all);
+    }
+
+    /**
+     * The latest state of every truck as batches of up to {@code batchSize}, then each live update
+     * (as a one-element list), with no gap and no duplicate in between.
+     *
+     * Each shard's live stream is joined first, under that shard's publish lock, and the shard's
+     * sequence number read there splits the two: the snapshot holds the table entries numbered up
+     * to it (an entry overwritten since then arrives live instead), the live part only updates
+     * numbered after it. Live updates published while the snapshot is being written are held for
+     * this subscriber; after that, a slow subscriber keeps only the latest like {@link #encodedStream()}.
+     */
+    public Flux<List<EncodedTelemetry>> snapshotThenLive(int batchSize) {
+        int size = Math.max(1, batchSize);
+        return Flux.defer(() -> {
+            long[] upTo = new long[shards.length];
+            List<Flux<EncodedTelemetry>> live = new ArrayList<>(shards.length);
+            Disposable.Composite joined = Disposables.composite();
+            for (Shard shard : shards) {
+                Sinks.Many<EncodedTelemetry> held =
+                        Sinks.many().unicast().onBackpressureBuffer(Queues.<EncodedTelemetry>unbounded().get());
+                long after;
+                synchronized (shard) {
+                    joined.add(shard.encodedSink.asFlux().subscribe(held::tryEmitNext, e -> {}));
+                    after = shard.seq;
+                }
+                upTo[shard.index] = after;
+                live.add(held.asFlux().filter(e -> e.seq() > after));
+            }
+            return Flux.fromIterable(snapshot(upTo))
+                    .buffer(size)
+                    .concatWith(Flux.merge(live)
+                            .onBackpressureLatest()
+                            .map(List::of))
+                    .doFinally(sig -> joined.dispose());
+        });
+    }
+
+    private List<EncodedTelemetry> snapshot(long[] upTo) {
+        List<EncodedTelemetry> out = new ArrayList<>();
+        for (int h = 0, n = registry.size(); h < n; h++) {
+            EncodedTelemetry e = published.get(h);
+            if (e == null || e.seq() > upTo[h % shards.length]) continue;
+            if (e.json() == null) {
+                // Published while nobody needed JSON: encode now and share it with later snapshots.
+                byte[] json = encode(e.telemetry());
+                if (json == null) continue;
+                EncodedTelemetry encoded = new EncodedTelemetry(e.telemetry(), json, e.seq());
+                published.compareAndSet(h, e, encoded);
+                e = encoded;
+            }
+            out.add(e);
+        }
+        return out;
+    }
+
+    private byte[] encode(TruckTelemetry telemetry) {
+        try {
+            return mapper.writeValueAsBytes(telemetry);
+        } catch (Exception e) {
+            encodeFailures.incrementAndGet();
+            return null;
+        }
+    }
+
+    // FAIL_NON_SERIALIZED means two threads emitted into one sink at once, not a slow subscriber.
+    private void emitFailed(FleetMetrics.Sink sink, Sinks.EmitResult result) {
+        if (result == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+            contended.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+        metrics.emitFailed(sink, result);
+    }
+
+    /** Updates lost to backpressure (a full or terminated sink). */
     public long droppedCount() {
         return dropped.get();
     }
+
+    /** Emissions that collided with a concurrent emission into the same sink (retried, not lost). */
+    public long contendedCount() {
+        return contended.get();
+    }
+
+    public long encodeFailureCount() {
+        return encodeFailures.get();
+    }
+
+    /**
+     * Trucks whose handle is {@code index} modulo the shard count, stored in the coalescing
+     * buffer at handle / shard count. Publishing, numbering and the table write happen under
+     * the shard's monitor, so each shard's sinks have a single emitter at a time.
+     */
+    private final class Shard {
+        final int index;
+        final int emitBatchSize;
+        final LatestTelemetryBuffer latest = new LatestTelemetryBuffer();
+        final Sinks.Many<TruckTelemetry> sink;
+        final Sinks.Many<EncodedTelemetry> encodedSink;
+        long seq; // guarded by this; every update numbered up to seq is in the table before it is emitted
+
+        Shard(int index, int emitBatchSize, Sinks.Many<TruckTelemetry> sink,
+              Sinks.Many<EncodedTelemetry> encodedSink) {
+            this.index = index;
+            this.emitBatchSize = emitBatchSize;
+            this.sink = sink;
+            this.encodedSink = encodedSink;
+        }
+
+        synchronized int flush() {
+            long started = System.nanoTime();
+            int count = latest.drainSlots(emitBatchSize, (slot, t) -> publish(slot * shards.length + index, t));
+            if (count > 0) {
+                metrics.recordStage(FleetMetrics.Stage.EMIT, System.nanoTime() - started);
+            }
+            return count;
+        }
+
+        // Caller holds the shard monitor.
+        boolean publish(int handle, TruckTelemetry telemetry) {
+            var result = sink.tryEmitNext(telemetry);
+            if (result.isFailure() && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+                // Stays dirty and is retried on the next flush.
+                emitFailed(FleetMetrics.Sink.TELEMETRY, result);
+                return false;
+            }
+            // Only pay for serialization when a transport consumes the encoded form.
+            byte[] json = encodedSink.currentSubscriberCount() > 0 ? encode(telemetry) : null;
+            EncodedTelemetry update = new EncodedTelemetry(telemetry, json, ++seq);
+            published.set(handle, update);
+            metrics.recordAge(FleetMetrics.Hop.COALESCED, telemetry.ts(), System.currentTimeMillis());
+            for (UpdateListener listener : listeners) {
+                try {
+                    listener.onUpdate(handle, telemetry);
+                } catch (RuntimeException e) {
+                    // A failing listener must not fail the flush or starve the sinks.
+                }
+            }
+
+            if (json != null) {
+                var encoded = encodedSink.tryEmitNext(update);
+                if (encoded.isFailure()) {
+                    emitFailed(FleetMetrics.Sink.ENCODED, encoded);
+                }
+            }
+            return true;
+        }
+    }
 }
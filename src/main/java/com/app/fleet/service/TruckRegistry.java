@@ -0,0 +1,139 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fleet-wide truck identity registry: interns String truck ids into dense int handles.
+ *
+ * Optimizations:
+ * - A truck is hashed once, when it is first seen; after that the pipeline indexes
+ *   primitive/paged arrays by handle instead of keying maps on the String id
+ * - The reverse table keeps the id plus its pre-encoded UTF-8 bytes and Redis key
+ *   ("truck:" + id), so hot writes never concatenate or re-encode strings
+ *
+ * Handles are never reused or released; they are stable for the life of the process.
+ * The number of ids is therefore capped by fleet.registry.max-trucks: past the cap,
+ * {@link #tryHandleOf(String)} refuses new ids (and counts them) instead of growing.
+ * Lookups are lock-free; only interning a new id takes the registry monitor.
+ */
+@Service
+public class TruckRegistry {
+
+    public static final int NO_HANDLE = -1;
+    public static final int MAX_TRUCKS = HandleArray.CAPACITY;
+    /** Prefix of a truck's Redis value key ("truck:" + id). */
+    public static final String REDIS_KEY_PREFIX = "truck:";
+
+    private record Entry(String id, byte[] idBytes, byte[] redisKey) {}
+
+    private final ConcurrentHashMap<String, Integer> handles = new ConcurrentHashMap<>();
+    private final HandleArray<Entry> entries = new HandleArray<>();
+    private final AtomicLong refused = new AtomicLong();
+    private final int maxTrucks;
+    private volatile int size;
+
+    public TruckRegistry() {
+        this(MAX_TRUCKS);
+    }
+
+    public TruckRegistry(int maxTrucks) {
+        this.maxTrucks = maxTrucks <= 0 ? MAX_TRUCKS : Math.min(MAX_TRUCKS, maxTrucks);
+    }
+
+    @Autowired
+    public TruckRegistry(FleetProperties props) {
+        this(props.registry() == null ? 0 : props.registry().maxTrucks());
+    }
+
+    /**
+     * Handle for {@code truckId}, assigning the next free one on first sight.
+     *
+     * @throws IllegalStateException if the id is new and the registry is full; for ids that
+     *         may never have been seen, use {@link #tryHandleOf(String)}
+     */
+    public int handleOf(String truckId) {
+        int h = tryHandleOf(truckId);
+        if (h == NO_HANDLE) {
+            throw new IllegalStateException("truck registry full (" + maxTrucks + " ids)");
+        }
+        return h;
+    }
+
+    /**
+     * Handle for {@code truckId}, assigning the next free one on first sight, or
+     * {@link #NO_HANDLE} if the id is new and the registry is full (counted as refused).
+     */
+    public int tryHandleOf(String truckId) {
+        Integer h = handles.get(truckId);
+        return h != null ? h : intern(truckId);
+    }
+
+    /**
+     * Handle for {@code truckId}, or {@link #NO_HANDLE} if it was never seen (does not intern).
+     */
+    public int find(String truckId) {
+        Integer h = handles.get(truckId);
+        return h != null ? h : NO_HANDLE;
+    }
+
+    public String idOf(int handle) {
+        return entry(handle).id();
+    }
+
+    /** UTF-8 bytes of the truck id (e.g. a ZSET member). Shared; do not modify. */
+    public byte[] idBytes(int handle) {
+        return entry(handle).idBytes();
+    }
+
+    /** UTF-8 bytes of the truck's Redis value key. Shared; do not modify. */
+    public byte[] redisKey(int handle) {
+        return entry(handle).redisKey();
+    }
+
+    /** Number of handles assigned so far; valid handles are {@code 0 .. size()-1}. */
+    public int size() {
+        return size;
+    }
+
+    public int maxTrucks() {
+        return maxTrucks;
+    }
+
+    /** New ids turned away by {@link #tryHandleOf(String)} because the registry was full. */
+    public long refusedCount() {
+        return refused.get();
+    }
+
+    private synchronized int intern(String truckId) {
+        Integer existing = handles.get(truckId);
+        if (existing != null) return existing;
+        if (size >= maxTrucks) {
+            refused.incrementAndGet();
+            return NO_HANDLE;
+        }
+
+        int h = size;
+        entries.set(h, new Entry(
+                truckId,
+                truckId.getBytes(StandardCharsets.UTF_8),
+                (REDIS_KEY_PREFIX + truckId).getBytes(StandardCharsets.UTF_8)));
+        // Publish the entry before the handle becomes visible through the map.
+        size = h + 1;
+        handles.put(truckId, h);
+        return h;
+    }
+
+    private Entry entry(int handle) {
+        Entry e = handle >= 0 ? entries.get(handle) : null;
+        if (e == null) {
+            throw new IllegalArgumentException("unknown truck handle: " + handle);
+        }
+        return e;
+    }
+}
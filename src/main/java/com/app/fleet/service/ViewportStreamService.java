@@ -0,0 +1,204 @@
+package com.example.fleet.service;
+
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.model.Viewport;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Viewport-filtered telemetry for map clients that only show part of the fleet.
+ *
+ * Optimization: shared spatial bucketing instead of per-subscriber filtering.
+ * - One subscription to the live (pre-encoded) stream dispatches every update for all viewports;
+ *   it is held only while at least one viewport is subscribed, so with no viewport clients
+ *   updates are not JSON-encoded on their account
+ * - Subscribers register on the fixed grid cells their box covers; an update only
+ *   visits the subscribers of its own cell (plus zoomed-out "wide" viewports),
+ *   so cost per update does not grow with the number of dashboards
+ * - Moving a viewport re-files the subscriber; the dispatch path reads copy-on-write
+ *   arrays and never locks
+ * - Each subscriber has a bounded buffer; overflow is dropped and counted
+ */
+@Service
+public class ViewportStreamService {
+
+    static final double CELL_DEG = 0.05;        // ~5 km, about a city district
+    static final int MAX_CELLS_PER_VIEWPORT = 4096;
+    static final int SUBSCRIBER_BUFFER = 4096;
+
+    private static final Subscriber[] NONE = new Subscriber[0];
+
+    private final TelemetryStreamService telemetry;
+    private final FleetMetrics metrics;
+    private final ConcurrentHashMap<Long, Subscriber[]> byCell = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Subscriber[] wide = NONE;
+
+    private Disposable dispatcher; // guarded by this; live while subscribers > 0
+    private int subscribers;       // guarded by this
+
+    public ViewportStreamService(TelemetryStreamService telemetry, FleetMetrics metrics) {
+        this.telemetry = telemetry;
+        this.metrics = metrics;
+    }
+
+    @PreDestroy
+    synchronized void stopDispatcher() {
+        if (dispatcher != null) {
+            dispatcher.dispose();
+            dispatcher = null;
+        }
+    }
+
+    /**
+     * Live updates inside the latest viewport received on {@code viewports}.
+     * Nothing is emitted until the first viewport arrives; completing the viewport
+     * flux keeps the last box.
+     */
+    public Flux<EncodedTelemetry> stream(Flux<Viewport> viewports) {
+        return Flux.defer(() -> {
+            Subscriber sub = new Subscriber();
+            attach();
+            Disposable moves = viewports.subscribe(vp -> move(sub, vp.normalized()), e -> {});
+            return sub.sink.asFlux()
+                    .doFinally(sig -> {
+                        moves.dispose();
+                        close(sub);
+                        detach();
+                    });
+        });
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    void dispatch(EncodedTelemetry e) {
+        TruckTelemetry t = e.telemetry();
+        Subscriber[] cell = byCell.get(cellKey(cellRow(t.lat()), cellCol(t.lon())));
+        if (cell != null) deliver(cell, e);
+
+        Subscriber[] w = wide;
+        if (w.length > 0) deliver(w, e);
+    }
+
+    private void deliver(Subscriber[] subs, EncodedTelemetry e) {
+        TruckTelemetry t = e.telemetry();
+        for (Subscriber s : subs) {
+            Viewport vp = s.viewport;
+            if (vp != null && vp.contains(t.lat(), t.lon())) {
+                Sinks.EmitResult r = s.sink.tryEmitNext(e);
+                if (r.isFailure()) {
+                    dropped.incrementAndGet();
+                    metrics.emitFailed(FleetMetrics.Sink.VIEWPORT, r);
+                }
+            }
+        }
+    }
+
+    // The first subscriber joins the live stream, the last one leaves it.
+    private synchronized void attach() {
+        if (subscribers++ == 0) {
+            dispatcher = telemetry.encodedStream().subscribe(this::dispatch, e -> {});
+        }
+    }
+
+    private synchronized void detach() {
+        if (--subscribers == 0) stopDispatcher();
+    }
+
+    private synchronized void move(Subscriber sub, Viewport vp) {
+        // A move still in flight when the subscriber goes away must not file it again.
+        if (sub.disposed) return;
+        unregister(sub);
+
+        int r0 = cellRow(vp.minLat()), r1 = cellRow(vp.maxLat());
+        int c0 = cellCol(vp.minLon()), c1 = cellCol(vp.maxLon());
+        long cells = (long) (r1 - r0 + 1) * (c1 - c0 + 1);
+
+        if (cells > MAX_CELLS_PER_VIEWPORT) {
+            wide = append(wide, sub);
+            sub.cells = null;
+        } else {
+            long[] keys = new long[(int) cells];
+            int k = 0;
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    long key = cellKey(r, c);
+                    keys[k++] = key;
+                    byCell.compute(key, (ignored, arr) -> append(arr == null ? NONE : arr, sub));
+                }
+            }
+            sub.cells = keys;
+        }
+        sub.viewport = vp;
+    }
+
+    private synchronized void close(Subscriber sub) {
+        sub.disposed = true;
+        unregister(sub);
+    }
+
+    private synchronized void unregister(Subscriber sub) {
+        sub.viewport = null;
+        if (sub.cells == null) {
+            wide = remove(wide, sub);
+            return;
+        }
+        for (long key : sub.cells) {
+            byCell.computeIfPresent(key, (ignored, arr) -> {
+                Subscriber[] next = remove(arr, sub);
+                return next.length == 0 ? null : next;
+            });
+        }
+        sub.cells = null;
+    }
+
+    private static int cellRow(double lat) {
+        return (int) Math.floor(lat / CELL_DEG);
+    }
+
+    private static int cellCol(double lon) {
+        return (int) Math.floor(lon / CELL_DEG);
+    }
+
+    private static long cellKey(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    private static Subscriber[] append(Subscriber[] arr, Subscriber s) {
+        Subscriber[] next = Arrays.copyOf(arr, arr.length + 1);
+        next[arr.length] = s;
+        return next;
+    }
+
+    private static Subscriber[] remove(Subscriber[] arr, Subscriber s) {
+        for (int i = 0; i < arr.length; i++) {
+            if (arr[i] == s) {
+                Subscriber[] next = new Subscriber[arr.length - 1];
+                System.arraycopy(arr, 0, next, 0, i);
+                System.arraycopy(arr, i + 1, next, i, arr.length - i - 1);
+                return next;
+            }
+        }
+        return arr;
+    }
+
+    private static final class Subscriber {
+        // Emission only happens on the dispatcher thread, so a unicast sink is safe.
+        final Sinks.Many<EncodedTelemetry> sink =
+                Sinks.many().unicast().onBackpressureBuffer(Queues.<EncodedTelemetry>get(SUBSCRIBER_BUFFER).get());
+        volatile Viewport viewport;
+        long[] cells; // guarded by the service monitor; null = not registered or wide
+        boolean disposed; // guarded by the service monitor
+    }
+}
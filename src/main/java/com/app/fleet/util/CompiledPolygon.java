@@ -0,0 +1,79 @@
+package com.example.fleet.util;
+
+import com.example.fleet.model.GeoPoint;
+
+import java.util.List;
+
+/**
+ * Geofence polygon compiled into flat primitive arrays for the hot evaluation path.
+ *
+ * Optimizations:
+ * - One double[] per edge term, laid out in edge order (no boxed GeoPoint, no List.get)
+ * - Edge start/end latitudes and the crossing terms are computed once at build time
+ * - contains() is a single loop over primitives and never allocates
+ *
+ * The crossing expression is the same as {@link GeoUtils#pointInPolygon(double, double, List)},
+ * so both forms return identical results for the same vertices.
+ */
+public final class CompiledPolygon {
+
+    private static final CompiledPolygon EMPTY = new CompiledPolygon(new double[0], new double[0], new double[0],
+            new double[0], new double[0]);
+
+    // Edge k runs from vertex j = k - 1 (wrapping) to vertex i = k.
+    private final double[] latI;
+    private final double[] latJ;
+    private final double[] lonI;
+    private final double[] dLon;   // lon[j] - lon[i]
+    private final double[] dLat;   // lat[j] - lat[i] + 1e-12 (ray-casting denominator)
+
+    private CompiledPolygon(double[] latI, double[] latJ, double[] lonI, double[] dLon, double[] dLat) {
+        this.latI = latI;
+        this.latJ = latJ;
+        this.lonI = lonI;
+        this.dLon = dLon;
+        this.dLat = dLat;
+    }
+
+    public static CompiledPolygon of(List<GeoPoint> polygon) {
+        if (polygon == null || polygon.size() < 3) return EMPTY;
+
+        int n = polygon.size();
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            GeoPoint p = polygon.get(i);
+            lat[i] = p.lat();
+            lon[i] = p.lon();
+        }
+
+        double[] latI = new double[n], latJ = new double[n], lonI = new double[n];
+        double[] dLon = new double[n], dLat = new double[n];
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            latI[i] = lat[i];
+            latJ[i] = lat[j];
+            lonI[i] = lon[i];
+            dLon[i] = lon[j] - lon[i];
+            dLat[i] = lat[j] - lat[i] + 1e-12;
+        }
+        return new CompiledPolygon(latI, latJ, lonI, dLon, dLat);
+    }
+
+    public boolean contains(double lat, double lon) {
+        final double[] latI = this.latI, latJ = this.latJ, lonI = this.lonI, dLon = this.dLon, dLat = this.dLat;
+
+        boolean inside = false;
+        for (int k = 0; k < latI.length; k++) {
+            // The division only runs for edges straddling the ray, typically two per polygon.
+            if ((latI[k] > lat) != (latJ[k] > lat)
+                    && lon < dLon[k] * (lat - latI[k]) / dLat[k] + lonI[k]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    public int vertexCount() {
+        return latI.length;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.fleet.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable uniform-grid spatial index over lat/lon bounding boxes (CPU-only).
+ *
+ * Optimizations:
+ * - Lookup is a subtract/divide per axis plus one array read; it returns the
+ *   precomputed candidate list of the cell, so queries never allocate
+ * - The index is never mutated after build(): readers need no locks, writers
+ *   rebuild and swap a volatile reference
+ * - Boxes spanning too many cells are kept in a "wide" list shared by every cell,
+ *   so one huge zone cannot blow up the grid
+ */
+public final class GeoGridIndex<T extends GeoGridIndex.Box> {
+
+    /** Axis-aligned lat/lon bounding box. */
+    public interface Box {
+        double minLat();
+        double maxLat();
+        double minLon();
+        double maxLon();
+    }
+
+    private static final int MAX_CELLS = 1 << 20;
+    private static final int MAX_CELLS_PER_BOX = 256;
+    private static final double MIN_CELL_DEG = 0.002; // ~200m
+
+    private static final GeoGridIndex<?> EMPTY = new GeoGridIndex<>(0, 0, 1, 0, 0, null, List.of(), 0);
+
+    private final double originLat;
+    private final double originLon;
+    private final double cellDeg;
+    private final int rows;
+    private final int cols;
+    private final List<T>[] cells; // null entry = only wide boxes can match
+    private final List<T> wide;
+    private final int size;
+
+    private GeoGridIndex(double originLat, double originLon, double cellDeg, int rows, int cols,
+                         List<T>[] cells, List<T> wide, int size) {
+        this.originLat = originLat;
+        this.originLon = originLon;
+        this.cellDeg = cellDeg;
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = cells;
+        this.wide = wide;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Box> GeoGridIndex<T> empty() {
+        return (GeoGridIndex<T>) EMPTY;
+    }
+
+    public static <T extends Box> GeoGridIndex<T> build(Collection<? extends T> boxes) {
+        List<T> valid = new ArrayList<>(boxes.size());
+        double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+
+        for (T b : boxes) {
+            // Empty polygons have an inverted (infinite) box and can never match.
+            if (!(b.minLat() <= b.maxLat() && b.minLon() <= b.maxLon())) continue;
+            if (!Double.isFinite(b.minLat()) || !Double.isFinite(b.maxLat())
+                    || !Double.isFinite(b.minLon()) || !Double.isFinite(b.maxLon())) continue;
+            valid.add(b);
+            minLat = Math.min(minLat, b.minLat());
+            maxLat = Math.max(maxLat, b.maxLat());
+            minLon = Math.min(minLon, b.minLon());
+            maxLon = Math.max(maxLon, b.maxLon());
+        }
+        if (valid.isEmpty()) return empty();
+
+        // Cell size follows the typical fence extent, so most fences touch a handful of cells.
+        double cellDeg = Math.max(MIN_CELL_DEG, medianSpan(valid));
+        int rows, cols;
+        while (true) {
+            rows = (int) Math.floor((maxLat - minLat) / cellDeg) + 1;
+            cols = (int) Math.floor((maxLon - minLon) / cellDeg) + 1;
+            if ((long) rows * cols <= MAX_CELLS) break;
+            cellDeg *= 2;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T>[] building = (List<T>[]) new List<?>[rows * cols];
+        List<T> wide = new ArrayList<>();
+
+        for (T b : valid) {
+            int r0 = (int) Math.floor((b.minLat() - minLat) / cellDeg);
+            int r1 = (int) Math.floor((b.maxLat() - minLat) / cellDeg);
+            int c0 = (int) Math.floor((b.minLon() - minLon) / cellDeg);
+            int c1 = (int) Math.floor((b.maxLon() - minLon) / cellDeg);
+
+            if ((long) (r1 - r0 + 1) * (c1 - c0 + 1) > MAX_CELLS_PER_BOX) {
+                wide.add(b);
+                continue;
+            }
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int i = r * cols + c;
+                    if (building[i] == null) building[i] = new ArrayList<>(4);
+                    building[i].add(b);
+                }
+            }
+        }
+
+        // Freeze: every populated cell carries its own fences plus the wide ones.
+        for (int i = 0; i < building.length; i++) {
+            if (building[i] == null) continue;
+            building[i].addAll(wide);
+            building[i] = List.copyOf(building[i]);
+        }
+        return new GeoGridIndex<>(minLat, minLon, cellDeg, rows, cols, building, List.copyOf(wide), valid.size());
+    }
+
+    /**
+     * Boxes whose grid cell covers the point. Callers still run the exact box and
+     * polygon tests; the returned list is shared and must not be modified.
+     */
+    public List<T> candidates(double lat, double lon) {
+        if (cells == null) return wide;
+
+        // Same arithmetic as build(), so points on a cell edge land where the boxes were filed.
+        int r = (int) Math.floor((lat - originLat) / cellDeg);
+        int c = (int) Math.floor((lon - originLon) / cellDeg);
+        if (r < 0 || r >= rows || c < 0 || c >= cols) return wide;
+
+        List<T> cell = cells[r * cols + c];
+        return cell == null ? wide : cell;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static double medianSpan(List<? extends Box> boxes) {
+        double[] spans = new double[boxes.size()];
+        for (int i = 0; i < spans.length; i++) {
+            Box b = boxes.get(i);
+            spans[i] = Math.max(b.maxLat() - b.minLat(), b.maxLon() - b.minLon());
+        }
+        Arrays.sort(spans);
+        return spans[spans.length / 2];
+    }
+}
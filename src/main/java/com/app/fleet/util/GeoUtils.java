@@ -7,6 +7,10 @@ import java.util.List;
 /**
  * Pure CPU geospatial helper (non-blocking).
  * Implements ray-casting point-in-polygon test.
+ *
+ * The List overload is the reference form for ad-hoc checks; hot paths should
+ * compile the polygon once ({@link CompiledPolygon#of(List)}) and use the overload
+ * taking a {@link CompiledPolygon}.
  */
 public final class GeoUtils {
 
@@ -30,4 +34,8 @@ public final class GeoUtils {
         }
         return inside;
     }
+
+    public static boolean pointInPolygon(double lat, double lon, CompiledPolygon polygon) {
+        return polygon != null && polygon.contains(lat, lon);
+    }
 }
@@ -0,0 +1,64 @@
+package com.example.fleet.util;
+
+/**
+ * Web Mercator tile math (the Bing/Google/OSM "slippy map" grid), so density cells line up
+ * with the map tiles a client draws at the same zoom level.
+ *
+ * A tile at level z is (x, y) with 0 <= x, y < 2^z; its quadkey is the z-digit base-4 string
+ * interleaving the bits of y and x. Latitudes are clamped to the Mercator limit (+-85.05112878).
+ */
+public final class QuadKey {
+
+    public static final int MIN_LEVEL = 1;
+    public static final int MAX_LEVEL = 18;   // ~150 m tiles at the equator
+
+    private static final double MAX_LAT = 85.05112878;
+
+    private QuadKey() {}
+
+    public static int tileX(double lon, int level) {
+        int n = 1 << level;
+        int x = (int) Math.floor((lon + 180.0) / 360.0 * n);
+        return Math.min(n - 1, Math.max(0, x));
+    }
+
+    public static int tileY(double lat, int level) {
+        int n = 1 << level;
+        double rad = Math.toRadians(Math.max(-MAX_LAT, Math.min(MAX_LAT, lat)));
+        double merc = Math.log(Math.tan(rad) + 1 / Math.cos(rad));
+        int y = (int) Math.floor((1 - merc / Math.PI) / 2 * n);
+        return Math.min(n - 1, Math.max(0, y));
+    }
+
+    /** Tile (x, y) packed into one long, for use as a map key within a single level. */
+    public static long pack(int x, int y) {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+
+    public static int unpackX(long key) {
+        return (int) key;
+    }
+
+    public static int unpackY(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static String toQuadKey(int x, int y, int level) {
+        char[] digits = new char[level];
+        for (int i = level; i > 0; i--) {
+            int mask = 1 << (i - 1);
+            int d = ((x & mask) != 0 ? 1 : 0) + ((y & mask) != 0 ? 2 : 0);
+            digits[level - i] = (char) ('0' + d);
+        }
+        return new String(digits);
+    }
+
+    public static double centerLon(int x, int level) {
+        return (x + 0.5) / (1 << level) * 360.0 - 180.0;
+    }
+
+    public static double centerLat(int y, int level) {
+        double n = Math.PI * (1 - 2 * (y + 0.5) / (1 << level));
+        return Math.toDegrees(Math.atan(Math.sinh(n)));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.fleet.ws;
+
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.DensityFrame;
+import com.example.fleet.service.DensityService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * WebSocket stream of per-tile aggregates for zoomed-out maps: /ws/density?precision=10
+ * (quadkey level 1-18). The first message is a snapshot of every non-empty tile, then one
+ * message per emission with only the tiles that changed ({@link DensityService}).
+ */
+@Component
+public class DensityWebSocketHandler implements WebSocketHandler {
+
+    private final DensityService density;
+    private final ObjectMapper mapper;
+    private final FleetMetrics metrics;
+
+    public DensityWebSocketHandler(DensityService density, ObjectMapper mapper, FleetMetrics metrics) {
+        this.density = density;
+        this.mapper = mapper;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        int precision = precision(session.getHandshakeInfo().getUri());
+        var outbound = metrics.tracked(FleetMetrics.Transport.WS, density.stream(precision))
+                .flatMap(frame -> Mono.justOrEmpty(encode(frame)), 1)
+                .map(json -> new WebSocketMessage(WebSocketMessage.Type.TEXT, session.bufferFactory().wrap(json)));
+        return session.send(outbound);
+    }
+
+    private byte[] encode(DensityFrame frame) {
+        try {
+            return mapper.writeValueAsBytes(frame);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static int precision(URI uri) {
+        if (uri != null && uri.getQuery() != null) {
+            for (String part : uri.getQuery().split("&")) {
+                String[] kv = part.split("=", 2);
+                if (kv.length == 2 && kv[0].equalsIgnoreCase("precision")) {
+                    try {
+                        return Integer.parseInt(kv[1]);
+                    } catch (NumberFormatException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return DensityService.DEFAULT_PRECISION;
+    }
+}
@@ -1,10 +1,19 @@
 package com.example.fleet.ws;
 
+import com.example.fleet.codec.TelemetryBatchCodec;
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.model.Viewport;
+import com.example.fleet.service.AdaptiveTelemetryService;
+import com.example.fleet.service.EncodedTelemetry;
 import com.example.fleet.service.TelemetryStreamService;
+import com.example.fleet.service.ViewportStreamService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
 import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
@@ -15,53 +24,139 @@ import java.util.Optional;
  * WebSocket stream for browsers.
  *
  * Optimizations:
- * - Reuse Spring-managed ObjectMapper (no per-message allocation)
+ * - JSON is encoded once per update in TelemetryStreamService and shared by all
+ *   sessions; each frame wraps those bytes (zero-copy) instead of re-serializing
  * - Optional sampling via query param: /ws/telemetry?sampleMs=250
- * - Backpressure safety: keep only latest when client is slow
+ * - Opt-in compact binary frames: /ws/telemetry?format=binary[&batchMs=100]
+ *   packs each batch window into one binary message ({@link TelemetryBatchCodec})
+ * - Adaptive pacing: /ws/telemetry?mode=adaptive sends frames holding the latest state of every
+ *   changed truck, with interval and precision tuned to this session's write rate
+ *   ({@link AdaptiveTelemetryService})
+ * - Snapshot then live: /ws/telemetry?snapshot=true sends JSON arrays, first the latest state of
+ *   every truck in batches (from memory, see {@link TelemetryStreamService#snapshotThenLive(int)}),
+ *   then each live update as a one-element array, with no gap and no duplicates
+ * - Viewport filtering: /ws/telemetry?bbox=minLat,minLon,maxLat,maxLon (or ?viewport=true);
+ *   inbound text messages {"minLat":..,"minLon":..,"maxLat":..,"maxLon":..} move the box
+ * - Backpressure safety: keep only latest when client is slow (per truck for binary batches)
  */
 @Component
 public class TelemetryWebSocketHandler implements WebSocketHandler {
 
+    static final long DEFAULT_BATCH_MS = 100;
+
     private final TelemetryStreamService telemetry;
+    private final ViewportStreamService viewports;
+    private final AdaptiveTelemetryService adaptive;
     private final ObjectMapper mapper;
+    private final FleetMetrics metrics;
 
-    public TelemetryWebSocketHandler(TelemetryStreamService telemetry, ObjectMapper mapper) {
+    public TelemetryWebSocketHandler(TelemetryStreamService telemetry,
+                                     ViewportStreamService viewports,
+                                     AdaptiveTelemetryService adaptive,
+                                     ObjectMapper mapper,
+                                     FleetMetrics metrics) {
         this.telemetry = telemetry;
+        this.viewports = viewports;
+        this.adaptive = adaptive;
         this.mapper = mapper;
+        this.metrics = metrics;
     }
 
     @Override
     public Mono<Void> handle(WebSocketSession session) {
-        long sampleMs = parseSampleMs(session.getHandshakeInfo().getUri()).orElse(0L);
+        URI uri = session.getHandshakeInfo().getUri();
+        if (query(uri, "mode").filter("adaptive"::equalsIgnoreCase).isPresent()) {
+            // Paced by the session's own demand, so no sampling or onBackpressureLatest on top.
+            return session.send(adaptive.stream(FleetMetrics.Transport.WS)
+                    .map(frame -> new WebSocketMessage(WebSocketMessage.Type.TEXT, session.bufferFactory().wrap(frame))));
+        }
+        if (query(uri, "snapshot").filter("true"::equalsIgnoreCase).isPresent()) {
+            // The service keeps only the latest live update once the snapshot is out; no sampling on top.
+            var outbound = metrics.tracked(FleetMetrics.Transport.WS,
+                            telemetry.snapshotThenLive(TelemetryStreamService.SNAPSHOT_BATCH))
+                    .doOnNext(batch -> {
+                        for (EncodedTelemetry e : batch) metrics.recordSent(FleetMetrics.Transport.WS, e.telemetry().ts());
+                    })
+                    .map(batch -> new WebSocketMessage(WebSocketMessage.Type.TEXT,
+                            session.bufferFactory().wrap(EncodedTelemetry.jsonArray(batch))));
+            return session.send(outbound);
+        }
+        long sampleMs = parseLong(uri, "sampleMs").orElse(0L);
 
-        var stream = telemetry.stream();
+        var stream = source(session, uri);
         if (sampleMs > 0) {
             stream = stream.sample(Duration.ofMillis(Math.max(50, sampleMs)));
         }
 
-        var outbound = stream
-                .map(t -> session.textMessage(toJson(t)))
-                .onBackpressureLatest();
+        if (query(uri, "format").filter("binary"::equalsIgnoreCase).isPresent()) {
+            long batchMs = Math.max(10, parseLong(uri, "batchMs").orElse(DEFAULT_BATCH_MS));
+            var encoder = TelemetryBatchCodec.encoder(); // per-session truck-id dictionary
+            // Coalesced per truck and drained only on demand, so a slow client still gets every truck,
+            // and the encoder's dictionary only records ids from frames that are actually sent.
+            var batches = telemetry.latestBatches(stream.map(EncodedTelemetry::telemetry),
+                    Duration.ofMillis(batchMs), TelemetryBatchCodec.MAX_BATCH, FleetMetrics.Transport.WS);
+            var outbound = metrics.tracked(FleetMetrics.Transport.WS, batches)
+                    .doOnNext(batch -> {
+                        for (TruckTelemetry t : batch) metrics.recordSent(FleetMetrics.Transport.WS, t.ts());
+                    })
+                    .map(batch -> session.binaryMessage(f -> f.wrap(encoder.encode(batch))));
+            return session.send(outbound);
+        }
+
+        var outbound = metrics.latest(FleetMetrics.Transport.WS, stream)
+                .doOnNext(e -> metrics.recordSent(FleetMetrics.Transport.WS, e.telemetry().ts()))
+                .map(e -> new WebSocketMessage(WebSocketMessage.Type.TEXT, session.bufferFactory().wrap(e.json())));
 
         return session.send(outbound);
     }
 
-    private String toJson(Object o) {
+    private Flux<EncodedTelemetry> source(WebSocketSession session, URI uri) {
+        Optional<Viewport> initial = parseBbox(uri);
+        boolean viewportMode = initial.isPresent()
+                || query(uri, "viewport").filter("true"::equalsIgnoreCase).isPresent();
+        if (!viewportMode) return telemetry.encodedStream();
+
+        Flux<Viewport> moves = session.receive()
+                .map(WebSocketMessage::getPayloadAsText)
+                .flatMap(text -> Mono.justOrEmpty(parseViewport(text)));
+        return viewports.stream(Flux.concat(Mono.justOrEmpty(initial), moves));
+    }
+
+    private Optional<Viewport> parseViewport(String json) {
         try {
-            return mapper.writeValueAsString(o);
+            return Optional.of(mapper.readValue(json, Viewport.class));
         } catch (Exception e) {
-            return "{}";
+            return Optional.empty(); // ignore malformed client messages
+        }
+    }
+
+    private Optional<Viewport> parseBbox(URI uri) {
+        return query(uri, "bbox").flatMap(v -> {
+            String[] p = v.split(",");
+            if (p.length != 4) return Optional.empty();
+            try {
+                return Optional.of(new Viewport(Double.parseDouble(p[0]), Double.parseDouble(p[1]),
+                        Double.parseDouble(p[2]), Double.parseDouble(p[3])));
+            } catch (NumberFormatException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    private Optional<Long> parseLong(URI uri, String name) {
+        try {
+            return query(uri, name).map(Long::parseLong);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
         }
     }
 
-    private Optional<Long> parseSampleMs(URI uri) {
+    private Optional<String> query(URI uri, String name) {
         if (uri == null || uri.getQuery() == null) return Optional.empty();
         for (String part : uri.getQuery().split("&")) {
             String[] kv = part.split("=", 2);
-            if (kv.length == 2 && kv[0].equalsIgnoreCase("sampleMs")) {
-                try {
-                    return Optional.of(Long.parseLong(kv[1]));
-                } catch (Exception ignored) {}
+            if (kv.length == 2 && kv[0].equalsIgnoreCase(name)) {
+                return Optional.of(kv[1]);
             }
         }
         return Optional.empty();
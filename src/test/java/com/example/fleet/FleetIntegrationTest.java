@@ -1,6 +1,7 @@
 package com.example.fleet;
 
 import com.example.fleet.controller.SimulatorController;
+import com.example.fleet.model.NearbyTruck;
 import com.example.fleet.model.TruckTelemetry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,7 +20,7 @@ import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@Testcontainers
+@Testcontainers(disabledWithoutDocker = true)
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @AutoConfigureWebTestClient
 @ActiveProfiles("test")
@@ -56,5 +57,17 @@ class FleetIntegrationTest {
                 .expectStatus().isOk()
                 .expectBodyList(TruckTelemetry.class)
                 .value(list -> assertFalse(list.isEmpty()));
+
+        // The GEO index is written with the same tick: the whole demo box is within 50 km.
+        web.get().uri("/api/fleet/nearby?lat=51.5&lon=-0.15&radiusKm=50&limit=20")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(NearbyTruck.class)
+                .value(list -> {
+                    assertEquals(20, list.size());
+                    for (int i = 1; i < list.size(); i++) {
+                        assertTrue(list.get(i - 1).distanceKm() <= list.get(i).distanceKm());
+                    }
+                });
     }
 }
@@ -0,0 +1,81 @@
+package com.example.fleet.codec;
+
+import com.example.fleet.model.TruckTelemetry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryBatchCodecTest {
+
+    @Test
+    void roundTrip_keepsDictionaryAcrossFrames_andQuantizes() {
+        var encoder = TelemetryBatchCodec.encoder();
+        var decoder = TelemetryBatchCodec.decoder();
+        Instant base = Instant.parse("2025-01-01T10:00:00Z");
+
+        var first = List.of(
+                new TruckTelemetry("TRK-00001", base, 51.5012345678, -0.1276543, 42.345, 77.777, 359.99),
+                new TruckTelemetry("TRK-00002", base.plusMillis(40), 51.4, 0.1, 0, 100, 0));
+        var second = List.of(
+                new TruckTelemetry("TRK-00002", base.plusSeconds(1), 51.41, 0.11, 10, 99.5, 90));
+
+        byte[] f1 = encoder.encode(first);
+        byte[] f2 = encoder.encode(second);
+
+        var d1 = decoder.decode(ByteBuffer.wrap(f1));
+        var d2 = decoder.decode(ByteBuffer.wrap(f2));
+
+        assertEquals(List.of("TRK-00001", "TRK-00002"), d1.stream().map(TruckTelemetry::truckId).toList());
+        assertEquals(base.plusMillis(40), d1.get(1).ts());
+        assertEquals(51.5012346, d1.get(0).lat(), 1e-9);
+        assertEquals(-0.1276543, d1.get(0).lon(), 1e-9);
+        assertEquals(42.35, d1.get(0).speedKph(), 1e-9);
+        assertEquals(359.99, d1.get(0).headingDeg(), 1e-9);
+
+        // Known id is sent by index only: the second frame carries no dictionary entry.
+        assertEquals("TRK-00002", d2.get(0).truckId());
+        assertEquals(12 + 2 + 2 + TelemetryBatchCodec.RECORD_BYTES, f2.length);
+    }
+
+    @Test
+    void droppedFrame_neverCarriesDictionaryEntries() {
+        // Frames are encoded only once there is demand; a batch discarded before that never reaches the encoder.
+        Sinks.Many<List<TruckTelemetry>> batches = Sinks.many().unicast().onBackpressureBuffer();
+        var encoder = TelemetryBatchCodec.encoder();
+        Flux<byte[]> frames = batches.asFlux().onBackpressureLatest().map(encoder::encode);
+
+        var decoder = TelemetryBatchCodec.decoder();
+        Instant base = Instant.parse("2025-01-01T10:00:00Z");
+        var first = List.of(new TruckTelemetry("TRK-00001", base, 51.5, -0.1, 40, 80, 90));
+        var superseded = List.of(new TruckTelemetry("TRK-00002", base.plusSeconds(1), 51.6, -0.1, 40, 80, 90));
+        var latest = List.of(
+                new TruckTelemetry("TRK-00003", base.plusSeconds(2), 51.7, -0.1, 40, 80, 90),
+                new TruckTelemetry("TRK-00002", base.plusSeconds(2), 51.6, -0.2, 40, 80, 90));
+
+        StepVerifier.create(frames, 1)
+                .then(() -> batches.tryEmitNext(first))
+                .assertNext(decodesTo(decoder, "TRK-00001"))
+                .then(() -> {
+                    // No demand: the second batch is replaced by the third and never encoded.
+                    batches.tryEmitNext(superseded);
+                    batches.tryEmitNext(latest);
+                })
+                .thenRequest(1)
+                .assertNext(decodesTo(decoder, "TRK-00003", "TRK-00002"))
+                .thenCancel()
+                .verify();
+    }
+
+    private static Consumer<byte[]> decodesTo(TelemetryBatchCodec.Decoder decoder, String... truckIds) {
+        return frame -> assertEquals(List.of(truckIds),
+                decoder.decode(ByteBuffer.wrap(frame)).stream().map(TruckTelemetry::truckId).toList());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.fleet.config;
+
+/**
+ * {@link FleetProperties} for tests: set only the sections a test cares about.
+ *
+ * Defaults: a single-shard stream flushed every 50 ms, "latest" backpressure; every other section
+ * is left null, so services fall back to their built-in defaults.
+ */
+public final class TestProperties {
+
+    private FleetProperties.Simulator simulator;
+    private FleetProperties.Stream stream = new FleetProperties.Stream(50, 1000, 1);
+    private FleetProperties.Backpressure backpressure = new FleetProperties.Backpressure("latest", 1000);
+    private FleetProperties.Geofence geofence;
+    private FleetProperties.Ingest ingest;
+    private FleetProperties.History history;
+    private FleetProperties.Replay replay;
+    private FleetProperties.Cache cache;
+    private FleetProperties.Adaptive adaptive;
+    private FleetProperties.Density density;
+    private FleetProperties.DeadBand deadBand;
+    private FleetProperties.Registry registry;
+
+    private TestProperties() {}
+
+    public static TestProperties defaults() {
+        return new TestProperties();
+    }
+
+    public TestProperties withSimulator(FleetProperties.Simulator simulator) {
+        this.simulator = simulator;
+        return this;
+    }
+
+    public TestProperties withStream(FleetProperties.Stream stream) {
+        this.stream = stream;
+        return this;
+    }
+
+    public TestProperties withBackpressure(FleetProperties.Backpressure backpressure) {
+        this.backpressure = backpressure;
+        return this;
+    }
+
+    public TestProperties withGeofence(FleetProperties.Geofence geofence) {
+        this.geofence = geofence;
+        return this;
+    }
+
+    public TestProperties withIngest(FleetProperties.Ingest ingest) {
+        this.ingest = ingest;
+        return this;
+    }
+
+    public TestProperties withHistory(FleetProperties.History history) {
+        this.history = history;
+        return this;
+    }
+
+    public TestProperties withReplay(FleetProperties.Replay replay) {
+        this.replay = replay;
+        return this;
+    }
+
+    public TestProperties withCache(FleetProperties.Cache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public TestProperties withAdaptive(FleetProperties.Adaptive adaptive) {
+        this.adaptive = adaptive;
+        return this;
+    }
+
+    public TestProperties withDensity(FleetProperties.Density density) {
+        this.density = density;
+        return this;
+    }
+
+    public TestProperties withDeadBand(FleetProperties.DeadBand deadBand) {
+        this.deadBand = deadBand;
+        return this;
+    }
+
+    public TestProperties withRegistry(FleetProperties.Registry registry) {
+        this.registry = registry;
+        return this;
+    }
+
+    public FleetProperties build() {
+        return new FleetProperties(simulator, stream, backpressure, geofence, ingest, history, replay, cache,
+                adaptive, density, deadBand, registry);
+    }
+}
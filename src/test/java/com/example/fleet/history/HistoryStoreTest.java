@@ -0,0 +1,122 @@
+package com.example.fleet.history;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.config.TestProperties;
+import com.example.fleet.model.TruckTelemetry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void range_returnsOneTrucksPointsAcrossSegments_andSurvivesReopen() throws Exception {
+        // 100-record segments force several rolls; retention is long enough to keep everything.
+        var props = props(100);
+        var store = new HistoryStore(props);
+        store.start();
+
+        Instant t0 = Instant.now().minusSeconds(600);
+        for (int tick = 0; tick < 60; tick++) {
+            List<TruckTelemetry> batch = new ArrayList<>();
+            for (int truck = 0; truck < 10; truck++) {
+                batch.add(new TruckTelemetry("TRK-" + truck, t0.plusSeconds(tick), 51.5 + tick * 1e-4, -0.1, 42.5, 60.25, 90));
+            }
+            assertTrue(store.append(batch, i -> i)); // handle == truck number
+        }
+        awaitAppended(store, 600);
+
+        List<TruckTelemetry> got = store.range("TRK-3", t0.plusSeconds(10).toEpochMilli(), t0.plusSeconds(40).toEpochMilli())
+                .collectList().block();
+        assertEquals(31, got.size());
+        assertEquals(t0.plusSeconds(10).toEpochMilli(), got.get(0).ts().toEpochMilli());
+        assertTrue(got.stream().allMatch(t -> t.truckId().equals("TRK-3") && t.speedKph() == 42.5 && t.fuelPct() == 60.25));
+        assertEquals(51.5 + 40 * 1e-4, got.get(30).lat(), 1e-7);
+        assertTrue(store.stats().segments() >= 6);
+        store.stop();
+
+        var reopened = new HistoryStore(props);
+        reopened.start();
+        assertEquals(60, reopened.range("TRK-9", 0, Long.MAX_VALUE).count().block());
+        assertEquals(0, reopened.range("TRK-unknown", 0, Long.MAX_VALUE).count().block());
+        reopened.stop();
+    }
+
+    @Test
+    void range_withinOneSegment_isInclusive_andEndsAtTheWindow() throws Exception {
+        var store = new HistoryStore(props(100_000));
+        store.start();
+
+        // Two points per second, 500 ms apart, far more records than one sparse sample step.
+        Instant t0 = Instant.now().minusSeconds(600);
+        List<TruckTelemetry> batch = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            batch.add(new TruckTelemetry("TRK-1", t0.plusMillis(500L * i), 51.5, -0.1, 40, 50, 0));
+        }
+        assertTrue(store.append(batch, i -> 1));
+        awaitAppended(store, 400);
+
+        long base = t0.toEpochMilli();
+        assertEquals(1, store.range("TRK-1", base + 50_000, base + 50_000).count().block());
+        assertEquals(0, store.range("TRK-1", base + 50_001, base + 50_499).count().block());
+        List<TruckTelemetry> got = store.range("TRK-1", base + 20_000, base + 30_000).collectList().block();
+        assertEquals(21, got.size());
+        assertEquals(base + 30_000, got.get(20).ts().toEpochMilli());
+        store.stop();
+    }
+
+    @Test
+    void range_findsALatePoint_appendedAfterNewerOnes() throws Exception {
+        var store = new HistoryStore(props(100_000));
+        store.start();
+
+        // One point per second for 100 s, then a device that reports 10.5 s late.
+        Instant t0 = Instant.now().minusSeconds(600);
+        List<TruckTelemetry> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new TruckTelemetry("TRK-1", t0.plusSeconds(i), 51.5, -0.1, 40, 50, 0));
+        }
+        batch.add(new TruckTelemetry("TRK-1", t0.plusMillis(10_500), 52.0, -0.1, 40, 50, 0));
+        batch.add(new TruckTelemetry("TRK-1", t0.plusSeconds(100), 51.5, -0.1, 40, 50, 0));
+        assertTrue(store.append(batch, i -> 1));
+        awaitAppended(store, 102);
+
+        long base = t0.toEpochMilli();
+        List<TruckTelemetry> got = store.range("TRK-1", base + 10_000, base + 11_000).collectList().block();
+        assertEquals(List.of(base + 10_000, base + 11_000, base + 10_500),
+                got.stream().map(t -> t.ts().toEpochMilli()).toList()); // append order
+        assertEquals(52.0, got.get(2).lat(), 1e-7);
+        assertEquals(1, store.range("TRK-1", base + 10_500, base + 10_500).count().block());
+        assertEquals(2, store.range("TRK-1", base + 99_000, base + 200_000).count().block());
+        store.stop();
+    }
+
+    private FleetProperties props(int segmentRecords) {
+        return TestProperties.defaults()
+                .withHistory(new FleetProperties.History(true, dir.toString(), segmentRecords, 60, 24 * 60, 256))
+                .build();
+    }
+
+    private static void awaitAppended(HistoryStore store, long n) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            var s = store.stats();
+            if (s.appended() >= n && s.queuedBatches() == 0) {
+                Thread.sleep(50); // let the writer commit the last drain
+                return;
+            }
+            Thread.sleep(5);
+        }
+        fail("history writer did not catch up");
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.fleet.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FleetMetrics metrics = new FleetMetrics(registry);
+
+    @Test
+    void latest_tracksSubscribers_andCountsUpdatesASlowSubscriberNeverSaw() {
+        List<Integer> received = new ArrayList<>();
+        var slow = new BaseSubscriber<Integer>() {
+            @Override protected void hookOnSubscribe(Subscription s) { request(1); }
+            @Override protected void hookOnNext(Integer v) { received.add(v); }
+        };
+
+        metrics.latest(FleetMetrics.Transport.WS, Flux.range(1, 100)).subscribe(slow);
+        assertEquals(1.0, gauge("ws"));
+
+        slow.request(1); // 2..99 were replaced by 100 while the subscriber was busy
+        assertEquals(List.of(1, 100), received);
+        assertEquals(98.0, registry.get("fleet.backpressure.dropped").tag("transport", "ws").counter().count());
+        assertEquals(0.0, gauge("ws")); // completed
+        assertEquals(0.0, gauge("rsocket"));
+    }
+
+    @Test
+    void emitFailures_areCountedByReason() {
+        metrics.emitFailed(FleetMetrics.Sink.ALERTS, Sinks.EmitResult.FAIL_OVERFLOW);
+        metrics.emitFailed(FleetMetrics.Sink.ALERTS, Sinks.EmitResult.FAIL_OVERFLOW);
+        metrics.emitFailed(FleetMetrics.Sink.ALERTS, Sinks.EmitResult.FAIL_NON_SERIALIZED);
+
+        assertEquals(2.0, registry.get("fleet.sink.emit.failures")
+                .tags("sink", "alerts", "reason", "FAIL_OVERFLOW").counter().count());
+        assertEquals(1.0, registry.get("fleet.sink.emit.failures")
+                .tags("sink", "alerts", "reason", "FAIL_NON_SERIALIZED").counter().count());
+    }
+
+    @Test
+    void latency_isRecordedPerHop_withHighPercentiles() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            metrics.recordAge(FleetMetrics.Hop.PERSISTED, Instant.ofEpochMilli(now - (i < 990 ? 10 : 2000)), now);
+        }
+        metrics.recordAge(FleetMetrics.Hop.PERSISTED, Instant.ofEpochMilli(now + 500), now); // clock skew: clamped to 0
+        metrics.recordAge(FleetMetrics.Hop.PERSISTED, null, now);                             // no timestamp: ignored
+
+        var snapshot = registry.get("fleet.latency.hop").tag("hop", "persisted").timer().takeSnapshot();
+        assertEquals(1001, snapshot.count());
+        double p50 = -1, p999 = -1;
+        for (var v : snapshot.percentileValues()) {
+            if (v.percentile() == 0.5) p50 = v.value(TimeUnit.MILLISECONDS);
+            if (v.percentile() == 0.999) p999 = v.value(TimeUnit.MILLISECONDS);
+        }
+        assertEquals(10, p50, 1);
+        assertTrue(p999 > 1500, "p999 should see the 2 s tail: " + p999);
+    }
+
+    private double gauge(String transport) {
+        return registry.get("fleet.subscribers").tag("transport", transport).gauge().value();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.fleet.repo;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.config.TestProperties;
+import com.example.fleet.model.NearbyTruck;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.service.TruckRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingTruckStateRepositoryTest {
+
+    private final MapRepository redis = new MapRepository();
+    private final CachingTruckStateRepository cache = new CachingTruckStateRepository(
+            props(3, 60_000), redis, new TruckRegistry());
+
+    @Test
+    void readsAfterWriteThrough_areServedFromMemory_missesGoToTheDelegate() {
+        redis.values.put("OLD", truck("OLD"));       // written before this process started
+        cache.upsertAll(List.of(truck("A"), truck("B"))).block();
+
+        assertEquals("A", cache.get("A").block().truckId());
+        assertEquals(List.of("B", "OLD", "A"), ids(cache.getMany(List.of("B", "OLD", "NONE", "A"))));
+        assertEquals(0, redis.gets.get());
+        assertEquals(1, redis.batchedReads.get());   // only OLD/NONE, in one read
+
+        assertEquals("OLD", cache.get("OLD").block().truckId());
+        assertEquals(1, redis.gets.get());
+    }
+
+    @Test
+    void list_pagesNewestFirstFromMemory_andFallsBackBeyondTheCachedWindow() {
+        cache.upsertAll(List.of(truck("A"), truck("B"))).block();
+        cache.upsertAll(List.of(truck("C"))).block();
+
+        assertEquals(List.of("C", "B"), ids(cache.list(0, 2)));
+        assertEquals(0, redis.lists.get());
+
+        cache.list(0, 10).blockLast();                // Redis may hold older trucks: ask it
+        assertEquals(1, redis.lists.get());
+
+        cache.count().block();                        // Redis holds exactly what we cache
+        assertEquals(List.of("C", "B", "A"), ids(cache.list(0, 10)));
+        assertEquals(1, redis.lists.get());
+    }
+
+    @Test
+    void boundedSize_andStaleEntriesAreEvicted() {
+        cache.upsertAll(List.of(truck("A"), truck("B"), truck("C"), truck("D"))).block();
+        assertEquals(3, cache.stats().cached());
+        assertEquals(1, cache.stats().rejected());
+
+        assertEquals(0, cache.evictStale(System.currentTimeMillis()));
+        assertEquals(3, cache.evictStale(System.currentTimeMillis() + 60_001));
+        assertEquals(0, cache.stats().cached());
+
+        cache.get("A").block();
+        assertEquals(1, redis.gets.get());
+    }
+
+    @Test
+    void truckTheRegistryRefuses_isWrittenThroughButNotCached() {
+        var registry = new TruckRegistry(1);
+        var capped = new CachingTruckStateRepository(props(3, 60_000), redis, registry);
+
+        capped.upsertAll(List.of(truck("A"), truck("B"))).block();
+        assertEquals(Set.of("A", "B"), redis.values.keySet());
+        assertEquals(1, capped.stats().cached());
+        assertEquals(1, capped.stats().rejected());
+        assertEquals(1, registry.refusedCount());
+
+        assertEquals("B", capped.get("B").block().truckId());
+        assertEquals(1, redis.gets.get());
+    }
+
+    private static FleetProperties props(int maxTrucks, long maxAgeMs) {
+        return TestProperties.defaults().withCache(new FleetProperties.Cache(true, maxTrucks, maxAgeMs)).build();
+    }
+
+    private static TruckTelemetry truck(String id) {
+        return new TruckTelemetry(id, Instant.now(), 51.5, -0.1, 40, 50, 90);
+    }
+
+    private static List<String> ids(Flux<TruckTelemetry> trucks) {
+        return trucks.map(TruckTelemetry::truckId).collectList().block();
+    }
+
+    private static final class MapRepository implements TruckStateRepository {
+        final Map<String, TruckTelemetry> values = new LinkedHashMap<>();
+        final AtomicInteger gets = new AtomicInteger();
+        final AtomicInteger batchedReads = new AtomicInteger();
+        final AtomicInteger lists = new AtomicInteger();
+
+        @Override public Mono<Void> upsert(TruckTelemetry telemetry) { return upsertAll(List.of(telemetry)); }
+        @Override public Mono<Void> upsertAll(Collection<TruckTelemetry> batch) {
+            return Mono.fromRunnable(() -> batch.forEach(t -> values.put(t.truckId(), t)));
+        }
+        @Override public Mono<TruckTelemetry> get(String truckId) {
+            gets.incrementAndGet();
+            return Mono.justOrEmpty(values.get(truckId));
+        }
+        @Override public Flux<TruckTelemetry> getMany(Collection<String> truckIds) {
+            batchedReads.incrementAndGet();
+            return Flux.fromIterable(truckIds).mapNotNull(values::get);
+        }
+        @Override public Flux<TruckTelemetry> list(int offset, int limit) {
+            lists.incrementAndGet();
+            return Flux.fromIterable(new ArrayList<>(values.values())).skip(offset).take(limit);
+        }
+        @Override public Flux<NearbyTruck> nearby(double lat, double lon, double radiusKm, int limit) { return Flux.empty(); }
+        @Override public Mono<Long> count() { return Mono.just((long) values.size()); }
+        @Override public Mono<Void> clearAll() { return Mono.fromRunnable(values::clear); }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.fleet.service;
+
+import com.example.fleet.model.TruckTelemetry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveSubscriberTest {
+
+    private static final int TRUCKS = 1000;
+    private static final int MAX_BUFFERED = 16 * 1024;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AdaptiveSubscriber sub = new AdaptiveSubscriber(250, 5000, MAX_BUFFERED, 4 * 1024, t -> {});
+
+    @Test
+    void stalledConsumer_staysUnderTheByteLimit_andDegradesIntervalAndPrecision() throws Exception {
+        sub.onRequest(32);
+        long now = 0;
+        for (; now < 60_000; now += AdaptiveTelemetryService.TICK_MS) {
+            if (now % 250 == 0) offerAll(now);
+            sub.tick(now);                                   // never written: no further requests
+            assertTrue(sub.bufferedBytes() <= MAX_BUFFERED, "buffered " + sub.bufferedBytes());
+        }
+        assertEquals(AdaptiveSubscriber.MIN_PRECISION, sub.precision());
+        assertEquals(5000, sub.intervalMs());
+
+        // The link recovers: the backlog is written, then every frame is written (and re-requested) right away.
+        sub.onRequest(32);
+        Set<String> refreshed = new HashSet<>();
+        for (long end = now + 600_000; now < end; now += AdaptiveTelemetryService.TICK_MS) {
+            if (now % 250 == 0) offerAll(now);
+            byte[] frame = sub.tick(now);
+            if (frame == null) continue;
+            JsonNode json = mapper.readTree(frame);
+            for (JsonNode truck : json.get("trucks")) refreshed.add(truck.get(0).asText());
+            sub.onRequest(1);
+        }
+        assertEquals(TRUCKS, refreshed.size());
+        assertEquals(250, sub.intervalMs());
+        assertEquals(AdaptiveSubscriber.MAX_PRECISION, sub.precision());
+    }
+
+    @Test
+    void frameBudget_carriesTheRestToTheNextFrame_untilEveryTruckIsSent() throws Exception {
+        sub.onRequest(Long.MAX_VALUE);                      // unmetered: only the frame size limits
+        offerAll(0);
+
+        Set<String> sent = new HashSet<>();
+        int frames = 0;
+        for (byte[] frame; (frame = sub.tick(frames)) != null; frames++) {
+            assertTrue(frame.length <= 4 * 1024);
+            JsonNode json = mapper.readTree(frame);
+            assertEquals(5, json.get("precision").asInt());
+            for (JsonNode truck : json.get("trucks")) assertTrue(sent.add(truck.get(0).asText()));
+        }
+        assertEquals(TRUCKS, sent.size());
+        assertTrue(frames > 1);
+    }
+
+    @Test
+    void appendFixed_roundsToTheRequestedDecimals() {
+        assertEquals("51.50000", fixed(51.5, 5));
+        assertEquals("-0.1235", fixed(-0.12345678, 4));
+        assertEquals("0.000", fixed(-0.0004, 3));
+        assertEquals("0.050", fixed(0.05, 3));
+        assertEquals("43", fixed(42.96, 0));
+        assertEquals("null", fixed(Double.NaN, 1));
+    }
+
+    private void offerAll(long tsMs) {
+        for (int i = 0; i < TRUCKS; i++) {
+            sub.offer(i, new TruckTelemetry("TRK-" + i, Instant.ofEpochMilli(tsMs),
+                    51.5 + i * 1e-4 + tsMs * 1e-8, -0.1 - i * 1e-4, 42.25, 60.5, 90));
+        }
+    }
+
+    private static String fixed(double v, int decimals) {
+        var sb = new StringBuilder();
+        AdaptiveSubscriber.appendFixed(sb, v, decimals);
+        return sb.toString();
+    }
+}
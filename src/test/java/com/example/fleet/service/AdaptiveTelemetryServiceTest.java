@@ -0,0 +1,45 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.TestProperties;
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.TruckTelemetry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveTelemetryServiceTest {
+
+    @Test
+    void feedIsAttachedOnlyWhileASubscriberIsConnected() throws Exception {
+        var props = TestProperties.defaults().build();
+        var registry = new TruckRegistry();
+        var metrics = FleetMetrics.noop();
+        var telemetry = new TelemetryStreamService(props, new ObjectMapper(), registry, metrics);
+        var adaptive = new AdaptiveTelemetryService(props, telemetry, metrics);
+        assertEquals(0, telemetry.listenerCount());
+
+        List<byte[]> frames = new CopyOnWriteArrayList<>();
+        Disposable sub = adaptive.stream(FleetMetrics.Transport.WS).subscribe(frames::add);
+        assertEquals(1, telemetry.listenerCount());
+        try {
+            telemetry.accept(registry.handleOf("TRK-1"), new TruckTelemetry("TRK-1", Instant.now(), 51.5, -0.1, 40, 50, 90));
+            telemetry.flush();
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (frames.isEmpty() && System.nanoTime() < deadline) Thread.sleep(10);
+            assertFalse(frames.isEmpty());
+            assertTrue(new String(frames.get(0), StandardCharsets.US_ASCII).contains("\"TRK-1\""));
+        } finally {
+            sub.dispose();
+        }
+        assertEquals(0, telemetry.listenerCount()); // the last subscriber left, and the feed with it
+    }
+}
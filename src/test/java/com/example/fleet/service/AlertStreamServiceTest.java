@@ -0,0 +1,64 @@
+package com.example.fleet.service;
+
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.AlertEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlertStreamServiceTest {
+
+    @Test
+    void concurrentEmits_areAllDelivered() throws Exception {
+        var alerts = new AlertStreamService(FleetMetrics.noop());
+        Set<String> got = ConcurrentHashMap.newKeySet();
+        var sub = alerts.stream().subscribe(a -> got.add(a.alertId()));
+
+        int threads = 4, perThread = 2_000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                int shard = t;
+                pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) alerts.emit(alert(shard + "-" + i));
+                    return null;
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+            sub.dispose();
+        }
+        assertEquals(threads * perThread, got.size());
+        assertEquals(0, alerts.droppedCount());
+    }
+
+    @Test
+    void emitWithoutSubscribers_isNotCountedAsAFailure() {
+        var registry = new SimpleMeterRegistry();
+        var alerts = new AlertStreamService(new FleetMetrics(registry));
+
+        alerts.emit(alert("a"));
+
+        assertEquals(0, alerts.droppedCount());
+        assertEquals(0.0, registry.find("fleet.sink.emit.failures").tag("sink", "alerts")
+                .counters().stream().mapToDouble(c -> c.count()).sum());
+    }
+
+    private static AlertEvent alert(String id) {
+        return new AlertEvent(id, Instant.now(), "ENTER_GEOFENCE", "T1", "G1", null);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.config.TestProperties;
+import com.example.fleet.model.TruckTelemetry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadBandFilterTest {
+
+    private static final double METRE_LAT = 1 / 111_320.0;
+
+    private final TruckRegistry registry = new TruckRegistry();
+    private final DeadBandFilter filter = new DeadBandFilter(TestProperties.defaults()
+            .withDeadBand(new FleetProperties.DeadBand(true, 5, 5, 2, 1, 10_000, 2_000)).build(), registry);
+    private final int h = registry.handleOf("T1");
+
+    @Test
+    void onlyChangesBeyondAThresholdPass() {
+        assertTrue(filter.accept(h, truck(0, 40, 50, 358), 0));          // first update always passes
+        assertFalse(filter.accept(h, truck(3, 41, 50, 358), 100));       // 3 m, +1 km/h
+        assertFalse(filter.accept(h, truck(4, 41.5, 49.5, 2), 200));     // heading wraps: 4 degrees
+        assertTrue(filter.accept(h, truck(6, 41.5, 49.5, 2), 300));      // 6 m
+        assertTrue(filter.accept(h, truck(6, 44, 49.5, 2), 400));        // +2.5 km/h
+        assertTrue(filter.accept(h, truck(6, 44, 48, 2), 500));          // -1.5 % fuel
+
+        var stats = filter.stats();
+        assertEquals(6, stats.received());
+        assertEquals(2, stats.suppressed());
+        assertEquals(2 / 6.0, stats.suppressionRatio(), 1e-9);
+    }
+
+    @Test
+    void parkedTruck_sendsAKeepaliveAfterMaxSilence() {
+        assertTrue(filter.accept(h, truck(0, 0, 50, 90), 0));
+        assertFalse(filter.accept(h, truck(0, 0, 50, 90), 9_999));
+        assertTrue(filter.accept(h, truck(0, 0, 50, 90), 10_000));
+        assertEquals(1, filter.stats().keepalives());
+    }
+
+    @Test
+    void truckThatStopsChanging_flushesItsExactFinalState() {
+        assertTrue(filter.accept(h, truck(0, 10, 50, 90), 0));
+        assertFalse(filter.accept(h, truck(2, 10, 50, 90), 1_000));      // creeping, held back
+        assertTrue(filter.accept(h, truck(2, 10, 50, 90), 2_000));       // same again: settled, flushed
+        assertFalse(filter.accept(h, truck(2, 10, 50, 90), 3_000));      // already exact
+
+        // A device that goes quiet after a held-back update is flushed by the sweep.
+        assertFalse(filter.accept(h, truck(4, 10, 50, 90), 4_000));
+        assertEquals(List.of(), filter.takeSettled(5_999).trucks());
+        DeadBandFilter.Settled settled = filter.takeSettled(6_000);
+        assertEquals(1, settled.trucks().size());
+        assertEquals(truck(4, 10, 50, 90).lat(), settled.trucks().get(0).lat());
+        assertArrayEquals(new int[] {h}, settled.handles());
+        assertEquals(List.of(), filter.takeSettled(9_000).trucks());
+        assertEquals(2, filter.stats().settled());
+    }
+
+    private static TruckTelemetry truck(double metresNorth, double speed, double fuel, double heading) {
+        return new TruckTelemetry("T1", Instant.EPOCH, 51.5 + metresNorth * METRE_LAT, -0.1, speed, fuel, heading);
+    }
+}
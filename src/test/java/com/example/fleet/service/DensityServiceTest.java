@@ -0,0 +1,137 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.config.TestProperties;
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.DensityCell;
+import com.example.fleet.model.DensityFrame;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.util.QuadKey;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DensityServiceTest {
+
+    // Two points in different level-12 tiles (~10 km apart in London).
+    private static final double LAT_A = 51.50, LON_A = -0.12;
+    private static final double LAT_B = 51.50, LON_B = 0.02;
+
+    private final TruckRegistry registry = new TruckRegistry();
+    // A long emit interval keeps the background emitter out of the way; tests call emit().
+    private final FleetProperties props =
+            TestProperties.defaults().withDensity(new FleetProperties.Density(3_600_000, 15)).build();
+    private final TelemetryStreamService telemetry =
+            new TelemetryStreamService(props, new ObjectMapper(), registry, FleetMetrics.noop());
+    private final DensityService density = new DensityService(props, telemetry, registry, FleetMetrics.noop());
+
+    @Test
+    void subscriberGetsSnapshot_thenOnlyChangedCells() {
+        publish(truck("T1", LAT_A, LON_A, 40, 50));
+        publish(truck("T2", LAT_A, LON_A, 60, 10));
+
+        List<DensityFrame> frames = new ArrayList<>();
+        var sub = density.stream(12).subscribe(frames::add);
+
+        assertEquals(1, frames.size());
+        DensityFrame snapshot = frames.get(0);
+        assertTrue(snapshot.snapshot());
+        assertEquals(1, snapshot.cells().size());
+        DensityCell a = snapshot.cells().get(0);
+        assertEquals(2, a.count());
+        assertEquals(50.0, a.meanSpeedKph());
+        assertEquals(1, a.lowFuel());
+        assertEquals(12, a.quadkey().length());
+
+        publish(truck("T1", LAT_A + 0.0001, LON_A, 40, 50)); // same tile, same values
+        density.emit();
+        assertEquals(1, frames.size());
+
+        publish(truck("T2", LAT_B, LON_B, 60, 10));          // moves to another tile
+        density.emit();
+        assertEquals(2, frames.size());
+        Map<String, DensityCell> delta = byKey(frames.get(1));
+        assertFalse(frames.get(1).snapshot());
+        assertEquals(2, delta.size());
+        assertEquals(1, delta.get(a.quadkey()).count());
+        assertEquals(0, delta.get(a.quadkey()).lowFuel());
+        DensityCell b = delta.get(QuadKey.toQuadKey(QuadKey.tileX(LON_B, 12), QuadKey.tileY(LAT_B, 12), 12));
+        assertEquals(1, b.count());
+        assertEquals(60.0, b.meanSpeedKph());
+
+        publish(truck("T1", LAT_B, LON_B, 40, 50));          // tile A empties
+        density.emit();
+        assertEquals(0, byKey(frames.get(2)).get(a.quadkey()).count());
+
+        sub.dispose();
+    }
+
+    @Test
+    void lateSubscriber_seesStateAsOfTheLastEmission_andCatchesUpWithTheNextDelta() {
+        List<DensityFrame> first = new ArrayList<>();
+        var sub1 = density.stream(12).subscribe(first::add);
+        publish(truck("T1", LAT_A, LON_A, 40, 50));
+        density.emit();
+        publish(truck("T1", LAT_B, LON_B, 40, 50));
+
+        List<DensityFrame> late = new ArrayList<>();
+        var sub2 = density.stream(12).subscribe(late::add);
+        assertEquals(1, late.get(0).cells().size());
+        assertEquals(1, late.get(0).cells().get(0).count());
+
+        density.emit();
+        assertEquals(first.get(first.size() - 1), late.get(late.size() - 1)); // same shared delta
+        assertEquals(2, late.get(1).cells().size());
+
+        sub1.dispose();
+        sub2.dispose();
+    }
+
+    @Test
+    void quadKey_matchesTheStandardTileScheme() {
+        // Quadkey example from the Bing Maps tile system documentation.
+        assertEquals("213", QuadKey.toQuadKey(3, 5, 3));
+        assertEquals(1, QuadKey.tileX(0.1, 1));
+        assertEquals(0, QuadKey.tileY(45, 1));
+        assertEquals(0.0, QuadKey.centerLat(1 << 9, 10) + QuadKey.centerLat((1 << 9) - 1, 10), 1e-9);
+    }
+
+    @Test
+    void feedIsAttachedOnlyWhileAGridHasSubscribers_andReseededOnReturn() {
+        assertEquals(0, telemetry.listenerCount());
+        var sub = density.stream(12).subscribe();
+        assertEquals(1, telemetry.listenerCount());
+        sub.dispose();
+        assertEquals(0, telemetry.listenerCount());
+
+        publish(truck("T1", LAT_B, LON_B, 40, 50)); // published while nobody listens
+
+        List<DensityFrame> frames = new ArrayList<>();
+        var again = density.stream(12).subscribe(frames::add);
+        DensityCell b = frames.get(0).cells().get(0);
+        assertEquals(1, frames.get(0).cells().size());
+        assertEquals(QuadKey.toQuadKey(QuadKey.tileX(LON_B, 12), QuadKey.tileY(LAT_B, 12), 12), b.quadkey());
+        again.dispose();
+    }
+
+    // Through the stream service, as the pipeline delivers it: the update is published on flush.
+    private void publish(TruckTelemetry t) {
+        telemetry.accept(registry.handleOf(t.truckId()), t);
+        telemetry.flush();
+    }
+
+    private static Map<String, DensityCell> byKey(DensityFrame frame) {
+        return frame.cells().stream().collect(Collectors.toMap(DensityCell::quadkey, c -> c));
+    }
+
+    private static TruckTelemetry truck(String id, double lat, double lon, double speed, double fuel) {
+        return new TruckTelemetry(id, Instant.now(), lat, lon, speed, fuel, 90);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.fleet.service;
+
+import com.example.fleet.model.TruckTelemetry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetSimulationEngineTest {
+
+    private final ForkJoinPool parallel = new ForkJoinPool(4);
+    private final ForkJoinPool serial = new ForkJoinPool(1);
+
+    @AfterEach
+    void shutdown() {
+        parallel.shutdownNow();
+        serial.shutdownNow();
+    }
+
+    @Test
+    void sameSeed_sameFleet_whateverThePoolSize() {
+        int trucks = 3 * FleetSimulationEngine.CHUNK_SIZE + 100;
+        var a = new FleetSimulationEngine(trucks, 7, parallel);
+        var b = new FleetSimulationEngine(trucks, 7, serial);
+        for (int tick = 0; tick < 20; tick++) {
+            a.step();
+            b.step();
+        }
+        assertSameState(a.snapshot(), b.snapshot());
+        assertNotEquals(state(a.snapshot().get(0)), state(new FleetSimulationEngine(trucks, 8, serial).snapshot().get(0)));
+    }
+
+    @Test
+    void eachChunk_dependsOnlyOnSeedAndChunkIndex() {
+        // The first chunk of a large fleet walks exactly like a one-chunk fleet with the same seed.
+        var small = new FleetSimulationEngine(FleetSimulationEngine.CHUNK_SIZE, 7, serial);
+        var large = new FleetSimulationEngine(4 * FleetSimulationEngine.CHUNK_SIZE, 7, parallel);
+        for (int tick = 0; tick < 20; tick++) {
+            small.step();
+            large.step();
+        }
+        assertSameState(small.snapshot(), large.snapshot().subList(0, FleetSimulationEngine.CHUNK_SIZE));
+    }
+
+    @Test
+    void step_matchesThePerTruckRandomWalk() {
+        // One chunk, so every draw comes from the chunk's own stream in slot order.
+        int trucks = 500;
+        var engine = new FleetSimulationEngine(trucks, 7, serial);
+
+        SplittableRandom rng = new SplittableRandom(7).split();
+        List<TruckTelemetry> expected = new ArrayList<>(trucks);
+        for (int i = 1; i <= trucks; i++) {
+            String id = String.format("TRK-%05d", i);
+            double lat = 51.3 + rng.nextDouble() * 0.4;
+            double lon = -0.5 + rng.nextDouble() * 0.7;
+            double speed = 10 + rng.nextDouble() * 60;
+            double fuel = 20 + rng.nextDouble() * 80;
+            double heading = rng.nextDouble() * 360;
+            expected.add(new TruckTelemetry(id, null, lat, lon, speed, fuel, heading));
+        }
+        assertSameState(expected, engine.snapshot());
+
+        // Enough ticks for some trucks to leave the box and be re-seated.
+        for (int tick = 0; tick < 300; tick++) {
+            engine.step();
+            expected.replaceAll(t -> referenceStep(t, rng));
+        }
+        assertSameState(expected, engine.snapshot());
+    }
+
+    @Test
+    void handles_areInternedInSlotOrder() {
+        var registry = new TruckRegistry();
+        var engine = new FleetSimulationEngine(3, 7, serial, registry);
+        for (int slot = 0; slot < 3; slot++) {
+            assertEquals(engine.snapshot().get(slot).truckId(), registry.idOf(engine.handle(slot)));
+        }
+    }
+
+    /** The per-truck step SimulatorService ran before the engine existed. */
+    private static TruckTelemetry referenceStep(TruckTelemetry t, SplittableRandom rng) {
+        double heading = wrap360(t.headingDeg() + (rng.nextDouble() - 0.5) * 12);
+        double speed = clamp(t.speedKph() + (rng.nextDouble() - 0.5) * 8, 0, 120);
+        double fuel = clamp(t.fuelPct() - (0.005 + speed / 12000.0), 0, 100);
+
+        double distance = speed / 3600.0; // km per second at 1Hz
+        double dLat = (distance / 110.574) * Math.cos(Math.toRadians(heading));
+        double dLon = (distance / (111.320 * Math.cos(Math.toRadians(t.lat())) + 1e-9)) * Math.sin(Math.toRadians(heading));
+
+        double lat = t.lat() + dLat;
+        double lon = t.lon() + dLon;
+
+        if (lat < 51.3 || lat > 51.7) lat = 51.3 + rng.nextDouble() * 0.4;
+        if (lon < -0.5 || lon > 0.2) lon = -0.5 + rng.nextDouble() * 0.7;
+
+        return new TruckTelemetry(t.truckId(), null, lat, lon, speed, fuel, heading);
+    }
+
+    private static double clamp(double v, double min, double max) {
+        return Math.max(min, Math.min(max, v));
+    }
+
+    private static double wrap360(double v) {
+        double x = v % 360.0;
+        return x < 0 ? x + 360.0 : x;
+    }
+
+    private static void assertSameState(List<TruckTelemetry> expected, List<TruckTelemetry> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(state(expected.get(i)), state(actual.get(i)), "slot " + i);
+        }
+    }
+
+    /** Everything but the timestamp, which is wall-clock time. */
+    private static List<Object> state(TruckTelemetry t) {
+        return List.of(t.truckId(), t.lat(), t.lon(), t.speedKph(), t.fuelPct(), t.headingDeg());
+    }
+}
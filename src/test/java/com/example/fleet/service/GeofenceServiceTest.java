@@ -0,0 +1,68 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.config.TestProperties;
+import com.example.fleet.model.AlertEvent;
+import com.example.fleet.model.GeoPoint;
+import com.example.fleet.model.Geofence;
+import com.example.fleet.model.TruckTelemetry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeofenceServiceTest {
+
+    private static final Instant T0 = Instant.parse("2025-01-01T00:00:00Z");
+
+    private final GeofenceService service = new GeofenceService(TestProperties.defaults()
+            .withGeofence(new FleetProperties.Geofence(60_000, 1, 1000)).build(), new TruckRegistry());
+
+    @Test
+    void evaluate_emitsEnterDwellOnceThenExit() {
+        service.add(square("GF-1", 51.5, -0.1)).blockLast();
+
+        assertEquals(List.of("ENTER_GEOFENCE"), types(at(51.5, -0.1, 0)));
+        assertEquals(List.of(), types(at(51.5, -0.1, 30)));
+        assertEquals(List.of("DWELL_GEOFENCE"), types(at(51.5, -0.1, 60)));
+        assertEquals(List.of(), types(at(51.5, -0.1, 120)));
+        assertEquals(List.of("EXIT_GEOFENCE"), types(at(51.6, -0.1, 121)));
+        assertEquals(List.of(), types(at(51.6, -0.1, 122)));
+        assertEquals(List.of("ENTER_GEOFENCE"), types(at(51.5, -0.1, 123)));
+    }
+
+    @Test
+    void evaluate_tracksOverlappingFencesIndependently_andDeleteExitsSilently() {
+        service.add(square("GF-1", 51.5, -0.1)).blockLast();
+        service.add(square("GF-2", 51.5, -0.095)).blockLast();
+
+        List<AlertEvent> enter = service.evaluate(at(51.5, -0.098, 0)).collectList().block();
+        assertEquals(2, enter.size());
+        assertTrue(enter.stream().allMatch(a -> a.type().equals("ENTER_GEOFENCE")));
+
+        service.delete("GF-1").blockLast();
+        assertEquals(List.of(), types(at(51.5, -0.098, 1)));
+
+        List<AlertEvent> exit = service.evaluate(at(51.6, -0.098, 2)).collectList().block();
+        assertEquals(1, exit.size());
+        assertEquals("GF-2", exit.get(0).geofenceId());
+        assertEquals("EXIT_GEOFENCE", exit.get(0).type());
+    }
+
+    private List<String> types(TruckTelemetry t) {
+        return service.evaluate(t).map(AlertEvent::type).collectList().block();
+    }
+
+    private static TruckTelemetry at(double lat, double lon, long seconds) {
+        return new TruckTelemetry("TRK-00001", T0.plusSeconds(seconds), lat, lon, 40, 50, 90);
+    }
+
+    private static Geofence square(String id, double lat, double lon) {
+        double h = 0.005;
+        return new Geofence(id, id, List.of(
+                new GeoPoint(lat - h, lon - h), new GeoPoint(lat - h, lon + h),
+                new GeoPoint(lat + h, lon + h), new GeoPoint(lat + h, lon - h)));
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.config.TestProperties;
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.AlertEvent;
+import com.example.fleet.model.GeoPoint;
+import com.example.fleet.model.Geofence;
+import com.example.fleet.model.TruckTelemetry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeofenceStageTest {
+
+    @Test
+    void submit_keepsPerTruckAlertOrderAcrossShards() throws Exception {
+        var props = TestProperties.defaults().withGeofence(new FleetProperties.Geofence(0, 4, 1_000_000)).build();
+        var registry = new TruckRegistry();
+        var geofences = new GeofenceService(props, registry);
+        var alerts = new AlertStreamService(FleetMetrics.noop());
+        var stage = new GeofenceStage(props, geofences, alerts, registry, FleetMetrics.noop());
+        geofences.add(new Geofence("GF-1", "zone", List.of(
+                new GeoPoint(51.49, -0.11), new GeoPoint(51.49, -0.09),
+                new GeoPoint(51.51, -0.09), new GeoPoint(51.51, -0.11)))).blockLast();
+
+        int trucks = 200, ticks = 10;
+        List<AlertEvent> received = new CopyOnWriteArrayList<>();
+        var sub = alerts.stream().subscribe(received::add);
+        try {
+            Instant t0 = Instant.parse("2025-01-01T00:00:00Z");
+            for (int tick = 0; tick < ticks; tick++) {
+                double lat = tick % 2 == 0 ? 51.5 : 51.6; // alternate inside / outside
+                List<TruckTelemetry> batch = new ArrayList<>(trucks);
+                for (int i = 0; i < trucks; i++) {
+                    batch.add(new TruckTelemetry("TRK-" + i, t0.plusSeconds(tick), lat, -0.1, 40, 50, 0));
+                }
+                assertTrue(stage.submit(batch));
+            }
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (stage.stats().queued() > 0 && System.nanoTime() < deadline) Thread.sleep(5);
+
+            assertEquals(0, stage.stats().queued());
+            assertEquals((long) trucks * ticks, stage.stats().evaluated());
+            assertEquals(trucks * ticks, received.size());
+
+            Map<String, List<String>> byTruck = new ConcurrentHashMap<>();
+            for (AlertEvent a : received) {
+                byTruck.computeIfAbsent(a.truckId(), k -> new ArrayList<>()).add(a.type());
+            }
+            for (List<String> types : byTruck.values()) {
+                for (int k = 0; k < ticks; k++) {
+                    assertEquals(k % 2 == 0 ? GeofenceService.ENTER : GeofenceService.EXIT, types.get(k));
+                }
+            }
+        } finally {
+            sub.dispose();
+            stage.shutdown();
+        }
+    }
+
+    @Test
+    void submit_skipsTrucksTheRegistryRefuses_insteadOfFailingTheBatch() throws Exception {
+        var props = TestProperties.defaults().withGeofence(new FleetProperties.Geofence(0, 2, 1_000)).build();
+        var registry = new TruckRegistry(1);
+        var geofences = new GeofenceService(props, registry);
+        var alerts = new AlertStreamService(FleetMetrics.noop());
+        var stage = new GeofenceStage(props, geofences, alerts, registry, FleetMetrics.noop());
+        geofences.add(new Geofence("GF-1", "zone", List.of(
+                new GeoPoint(51.49, -0.11), new GeoPoint(51.49, -0.09),
+                new GeoPoint(51.51, -0.09), new GeoPoint(51.51, -0.11)))).blockLast();
+        try {
+            Instant t0 = Instant.parse("2025-01-01T00:00:00Z");
+            assertTrue(stage.submit(List.of(
+                    new TruckTelemetry("TRK-1", t0, 51.5, -0.1, 40, 50, 0),
+                    new TruckTelemetry("TRK-2", t0, 51.5, -0.1, 40, 50, 0))));
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (stage.stats().evaluated() < 1 && System.nanoTime() < deadline) Thread.sleep(5);
+
+            assertEquals(0, stage.stats().queued());
+            assertEquals(1, stage.stats().evaluated());
+            assertEquals(1, registry.refusedCount());
+        } finally {
+            stage.shutdown();
+        }
+    }
+}
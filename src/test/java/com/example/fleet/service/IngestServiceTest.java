@@ -0,0 +1,94 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.config.TestProperties;
+import com.example.fleet.model.IngestResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestServiceTest {
+
+    private PipelineFixture fixture;
+
+    @AfterEach
+    void shutdown() {
+        if (fixture != null) fixture.close();
+    }
+
+    @Test
+    void ingestLines_batchesValidPointsIntoThePipeline_andCountsRejects() {
+        var ingest = newIngest(new TruckRegistry());
+
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 250; i++) lines.add(point("DEV-" + i));
+        lines.add("");                                                    // ignored
+        lines.add("{not json");                                           // malformed
+        lines.add("{\"truckId\":\"DEV-X\",\"lat\":123,\"lon\":0}");       // out of range
+        lines.add("{\"lat\":51.5,\"lon\":-0.1}");                         // no id
+
+        IngestResult result = ingest.ingestLines(Flux.fromIterable(lines)).block();
+
+        assertEquals(new IngestResult(250, 3), result);
+        assertEquals(new IngestResult(250, 3), ingest.totals());
+        assertEquals(3, fixture.repo.batches.size());
+        assertTrue(fixture.repo.written.stream().allMatch(t -> t.ts() != null));
+    }
+
+    @Test
+    void ingestLines_onlyBadLines_reportsEveryReject() {
+        var ingest = newIngest(new TruckRegistry());
+
+        IngestResult result = ingest.ingestLines(Flux.just("{not json", "{\"lat\":51.5,\"lon\":-0.1}", "[]")).block();
+
+        assertEquals(new IngestResult(0, 3), result);
+        assertTrue(fixture.repo.batches.isEmpty());
+    }
+
+    @Test
+    void ingestLines_badLinesAfterAnExactBatchBoundary_areInTheTotal() {
+        var ingest = newIngest(new TruckRegistry());
+
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200; i++) lines.add(point("DEV-" + i)); // exactly two batches
+        lines.add("{not json");
+        lines.add("{not json either");
+
+        assertEquals(new IngestResult(200, 2), ingest.ingestLines(Flux.fromIterable(lines)).block());
+        assertEquals(List.of(100, 100), fixture.repo.batches);
+    }
+
+    @Test
+    void newIdsPastTheRegistryCap_areRejected_knownIdsStillAccepted() {
+        var registry = new TruckRegistry(2);
+        var ingest = newIngest(registry);
+
+        var lines = Flux.just(point("DEV-1"), point("DEV-2"), point("DEV-3"), point("DEV-1"), point("DEV-4"));
+
+        assertEquals(new IngestResult(3, 2), ingest.ingestLines(lines).block());
+        assertEquals(2, registry.size());
+        assertEquals(2, registry.refusedCount());
+        assertTrue(fixture.repo.written.stream().noneMatch(t -> t.truckId().equals("DEV-3") || t.truckId().equals("DEV-4")));
+    }
+
+    private IngestService newIngest(TruckRegistry registry) {
+        var props = TestProperties.defaults()
+                .withGeofence(new FleetProperties.Geofence(0, 2, 100_000))
+                .withIngest(new FleetProperties.Ingest(100, 20))
+                .build();
+        var mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        fixture = new PipelineFixture(props, registry, mapper);
+        return new IngestService(props, fixture.pipeline, registry, mapper);
+    }
+
+    private static String point(String truckId) {
+        return "{\"truckId\":\"" + truckId + "\",\"lat\":51.5,\"lon\":-0.1,\"speedKph\":40,\"fuelPct\":50,\"headingDeg\":90}";
+    }
+}
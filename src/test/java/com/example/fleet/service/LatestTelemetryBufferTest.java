@@ -0,0 +1,71 @@
+package com.example.fleet.service;
+
+import com.example.fleet.model.TruckTelemetry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatestTelemetryBufferTest {
+
+    @Test
+    void drain_emitsOnlyLatestOfChangedSlots_andHonorsCap() {
+        var buffer = new LatestTelemetryBuffer();
+        for (int round = 0; round < 3; round++) {
+            for (int slot = 0; slot < 10; slot++) {
+                buffer.offer(slot, telemetry("TRK-" + slot, round));
+            }
+        }
+        buffer.offer(LatestTelemetryBuffer.PAGE_SIZE + 1, telemetry("TRK-far", 0)); // second page
+
+        List<TruckTelemetry> out = new ArrayList<>();
+        assertEquals(6, buffer.drain(6, out::add));
+        assertEquals(5, buffer.drain(100, out::add));
+        assertEquals(0, buffer.drain(100, out::add));
+
+        assertEquals(11, out.stream().map(TruckTelemetry::truckId).distinct().count());
+        assertTrue(out.stream().filter(t -> !t.truckId().equals("TRK-far"))
+                .allMatch(t -> t.ts().equals(Instant.ofEpochMilli(2))));
+    }
+
+    @Test
+    void offer_reportsAValueReplacedBeforeItWasDrained() {
+        var buffer = new LatestTelemetryBuffer();
+        assertFalse(buffer.offer(5, telemetry("TRK-5", 0)));
+        assertTrue(buffer.offer(5, telemetry("TRK-5", 1)));
+        assertFalse(buffer.offer(6, telemetry("TRK-6", 0)));
+
+        assertEquals(2, buffer.drain(10, t -> true));
+        assertFalse(buffer.offer(5, telemetry("TRK-5", 2)));
+    }
+
+    @Test
+    void drain_keepsRejectedSlotsDirty() {
+        var buffer = new LatestTelemetryBuffer();
+        buffer.offer(3, telemetry("TRK-3", 0));
+
+        assertEquals(0, buffer.drain(10, t -> false));
+        assertEquals(1, buffer.drain(10, t -> true));
+        assertEquals(0, buffer.drain(10, t -> true));
+    }
+
+    @Test
+    void cappedDrain_rotatesThroughSlotsThatChangeEveryTime() {
+        var buffer = new LatestTelemetryBuffer();
+        List<String> seen = new ArrayList<>();
+        for (int round = 0; round < 4; round++) {
+            for (int slot = 0; slot < 200; slot++) {
+                buffer.offer(slot, telemetry("TRK-" + slot, round)); // every slot changes every round
+            }
+            buffer.drain(50, t -> seen.add(t.truckId()));
+        }
+        assertEquals(200, seen.stream().distinct().count());
+    }
+
+    private static TruckTelemetry telemetry(String id, long tsMillis) {
+        return new TruckTelemetry(id, Instant.ofEpochMilli(tsMillis), 51.5, -0.1, 40, 80, 90);
+    }
+}
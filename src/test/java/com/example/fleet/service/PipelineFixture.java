@@ -0,0 +1,57 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.history.HistoryStore;
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.NearbyTruck;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.repo.TruckStateRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A real {@link TelemetryPipeline} writing into an in-memory repository, for tests of the
+ * services that feed it (ingest, replay). Close it to stop the geofence stage.
+ */
+final class PipelineFixture implements AutoCloseable {
+
+    final RecordingRepository repo = new RecordingRepository();
+    final GeofenceStage stage;
+    final TelemetryPipeline pipeline;
+
+    PipelineFixture(FleetProperties props, TruckRegistry registry, ObjectMapper mapper) {
+        var metrics = FleetMetrics.noop();
+        this.stage = new GeofenceStage(props, new GeofenceService(props, registry), new AlertStreamService(metrics), registry, metrics);
+        this.pipeline = new TelemetryPipeline(repo, new TelemetryStreamService(props, mapper, registry, metrics), stage,
+                new HistoryStore(props), new DeadBandFilter(props, registry), registry, metrics);
+    }
+
+    @Override
+    public void close() {
+        stage.shutdown();
+    }
+
+    /** Records every bulk write: the batch sizes and the points, in order. */
+    static final class RecordingRepository implements TruckStateRepository {
+        final List<Integer> batches = new ArrayList<>();
+        final List<TruckTelemetry> written = new ArrayList<>();
+
+        @Override public Mono<Void> upsert(TruckTelemetry telemetry) { return upsertAll(List.of(telemetry)); }
+        @Override public synchronized Mono<Void> upsertAll(Collection<TruckTelemetry> batch) {
+            batches.add(batch.size());
+            written.addAll(batch);
+            return Mono.empty();
+        }
+        @Override public Mono<TruckTelemetry> get(String truckId) { return Mono.empty(); }
+        @Override public Flux<TruckTelemetry> getMany(Collection<String> truckIds) { return Flux.empty(); }
+        @Override public Flux<TruckTelemetry> list(int offset, int limit) { return Flux.empty(); }
+        @Override public Flux<NearbyTruck> nearby(double lat, double lon, double radiusKm, int limit) { return Flux.empty(); }
+        @Override public Mono<Long> count() { return Mono.just((long) written.size()); }
+        @Override public Mono<Void> clearAll() { return Mono.empty(); }
+    }
+}
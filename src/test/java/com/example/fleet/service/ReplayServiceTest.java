@@ -0,0 +1,103 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.config.TestProperties;
+import com.example.fleet.model.TruckTelemetry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private PipelineFixture fixture;
+
+    @AfterEach
+    void shutdown() {
+        if (fixture != null) fixture.close();
+    }
+
+    @Test
+    void replay_publishesNdjsonAndBinaryRecordingsInOrder_pacedBySpeed() throws Exception {
+        var mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        Instant t0 = Instant.parse("2025-01-01T08:00:00Z");
+        List<String> lines = new ArrayList<>();
+        for (int s = 0; s < 20; s++) {          // 2 seconds of traffic, 10 points per 100 ms
+            for (int truck = 0; truck < 10; truck++) {
+                lines.add(mapper.writeValueAsString(new TruckTelemetry("TRK-" + truck, t0.plusMillis(s * 100L), 51.5, -0.1, 40, 50, 90)));
+            }
+        }
+        Files.write(dir.resolve("rush.ndjson"), lines);
+
+        var replay = newReplay(mapper);
+
+        // 10x with 100 ms batches: each batch spans 1 s of recorded time, the second is due 100 ms in.
+        replay.start("rush.ndjson", 10, true);
+        ReplayService.Status done = await(replay);
+        assertEquals(200, done.published());
+        assertEquals(0, done.rejected());
+        assertTrue(done.elapsedMs() >= 95, "paced replay finished too early: " + done.elapsedMs());
+        assertEquals(t0.plusMillis(1900), done.eventTime());
+        assertEquals(t0, fixture.repo.written.get(0).ts());
+
+        assertEquals(200L, replay.convertToBinary("rush.ndjson").block());
+        fixture.repo.written.clear();
+        replay.start("rush.ftb", 0, false);
+        done = await(replay);
+        assertEquals(200, done.published());
+        assertEquals("TRK-0", fixture.repo.written.get(0).truckId());
+        assertNotEquals(t0, fixture.repo.written.get(0).ts()); // re-stamped to publish time
+    }
+
+    @Test
+    void invalidPoints_areRejectedOneByOne_notWithTheirBatch() throws Exception {
+        var mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        Files.write(dir.resolve("mixed.ndjson"), List.of(
+                "{\"truckId\":\"TRK-1\",\"lat\":51.5,\"lon\":-0.1}",
+                "{\"lat\":51.5,\"lon\":-0.1}",                       // no id
+                "{\"truckId\":\" \",\"lat\":51.5,\"lon\":-0.1}",      // blank id
+                "{\"truckId\":\"TRK-2\",\"lat\":95,\"lon\":-0.1}",     // out of range
+                "{not json",
+                "{\"truckId\":\"TRK-3\",\"lat\":51.6,\"lon\":-0.2}"));
+        var replay = newReplay(mapper);
+
+        replay.start("mixed.ndjson", 0, false);
+        ReplayService.Status done = await(replay);
+        assertNull(done.error());
+        assertEquals(2, done.published());
+        assertEquals(4, done.rejected());
+        assertEquals(List.of("TRK-1", "TRK-3"), fixture.repo.written.stream().map(TruckTelemetry::truckId).toList());
+    }
+
+    private ReplayService newReplay(ObjectMapper mapper) {
+        var props = TestProperties.defaults()
+                .withGeofence(new FleetProperties.Geofence(0, 1, 100_000))
+                .withReplay(new FleetProperties.Replay(dir.toString(), 1000, 100))
+                .build();
+        fixture = new PipelineFixture(props, new TruckRegistry(), mapper);
+        return new ReplayService(props, fixture.pipeline, mapper);
+    }
+
+    private static ReplayService.Status await(ReplayService replay) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (replay.status().running() && System.nanoTime() < deadline) Thread.sleep(5);
+        assertFalse(replay.status().running());
+        return replay.status();
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.FleetProperties;
+import com.example.fleet.config.TestProperties;
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.TruckTelemetry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryStreamServiceTest {
+
+    private static final int TRUCKS = 1200;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final TelemetryStreamService stream = newService(4);
+
+    @Test
+    void snapshotInBatches_thenOnlyNewerLiveUpdates() throws Exception {
+        for (int i = 0; i < TRUCKS; i++) stream.accept(truck(i, 10));
+        stream.flush();
+
+        List<List<EncodedTelemetry>> frames = new ArrayList<>();
+        var sub = stream.snapshotThenLive(500).subscribe(frames::add);
+
+        assertEquals(List.of(500, 500, 200), frames.stream().map(List::size).toList());
+        Set<String> ids = new HashSet<>();
+        long maxSeq = 0;
+        for (List<EncodedTelemetry> frame : frames) {
+            JsonNode json = mapper.readTree(EncodedTelemetry.jsonArray(frame));
+            assertEquals(frame.size(), json.size());
+            for (JsonNode t : json) assertTrue(ids.add(t.get("truckId").asText()));
+            for (EncodedTelemetry e : frame) maxSeq = Math.max(maxSeq, e.seq());
+        }
+        assertEquals(TRUCKS, ids.size());
+
+        stream.accept(truck(7, 20));
+        stream.flush();
+        assertEquals(4, frames.size());
+        EncodedTelemetry live = frames.get(3).get(0);
+        assertEquals(1, frames.get(3).size());
+        assertEquals("TRK-7", live.telemetry().truckId());
+        assertTrue(live.seq() > maxSeq);
+
+        sub.dispose();
+    }
+
+    @Test
+    void subscribingWhilePublishing_neverSkipsOrRepeatsAnUpdate() throws Exception {
+        Thread producer = new Thread(() -> {
+            for (int round = 1; round <= 100; round++) {
+                for (int i = 0; i < 20; i++) stream.accept(truck(i, round));
+                stream.flush();
+            }
+        });
+        producer.start();
+
+        // Every live subscriber adds fan-out work to the producer, so their number is bounded.
+        List<Queue<EncodedTelemetry>> received = new ArrayList<>();
+        List<Disposable> subs = new ArrayList<>();
+        for (int k = 0; k < 10 && producer.isAlive(); k++) {
+            Queue<EncodedTelemetry> got = new ConcurrentLinkedQueue<>(); // a copy-on-write list would copy per update
+            subs.add(stream.snapshotThenLive(20).subscribe(got::addAll));
+            received.add(got);
+            Thread.sleep(1);
+        }
+        producer.join();
+
+        for (int k = 0; k < received.size(); k++) {
+            Map<String, Long> lastSeq = new HashMap<>();
+            Map<String, Long> lastRound = new HashMap<>();
+            for (EncodedTelemetry e : received.get(k)) {
+                String id = e.telemetry().truckId();
+                Long prev = lastSeq.put(id, e.seq());
+                assertTrue(prev == null || prev < e.seq(), "repeated or out of order for " + id);
+                lastRound.put(id, e.telemetry().ts().toEpochMilli());
+            }
+            // Every subscriber ends on the final state of every truck it has seen.
+            for (long round : lastRound.values()) assertEquals(100, round);
+            subs.get(k).dispose();
+        }
+    }
+
+    @Test
+    void shards_partitionTheFleet_andEachShardStreamCarriesOnlyItsTrucks() {
+        List<List<TruckTelemetry>> perShard = new ArrayList<>();
+        List<Disposable> subs = new ArrayList<>();
+        for (int s = 0; s < stream.shards(); s++) {
+            List<TruckTelemetry> got = new ArrayList<>();
+            subs.add(stream.stream(s).subscribe(got::add));
+            perShard.add(got);
+        }
+        List<TruckTelemetry> merged = new ArrayList<>();
+        subs.add(stream.stream().subscribe(merged::add));
+
+        for (int i = 0; i < 100; i++) stream.accept(truck(i, 10));
+        assertEquals(100, stream.flush());
+
+        assertEquals(100, merged.size());
+        for (int s = 0; s < stream.shards(); s++) {
+            assertEquals(25, perShard.get(s).size());
+            for (TruckTelemetry t : perShard.get(s)) assertEquals(s, stream.shardOf(t.truckId()));
+        }
+        assertEquals(0, stream.droppedCount());
+        assertEquals(0, stream.contendedCount());
+        subs.forEach(Disposable::dispose);
+    }
+
+    @Test
+    void slowSubscriberOfTheMergedStream_seesEveryUpdate_whileShardsFlushConcurrently() throws Exception {
+        int trucks = 20_000;
+        var sharded = newService(4); // 10_000 per flush, 2_500 per shard
+        // A fast subscriber alongside: an update it takes counts as published, so a slow subscriber
+        // without room for it would lose it for good rather than get it on a retry.
+        var fast = sharded.stream().subscribe(t -> {});
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        var sub = sharded.stream().subscribe(t -> {
+            long until = System.nanoTime() + 3_000; // ~3 us of work per update
+            while (System.nanoTime() < until) Thread.onSpinWait();
+            seen.add(t.truckId());
+        });
+        for (int i = 0; i < trucks; i++) sharded.accept(truck(i, 10));
+
+        sharded.startFlusher(); // one worker per shard, emitting into the merge at the same time
+        try {
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (seen.size() < trucks && System.nanoTime() < deadline) Thread.sleep(10);
+        } finally {
+            sharded.stopFlusher();
+            sub.dispose();
+            fast.dispose();
+        }
+        assertEquals(trucks, seen.size());
+        assertEquals(0, sharded.droppedCount());
+    }
+
+    @Test
+    void latestBatches_coalescePerTruck_soASlowSubscriberMissesNoTruck() throws Exception {
+        var registry = new TruckRegistry();
+        var meters = new SimpleMeterRegistry();
+        var service = new TelemetryStreamService(TestProperties.defaults().build(), mapper, registry,
+                new FleetMetrics(meters));
+        for (int i = 0; i < 3; i++) registry.handleOf("TRK-" + i);
+        Sinks.Many<TruckTelemetry> updates = Sinks.many().multicast().directBestEffort();
+        List<List<TruckTelemetry>> batches = new CopyOnWriteArrayList<>();
+        var slow = new BaseSubscriber<List<TruckTelemetry>>() {
+            @Override protected void hookOnSubscribe(Subscription s) {} // no demand yet
+            @Override protected void hookOnNext(List<TruckTelemetry> batch) { batches.add(batch); }
+        };
+        service.latestBatches(updates.asFlux(), Duration.ofMillis(10), 2, FleetMetrics.Transport.WS).subscribe(slow);
+
+        // Several windows pass without demand; each truck first moves in a different one.
+        updates.tryEmitNext(truck(0, 1));
+        Thread.sleep(50);
+        updates.tryEmitNext(truck(1, 1));
+        updates.tryEmitNext(truck(0, 2));
+        Thread.sleep(50);
+        updates.tryEmitNext(truck(2, 1));
+        updates.tryEmitNext(truck(1, 2));
+        Thread.sleep(50);
+        assertTrue(batches.isEmpty());
+
+        slow.request(2);
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (batches.size() < 2 && System.nanoTime() < deadline) Thread.sleep(5);
+        slow.dispose();
+
+        assertEquals(List.of(2, 1), batches.stream().map(List::size).toList());
+        Map<String, Long> latest = new HashMap<>();
+        for (List<TruckTelemetry> batch : batches) {
+            for (TruckTelemetry t : batch) assertNull(latest.put(t.truckId(), t.ts().toEpochMilli()));
+        }
+        assertEquals(Map.of("TRK-0", 2L, "TRK-1", 2L, "TRK-2", 1L), latest);
+        assertEquals(2.0, meters.get("fleet.backpressure.dropped").tag("transport", "ws").counter().count());
+    }
+
+    @Test
+    void trucksPastTheRegistryCap_areDroppedAndCounted_andShardOfDoesNotIntern() {
+        var registry = new TruckRegistry(1);
+        var meters = new SimpleMeterRegistry();
+        var service = new TelemetryStreamService(TestProperties.defaults().build(), mapper, registry,
+                new FleetMetrics(meters));
+        List<TruckTelemetry> got = new ArrayList<>();
+        var sub = service.stream().subscribe(got::add);
+
+        service.accept(truck(0, 10));
+        service.accept(truck(1, 10)); // registry full
+        service.emit(truck(2, 10));   // registry full
+        assertEquals(1, service.flush());
+        assertEquals(List.of("TRK-0"), got.stream().map(TruckTelemetry::truckId).toList());
+        assertEquals(2.0, meters.get("fleet.registry.refused").counter().count());
+
+        assertEquals(-1, service.shardOf("TRK-9"));
+        assertEquals(0, service.shardOf("TRK-0"));
+        assertEquals(1, registry.size());
+        sub.dispose();
+    }
+
+    private static TelemetryStreamService newService(int shards) {
+        var props = TestProperties.defaults().withStream(new FleetProperties.Stream(50, 10_000, shards)).build();
+        return new TelemetryStreamService(props, new ObjectMapper().findAndRegisterModules(), new TruckRegistry(),
+                FleetMetrics.noop());
+    }
+
+    private static TruckTelemetry truck(int i, long tsMs) {
+        return new TruckTelemetry("TRK-" + i, Instant.ofEpochMilli(tsMs), 51.5 + i * 1e-4, -0.1, 40, 60, 90);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.fleet.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TruckRegistryTest {
+
+    @Test
+    void handleOf_assignsDenseStableHandles_withCachedKeyBytes() {
+        var registry = new TruckRegistry();
+
+        assertEquals(0, registry.handleOf("TRK-00001"));
+        assertEquals(1, registry.handleOf("TRK-00002"));
+        assertEquals(0, registry.handleOf("TRK-00001"));
+        assertEquals(2, registry.size());
+
+        assertEquals("TRK-00002", registry.idOf(1));
+        assertEquals("truck:TRK-00002", new String(registry.redisKey(1), StandardCharsets.UTF_8));
+        assertSame(registry.redisKey(1), registry.redisKey(1));
+
+        assertEquals(TruckRegistry.NO_HANDLE, registry.find("TRK-99999"));
+        assertEquals(2, registry.size());
+        assertThrows(IllegalArgumentException.class, () -> registry.idOf(5));
+    }
+
+    @Test
+    void pastTheCap_newIdsAreRefusedAndCounted_knownIdsStillResolve() {
+        var registry = new TruckRegistry(2);
+        registry.handleOf("TRK-00001");
+        registry.handleOf("TRK-00002");
+
+        assertEquals(TruckRegistry.NO_HANDLE, registry.tryHandleOf("TRK-00003"));
+        assertEquals(TruckRegistry.NO_HANDLE, registry.tryHandleOf("TRK-00003"));
+        assertEquals(1, registry.tryHandleOf("TRK-00002"));
+        assertEquals(2, registry.size());
+        assertEquals(2, registry.refusedCount());
+        assertThrows(IllegalStateException.class, () -> registry.handleOf("TRK-00004"));
+    }
+}
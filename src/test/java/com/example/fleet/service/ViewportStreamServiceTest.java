@@ -0,0 +1,142 @@
+package com.example.fleet.service;
+
+import com.example.fleet.config.TestProperties;
+import com.example.fleet.metrics.FleetMetrics;
+import com.example.fleet.model.TruckTelemetry;
+import com.example.fleet.model.Viewport;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewportStreamServiceTest {
+
+    private final ViewportStreamService viewports = newService();
+
+    @Test
+    void updatesReachOnlyTheViewportsThatContainThem() {
+        // Spans several 0.05 degree cells; the second box shares a cell with the first but not its area.
+        var central = new Viewport(51.45, -0.20, 51.55, -0.05);
+        var east = new Viewport(51.45, -0.04, 51.46, -0.01);
+        var world = new Viewport(-90, -180, 90, 180); // too many cells: filed as wide
+
+        List<String> a = new ArrayList<>(), b = new ArrayList<>(), w = new ArrayList<>();
+        var subs = List.of(subscribe(central, a), subscribe(east, b), subscribe(world, w));
+
+        viewports.dispatch(at("T1", 51.46, -0.19));  // central, first cell
+        viewports.dispatch(at("T2", 51.54, -0.06));  // central, another cell
+        viewports.dispatch(at("T3", 51.455, -0.03)); // east only, cell shared with central's edge
+        viewports.dispatch(at("T4", 40.0, 10.0));    // nobody's cell
+
+        assertEquals(List.of("T1", "T2"), a);
+        assertEquals(List.of("T3"), b);
+        assertEquals(List.of("T1", "T2", "T3", "T4"), w);
+        assertEquals(0, viewports.droppedCount());
+        subs.forEach(Disposable::dispose);
+    }
+
+    @Test
+    void move_refilesTheSubscriber_andUnsubscribeStopsDelivery() {
+        Sinks.Many<Viewport> boxes = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> got = new ArrayList<>();
+        Disposable sub = viewports.stream(boxes.asFlux())
+                .subscribe(e -> got.add(e.telemetry().truckId()));
+
+        viewports.dispatch(at("T0", 51.5, -0.1)); // no viewport yet
+        boxes.tryEmitNext(new Viewport(51.55, -0.05, 51.45, -0.15)); // corners in any order
+        viewports.dispatch(at("T1", 51.5, -0.1));
+
+        boxes.tryEmitNext(new Viewport(48.8, 2.3, 48.9, 2.4));
+        viewports.dispatch(at("T2", 51.5, -0.1));  // old area
+        viewports.dispatch(at("T3", 48.85, 2.35)); // new area
+        assertEquals(List.of("T1", "T3"), got);
+
+        sub.dispose();
+        viewports.dispatch(at("T4", 48.85, 2.35));
+        assertEquals(List.of("T1", "T3"), got);
+        assertEquals(0, viewports.droppedCount()); // unregistered, so nothing was offered to the dead sink
+    }
+
+    @Test
+    void moveInFlightDuringUnsubscribe_doesNotRegisterTheDeadSubscriber() {
+        Sinks.Many<Viewport> boxes = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicReference<Disposable> sub = new AtomicReference<>();
+        // The second viewport cancels the subscription just before its move runs, as a
+        // cancel racing an incoming viewport would.
+        var flux = boxes.asFlux().doOnNext(vp -> {
+            if (vp.minLat() > 50) sub.get().dispose();
+        });
+        sub.set(viewports.stream(flux).subscribe());
+
+        boxes.tryEmitNext(new Viewport(48.8, 2.3, 48.9, 2.4));
+        boxes.tryEmitNext(new Viewport(51.45, -0.15, 51.55, -0.05));
+
+        viewports.dispatch(at("T1", 51.5, -0.1));
+        viewports.dispatch(at("T2", 48.85, 2.35));
+        assertEquals(0, viewports.droppedCount());
+    }
+
+    @Test
+    void liveStreamIsJoinedOnlyWhileAViewportIsSubscribed_soNothingIsEncodedWithoutClients() {
+        AtomicInteger encoded = new AtomicInteger();
+        var mapper = new ObjectMapper() {
+            @Override
+            public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+                encoded.incrementAndGet();
+                return super.writeValueAsBytes(value);
+            }
+        };
+        mapper.registerModule(new JavaTimeModule());
+        var registry = new TruckRegistry();
+        var metrics = FleetMetrics.noop();
+        var telemetry = new TelemetryStreamService(TestProperties.defaults().build(), mapper, registry, metrics);
+        var service = new ViewportStreamService(telemetry, metrics);
+        var truck = at("T1", 51.5, -0.1).telemetry();
+        int handle = registry.handleOf(truck.truckId());
+
+        telemetry.accept(handle, truck);
+        assertEquals(1, telemetry.flush());
+        assertEquals(0, encoded.get()); // no WebSocket, RSocket or viewport client
+
+        List<String> got = new ArrayList<>();
+        Disposable sub = service.stream(Flux.just(new Viewport(51.45, -0.15, 51.55, -0.05)))
+                .subscribe(e -> got.add(e.telemetry().truckId()));
+        telemetry.accept(handle, truck);
+        telemetry.flush();
+        assertEquals(List.of("T1"), got);
+        assertEquals(1, encoded.get());
+
+        sub.dispose();
+        telemetry.accept(handle, truck);
+        telemetry.flush();
+        assertEquals(1, encoded.get()); // the last viewport left, and the service with it
+    }
+
+    private Disposable subscribe(Viewport vp, List<String> into) {
+        return viewports.stream(Flux.just(vp))
+                .subscribe(e -> into.add(e.telemetry().truckId()));
+    }
+
+    private static EncodedTelemetry at(String id, double lat, double lon) {
+        return new EncodedTelemetry(new TruckTelemetry(id, Instant.now(), lat, lon, 40, 80, 90), new byte[0], 0);
+    }
+
+    private static ViewportStreamService newService() {
+        var props = TestProperties.defaults().build();
+        var metrics = FleetMetrics.noop();
+        var telemetry = new TelemetryStreamService(props, new ObjectMapper(), new TruckRegistry(), metrics);
+        // Nothing is flushed into the live stream: tests call dispatch() directly.
+        return new ViewportStreamService(telemetry, metrics);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.fleet.util;
+
+import com.example.fleet.model.GeoPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledPolygonTest {
+
+    @Test
+    void contains_matchesListForm_onRandomPolygonsVerticesAndEdges() {
+        Random rnd = new Random(7);
+        for (int poly = 0; poly < 500; poly++) {
+            // Coordinates snap to a coarse grid, so vertices share latitudes (horizontal edges)
+            // and query points land exactly on vertices and edges.
+            int n = 3 + rnd.nextInt(10);
+            List<GeoPoint> vertices = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                vertices.add(new GeoPoint(51.5 + snap(rnd), -0.1 + snap(rnd)));
+            }
+            CompiledPolygon compiled = CompiledPolygon.of(vertices);
+            assertEquals(n, compiled.vertexCount());
+
+            for (int q = 0; q < 200; q++) {
+                double lat, lon;
+                switch (q % 4) {
+                    case 0 -> { // a vertex
+                        GeoPoint v = vertices.get(rnd.nextInt(n));
+                        lat = v.lat();
+                        lon = v.lon();
+                    }
+                    case 1 -> { // somewhere on an edge, including horizontal ones
+                        int i = rnd.nextInt(n);
+                        GeoPoint a = vertices.get(i), b = vertices.get((i + 1) % n);
+                        double f = rnd.nextInt(5) / 4.0;
+                        lat = a.lat() + (b.lat() - a.lat()) * f;
+                        lon = a.lon() + (b.lon() - a.lon()) * f;
+                    }
+                    case 2 -> { // on a vertex's latitude
+                        lat = vertices.get(rnd.nextInt(n)).lat();
+                        lon = -0.1 + snap(rnd);
+                    }
+                    default -> {
+                        lat = 51.5 + rnd.nextDouble() * 0.012 - 0.001;
+                        lon = -0.1 + rnd.nextDouble() * 0.012 - 0.001;
+                    }
+                }
+                assertEquals(GeoUtils.pointInPolygon(lat, lon, vertices), compiled.contains(lat, lon),
+                        () -> "polygon " + vertices + " point " + lat + "," + lon);
+            }
+        }
+    }
+
+    @Test
+    void degeneratePolygons_containNothing() {
+        assertFalse(CompiledPolygon.of(null).contains(51.5, -0.1));
+        assertFalse(CompiledPolygon.of(List.of(new GeoPoint(51.5, -0.1), new GeoPoint(51.6, -0.1)))
+                .contains(51.55, -0.1));
+    }
+
+    private static double snap(Random rnd) {
+        return rnd.nextInt(11) * 0.001;
+    }
+}
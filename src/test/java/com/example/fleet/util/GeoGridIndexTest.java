@@ -0,0 +1,97 @@
+package com.example.fleet.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoGridIndexTest {
+
+    record Rect(double minLat, double maxLat, double minLon, double maxLon) implements GeoGridIndex.Box {
+        boolean contains(double lat, double lon) {
+            return lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon;
+        }
+    }
+
+    @Test
+    void candidates_neverMissABoxThatContainsThePoint() {
+        Random rnd = new Random(42);
+        List<Rect> boxes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            double lat = 51 + rnd.nextDouble();
+            double lon = -1 + rnd.nextDouble();
+            // Mostly fence-sized boxes, some spanning many cells, a few wide enough to go to the shared list.
+            double span = switch (i % 10) {
+                case 0 -> 0.2 + rnd.nextDouble() * 0.3;
+                case 1, 2 -> 0.02 + rnd.nextDouble() * 0.05;
+                default -> 0.002 + rnd.nextDouble() * 0.01;
+            };
+            boxes.add(new Rect(lat, lat + span * rnd.nextDouble(), lon, lon + span));
+        }
+        GeoGridIndex<Rect> index = GeoGridIndex.build(boxes);
+        assertEquals(boxes.size(), index.size());
+
+        for (int i = 0; i < 20_000; i++) {
+            double lat, lon;
+            if (i % 4 == 0) {
+                // Exactly on a box edge or corner.
+                Rect b = boxes.get(rnd.nextInt(boxes.size()));
+                lat = rnd.nextBoolean() ? b.minLat() : b.maxLat();
+                lon = rnd.nextBoolean() ? b.minLon() : b.maxLon();
+            } else {
+                lat = 50.9 + rnd.nextDouble() * 1.4;
+                lon = -1.1 + rnd.nextDouble() * 1.4;
+            }
+            List<Rect> candidates = index.candidates(lat, lon);
+            for (Rect b : boxes) {
+                if (b.contains(lat, lon)) {
+                    assertTrue(candidates.contains(b), "missing " + b + " for " + lat + "," + lon);
+                }
+            }
+        }
+    }
+
+    @Test
+    void boxSpanningCells_isFiledInEveryCellItCovers_andNowhereElse() {
+        // Small boxes fix the cell size at 0.01 degrees; the long box spans ~30 cells of one row band.
+        List<Rect> boxes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            boxes.add(new Rect(51.0 + i * 0.1, 51.01 + i * 0.1, 0.0, 0.01));
+        }
+        Rect strip = new Rect(51.2, 51.205, 0.0, 0.3);
+        boxes.add(strip);
+        GeoGridIndex<Rect> index = GeoGridIndex.build(boxes);
+
+        for (double lon = 0.0; lon <= 0.3; lon += 0.0025) {
+            assertTrue(index.candidates(51.202, lon).contains(strip), "strip missing at lon " + lon);
+        }
+        assertFalse(index.candidates(51.1, 0.15).contains(strip));
+        assertFalse(index.candidates(51.3, 0.15).contains(strip));
+        assertEquals(List.of(), index.candidates(52.0, 0.15)); // outside the grid, no wide boxes
+    }
+
+    @Test
+    void wideBox_isACandidateEverywhere() {
+        Rect small = new Rect(51.0, 51.001, 0.0, 0.001);
+        Rect small2 = new Rect(51.5, 51.501, 0.5, 0.501);
+        Rect wide = new Rect(40.0, 60.0, -10.0, 10.0); // far more than MAX_CELLS_PER_BOX cells
+        GeoGridIndex<Rect> index = GeoGridIndex.build(List.of(small, small2, wide));
+
+        assertTrue(index.candidates(51.0005, 0.0005).containsAll(List.of(small, wide)));
+        assertTrue(index.candidates(51.25, 0.25).contains(wide));
+        assertEquals(List.of(wide), index.candidates(45.0, 5.0)); // cell with no fences of its own
+        assertEquals(List.of(wide), index.candidates(70.0, 5.0)); // outside the grid
+    }
+
+    @Test
+    void invalidBoxesAreSkipped_andEmptyIndexHasNoCandidates() {
+        Rect inverted = new Rect(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+        GeoGridIndex<Rect> index = GeoGridIndex.build(List.of(inverted));
+        assertEquals(0, index.size());
+        assertEquals(List.of(), index.candidates(51.5, 0.0));
+    }
+}